@@ -0,0 +1,50 @@
+package benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import tika.legacy.LegacyPdfProcessorConfig;
+import tika.legacy.LegacyTikaProcessor;
+import tika.processor.CompositeTikaProcessor;
+import tika.processor.CompositeTikaProcessorConfig;
+import tika.utils.DocumentBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+
+/**
+ * The documents used by the benchmarks, taken from the test documents (`src/test/resources/tika/docs`,
+ * set by the build using `benchmark.docs.dir` property), and the processors they are run with.
+ */
+public class BenchmarkDocuments {
+
+    private static final String DOCS_DIR_PROPERTY = "benchmark.docs.dir";
+    private static final String DEFAULT_DOCS_DIR = "src/test/resources/tika/docs";
+
+    public static byte[] read(final String docPath) throws IOException {
+        Path path = Paths.get(System.getProperty(DOCS_DIR_PROPERTY, DEFAULT_DOCS_DIR), docPath);
+        return Files.readAllBytes(path);
+    }
+
+    /**
+     * Buffers the document content in memory, as done for the requests under the in-memory threshold
+     */
+    public static DocumentBuffer buffer(final byte[] content) throws IOException {
+        return DocumentBuffer.fromStream(new ByteArrayInputStream(content), Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Starts the application context with only the processors and their configuration (taken from
+     * the application.yaml), i.e. with no web server, results cache or requests coalescing
+     */
+    public static ConfigurableApplicationContext startProcessors() {
+        return new SpringApplicationBuilder(LegacyPdfProcessorConfig.class, CompositeTikaProcessorConfig.class,
+                LegacyTikaProcessor.class, CompositeTikaProcessor.class)
+                .web(WebApplicationType.NONE)
+                .run();
+    }
+}
@@ -0,0 +1,64 @@
+package benchmark;
+
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import tika.processor.CompositeTikaProcessor;
+import tika.processor.ProcessingCostEstimate;
+import tika.utils.DocumentBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The throughput of the content type detection and of the routing of the documents, i.e. estimating
+ * the processing cost used to pick the processing lane (sampling the text layer of the first pages of PDFs),
+ * run before each of the documents is processed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DocumentDetectionBenchmark {
+
+    @Param({"generic/pat_id_1.txt", "generic/pat_id_1.docx", "generic/pat_id_1.doc", "generic/pat_id_1.pdf",
+            "pdf/ex1.pdf", "pdf/ex2_ocr.pdf", "generic/pat_id_1.png"})
+    public String document;
+
+    private ConfigurableApplicationContext context;
+    private CompositeTikaProcessor processor;
+    private Detector detector;
+    private DocumentBuffer documentBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkDocuments.startProcessors();
+        processor = context.getBean(CompositeTikaProcessor.class);
+        detector = TikaConfig.getDefaultConfig().getDetector();
+        documentBuffer = BenchmarkDocuments.buffer(BenchmarkDocuments.read(document));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        documentBuffer.close();
+        context.close();
+    }
+
+    @Benchmark
+    public MediaType detect() throws Exception {
+        try (TikaInputStream stream = documentBuffer.openStream()) {
+            return detector.detect(stream, new Metadata());
+        }
+    }
+
+    @Benchmark
+    public ProcessingCostEstimate estimateCost() {
+        return processor.estimateCost(documentBuffer);
+    }
+}
@@ -0,0 +1,65 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import tika.legacy.LegacyTikaProcessor;
+import tika.model.TikaProcessingResult;
+import tika.processor.AbstractTikaProcessor;
+import tika.processor.CompositeTikaProcessor;
+import tika.utils.DocumentBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The throughput of processing the documents of each type by the processors, end-to-end from the buffered
+ * request content to the result (detection, parsing, OCR where needed, metadata extraction),
+ * always running the parsers, i.e. bypassing the results cache and the requests coalescing.
+ *
+ * NB: the OCR-ed documents (the image and the scanned PDF pages) mostly measure Tesseract, hence need it installed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DocumentProcessingBenchmark {
+
+    @Param({"composite", "legacy"})
+    public String processorType;
+
+    @Param({"generic/pat_id_1.txt", "generic/pat_id_1.docx", "generic/pat_id_1.doc", "generic/pat_id_1.odt",
+            "generic/pat_id_1.rtf", "generic/pat_id_1.pdf", "pdf/ex1.pdf", "generic/pat_id_1.png"})
+    public String document;
+
+    private ConfigurableApplicationContext context;
+    private AbstractTikaProcessor processor;
+    private DocumentBuffer documentBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkDocuments.startProcessors();
+        processor = "legacy".equals(processorType)
+                ? context.getBean(LegacyTikaProcessor.class)
+                : context.getBean(CompositeTikaProcessor.class);
+
+        // the buffered content is re-used, as each pass over the document opens a new stream over it
+        documentBuffer = BenchmarkDocuments.buffer(BenchmarkDocuments.read(document));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        documentBuffer.close();
+        context.close();
+    }
+
+    @Benchmark
+    public TikaProcessingResult process() throws Exception {
+        TikaProcessingResult result = processor.processUncached(documentBuffer);
+        if (!Boolean.TRUE.equals(result.getSuccess())) {
+            throw new IllegalStateException("Cannot process " + document + ": " + result.getError());
+        }
+        return result;
+    }
+}
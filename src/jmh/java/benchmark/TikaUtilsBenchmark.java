@@ -0,0 +1,57 @@
+package benchmark;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.openjdk.jmh.annotations.*;
+import tika.utils.TikaUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The throughput of the helpers run over each of the processed documents: the extraction of the metadata
+ * (from the metadata of the parsed document) and the detection of the text encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TikaUtilsBenchmark {
+
+    @Param({"generic/pat_id_1.txt", "generic/pat_id_1.docx", "generic/pat_id_1.pdf"})
+    public String document;
+
+    private Metadata metadata;
+    private byte[] text;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final byte[] content = BenchmarkDocuments.read(document);
+
+        // the metadata and the text as produced by the parsers
+        metadata = new Metadata();
+        BodyContentHandler handler = new BodyContentHandler(-1);
+        try (InputStream stream = new ByteArrayInputStream(content)) {
+            new AutoDetectParser().parse(stream, handler, metadata, new ParseContext());
+        }
+        text = handler.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Map<String, Object> extractMetadata() {
+        return TikaUtils.extractMetadata(metadata);
+    }
+
+    @Benchmark
+    public String detectEncoding() {
+        return TikaUtils.detectEncoding(new ByteArrayInputStream(text));
+    }
+}
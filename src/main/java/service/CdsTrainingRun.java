@@ -0,0 +1,67 @@
+package service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import tika.legacy.LegacyTikaProcessor;
+import tika.model.TikaProcessingResult;
+import tika.processor.AbstractTikaProcessor;
+import tika.processor.CompositeTikaProcessor;
+import tika.utils.DocumentBuffer;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * The training run used when creating the class data sharing (AppCDS) archive: starts the application,
+ * processes all the documents from the given directory with both the processors (so that the classes
+ * used when processing the documents are loaded) and exits, with the JVM dumping the loaded classes.
+ */
+public class CdsTrainingRun {
+
+    private final static Logger logger = LogManager.getLogger(CdsTrainingRun.class);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: CdsTrainingRun <documents directory>");
+            System.exit(1);
+        }
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TikaServiceApplication.class)
+                .properties("server.port=0")
+                .run();
+
+        List<Path> documents;
+        try (Stream<Path> paths = Files.walk(Paths.get(args[0]))) {
+            documents = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        List<AbstractTikaProcessor> processors = List.of(
+                context.getBean(LegacyTikaProcessor.class), context.getBean(CompositeTikaProcessor.class));
+
+        for (AbstractTikaProcessor processor : processors) {
+            for (Path document : documents) {
+                try (InputStream stream = Files.newInputStream(document);
+                     DocumentBuffer buffer = DocumentBuffer.fromStream(stream, Long.MAX_VALUE, null)) {
+                    TikaProcessingResult result = processor.process(buffer);
+                    logger.info("Training run: processed " + document + " using "
+                            + processor.getClass().getSimpleName() + ", success: " + result.getSuccess());
+                }
+                catch (Exception e) {
+                    // the documents that cannot be processed (e.g. with no OCR installed) still load the classes
+                    logger.warn("Training run: cannot process " + document + ": " + e.getMessage());
+                }
+            }
+        }
+
+        System.exit(SpringApplication.exit(context));
+    }
+}
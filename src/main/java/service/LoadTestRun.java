@@ -0,0 +1,450 @@
+package service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Builder;
+import lombok.Data;
+import tika.utils.LatencyHistogram;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * The load test of a running instance of the service: replays the documents from the given directory against
+ * the processing endpoint with the given concurrency, rate and mix of the document types, reporting the throughput,
+ * the latency percentiles (overall and by the document type), the error rates and the processing stage timings
+ * reported by the service. The report can be saved as the baseline and the later runs compared against it.
+ *
+ * Usage: LoadTestRun --corpus=<documents directory> [--url=http://localhost:8090] [--endpoint=/api/process]
+ *   [--concurrency=4] [--rate=<max docs/s>] [--requests=<num requests> | --duration=<seconds>] [--warm-up=<num requests>]
+ *   [--mix=pdf:3,docx:1,...] [--seed=0] [--insecure] [--timeout=<seconds>]
+ *   [--save-baseline=<report file>] [--baseline=<report file>] [--max-regression=<percent>]
+ *
+ * With no mix the documents are replayed in turns, otherwise the document type (the file extension) of each request
+ * is picked at random with the given weights. When compared against the baseline, the exit status is 2 if either
+ * the throughput or any of the latency percentiles regressed by more than the max regression (default: 10%),
+ * or the error rate increased by more than the max regression percentage points.
+ */
+public class LoadTestRun {
+
+    private final URI uri;
+    private final HttpClient client;
+    private final Duration timeout;
+    private final int concurrency;
+    private final double rate;
+    private final DocumentPicker documents;
+
+    // the next time a request can be sent at, when the rate is limited
+    private final AtomicLong nextSendTimeNanos = new AtomicLong(System.nanoTime());
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * The results of the requests sent during the measurement
+     */
+    private static class Results {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final Map<String, LatencyHistogram> latencyByType = new ConcurrentHashMap<>();
+        final Map<String, LatencyHistogram> serverStages = new ConcurrentHashMap<>();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        final LongAdder numRequests = new LongAdder();
+        final LongAdder numFailed = new LongAdder();
+    }
+
+    /**
+     * The report of the run, saved as the baseline
+     */
+    @Data
+    @Builder
+    public static class Report {
+        @JsonProperty("requests")
+        long requests;
+
+        @JsonProperty("failed")
+        long failed;
+
+        @JsonProperty("error_rate")
+        double errorRate;
+
+        @JsonProperty("concurrency")
+        int concurrency;
+
+        @JsonProperty("elapsed_s")
+        double elapsedSeconds;
+
+        @JsonProperty("throughput_docs_per_s")
+        double throughputPerSecond;
+
+        @JsonProperty("throughput_docs_per_min")
+        double throughputPerMinute;
+
+        // the number of the failed requests by the cause: the HTTP status, the processing error or the exception
+        @JsonProperty("errors")
+        Map<String, Long> errors;
+
+        // the latency as seen by the client
+        @JsonProperty("latency")
+        LatencyHistogram.Summary latency;
+
+        @JsonProperty("latency_by_type")
+        Map<String, LatencyHistogram.Summary> latencyByType;
+
+        // the processing stage timings reported by the service in the results
+        @JsonProperty("server_stages")
+        Map<String, LatencyHistogram.Summary> serverStages;
+    }
+
+    LoadTestRun(URI uri, HttpClient client, Duration timeout, int concurrency, double rate, DocumentPicker documents) {
+        this.uri = uri;
+        this.client = client;
+        this.timeout = timeout;
+        this.concurrency = concurrency;
+        this.rate = rate;
+        this.documents = documents;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (!options.containsKey("corpus")) {
+            System.err.println("Usage: LoadTestRun --corpus=<documents directory> [--url=http://localhost:8090] "
+                    + "[--endpoint=/api/process] [--concurrency=4] [--rate=<max docs/s>] "
+                    + "[--requests=<num requests> | --duration=<seconds>] [--warm-up=<num requests>] "
+                    + "[--mix=pdf:3,docx:1,...] [--seed=0] [--insecure] [--timeout=<seconds>] "
+                    + "[--save-baseline=<report file>] [--baseline=<report file>] [--max-regression=<percent>]");
+            System.exit(1);
+        }
+
+        List<Path> corpus;
+        try (Stream<Path> paths = Files.walk(Paths.get(options.get("corpus")))) {
+            corpus = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        if (corpus.isEmpty()) {
+            System.err.println("No documents found in: " + options.get("corpus"));
+            System.exit(1);
+        }
+
+        final int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "4"));
+        LoadTestRun loadTest = new LoadTestRun(
+                URI.create(options.getOrDefault("url", "http://localhost:8090")
+                        + options.getOrDefault("endpoint", "/api/process")),
+                createClient(options.containsKey("insecure")),
+                Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout", "600"))),
+                concurrency,
+                Double.parseDouble(options.getOrDefault("rate", "0")),
+                new DocumentPicker(corpus, parseMix(options.get("mix")), Long.parseLong(options.getOrDefault("seed", "0"))));
+
+        System.out.println("Replaying " + corpus.size() + " documents against " + loadTest.uri + " with concurrency: "
+                + concurrency + (loadTest.rate > 0 ? ", max rate: " + loadTest.rate + " docs/s" : "")
+                + (options.containsKey("mix") ? ", mix: " + options.get("mix") : ""));
+
+        final int numWarmUpRequests = Integer.parseInt(options.getOrDefault("warm-up", "0"));
+        if (numWarmUpRequests > 0) {
+            loadTest.run(numWarmUpRequests, Long.MAX_VALUE, new Results());
+        }
+
+        long numRequests = Long.parseLong(options.getOrDefault("requests", "-1"));
+        long deadlineNanos = Long.MAX_VALUE;
+        if (options.containsKey("duration")) {
+            deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration")));
+            numRequests = numRequests < 0 ? Long.MAX_VALUE : numRequests;
+        }
+        else if (numRequests < 0) {
+            // a single pass over the corpus
+            numRequests = corpus.size();
+        }
+
+        Results results = new Results();
+        final long startTimeNanos = System.nanoTime();
+        loadTest.run(numRequests, deadlineNanos, results);
+        final double elapsedSeconds = (System.nanoTime() - startTimeNanos) * 1e-9;
+
+        Report report = loadTest.createReport(results, elapsedSeconds);
+        ObjectMapper writer = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        System.out.println(writer.writeValueAsString(report));
+
+        if (options.containsKey("save-baseline")) {
+            writer.writeValue(Paths.get(options.get("save-baseline")).toFile(), report);
+            System.out.println("Saved the baseline: " + options.get("save-baseline"));
+        }
+
+        if (options.containsKey("baseline")) {
+            JsonNode baseline = new ObjectMapper().readTree(Paths.get(options.get("baseline")).toFile());
+            JsonNode current = new ObjectMapper().valueToTree(report);
+            boolean regressed = compare(baseline, current, Double.parseDouble(options.getOrDefault("max-regression", "10")));
+            if (regressed) {
+                System.exit(2);
+            }
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                options.put(arg.substring(2), "true");
+            }
+            else {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+
+    private static Map<String, Double> parseMix(String mix) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        if (mix == null || mix.isBlank()) {
+            return weights;
+        }
+        for (String entry : mix.split(",")) {
+            String[] typeAndWeight = entry.trim().split(":");
+            weights.put(typeAndWeight[0].toLowerCase(Locale.ROOT),
+                    typeAndWeight.length > 1 ? Double.parseDouble(typeAndWeight[1]) : 1.0);
+        }
+        return weights;
+    }
+
+    private static HttpClient createClient(boolean insecure) throws Exception {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30));
+
+        if (insecure) {
+            // trust the self-signed certificates (as with curl -k), e.g. the one the service is shipped with
+            System.setProperty("jdk.internal.httpclient.disableHostnameVerification", "true");
+            TrustManager trustAll = new X509TrustManager() {
+                public void checkClientTrusted(X509Certificate[] chain, String authType) { }
+                public void checkServerTrusted(X509Certificate[] chain, String authType) { }
+                public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
+            };
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{trustAll}, null);
+            builder.sslContext(sslContext);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Sends the requests using the given number of concurrent clients, until either the number of the requests
+     * was sent or the deadline passed
+     */
+    private void run(final long numRequests, final long deadlineNanos, final Results results) throws Exception {
+        final AtomicLong numSent = new AtomicLong();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(clients.submit(() -> {
+                    while (numSent.incrementAndGet() <= numRequests && System.nanoTime() < deadlineNanos) {
+                        waitForRate();
+                        sendRequest(documents.next(), results);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private void waitForRate() throws InterruptedException {
+        if (rate <= 0) {
+            return;
+        }
+        final long intervalNanos = (long) (1e9 / rate);
+        final long now = System.nanoTime();
+        final long sendTimeNanos = nextSendTimeNanos.getAndUpdate(next -> Math.max(next, now) + intervalNanos);
+        final long waitNanos = sendTimeNanos - now;
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void sendRequest(final Path document, final Results results) {
+        final String type = DocumentPicker.getType(document);
+        final long startTimeNanos = System.nanoTime();
+        String error = null;
+
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/octet-stream")
+                    .POST(HttpRequest.BodyPublishers.ofFile(document))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+            if (response.statusCode() != 200) {
+                error = "http_" + response.statusCode();
+            }
+            else {
+                JsonNode result = mapper.readTree(response.body()).path("result");
+                if (!result.path("success").asBoolean(false)) {
+                    error = "processing_error";
+                }
+                result.path("stageTimingsMs").fields().forEachRemaining(stage ->
+                        results.serverStages.computeIfAbsent(stage.getKey(), s -> new LatencyHistogram())
+                                .record(TimeUnit.MILLISECONDS.toNanos(stage.getValue().asLong())));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e.getClass().getSimpleName();
+        }
+        catch (Exception e) {
+            error = e.getClass().getSimpleName();
+        }
+
+        final long latencyNanos = System.nanoTime() - startTimeNanos;
+        results.numRequests.increment();
+        results.latency.record(latencyNanos);
+        results.latencyByType.computeIfAbsent(type, t -> new LatencyHistogram()).record(latencyNanos);
+        if (error != null) {
+            results.numFailed.increment();
+            results.errors.computeIfAbsent(error, e -> new LongAdder()).increment();
+        }
+    }
+
+    private Report createReport(final Results results, final double elapsedSeconds) {
+        final long numRequests = results.numRequests.sum();
+        final long numFailed = results.numFailed.sum();
+
+        Map<String, Long> errors = new TreeMap<>();
+        results.errors.forEach((error, count) -> errors.put(error, count.sum()));
+        Map<String, LatencyHistogram.Summary> latencyByType = new TreeMap<>();
+        results.latencyByType.forEach((type, histogram) -> latencyByType.put(type, histogram.getSummary()));
+        Map<String, LatencyHistogram.Summary> serverStages = new TreeMap<>();
+        results.serverStages.forEach((stage, histogram) -> serverStages.put(stage, histogram.getSummary()));
+
+        return Report.builder()
+                .requests(numRequests)
+                .failed(numFailed)
+                .errorRate(numRequests > 0 ? round((double) numFailed / numRequests) : 0)
+                .concurrency(concurrency)
+                .elapsedSeconds(round(elapsedSeconds))
+                .throughputPerSecond(round(numRequests / elapsedSeconds))
+                .throughputPerMinute(round(numRequests / elapsedSeconds * 60))
+                .errors(errors)
+                .latency(results.latency.getSummary())
+                .latencyByType(latencyByType)
+                .serverStages(serverStages)
+                .build();
+    }
+
+    private static double round(final double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    /**
+     * Prints the differences against the baseline, returning whether any of them is a regression
+     */
+    private static boolean compare(JsonNode baseline, JsonNode current, double maxRegressionPercent) {
+        System.out.println("Compared against the baseline (max regression: " + maxRegressionPercent + "%):");
+        boolean regressed = false;
+
+        regressed |= compareValue("throughput_docs_per_s", baseline.path("throughput_docs_per_s").asDouble(),
+                current.path("throughput_docs_per_s").asDouble(), false, maxRegressionPercent);
+        for (String percentile : List.of("p50_ms", "p95_ms", "p99_ms")) {
+            regressed |= compareValue("latency " + percentile, baseline.path("latency").path(percentile).asDouble(),
+                    current.path("latency").path(percentile).asDouble(), true, maxRegressionPercent);
+        }
+
+        // the error rate is compared in percentage points
+        final double baselineErrors = baseline.path("error_rate").asDouble() * 100;
+        final double currentErrors = current.path("error_rate").asDouble() * 100;
+        final boolean errorsRegressed = currentErrors - baselineErrors > maxRegressionPercent;
+        System.out.printf("  %-24s %10.1f%% -> %10.1f%%%s%n", "error rate", baselineErrors, currentErrors,
+                errorsRegressed ? "  REGRESSION" : "");
+
+        return regressed || errorsRegressed;
+    }
+
+    private static boolean compareValue(String name, double baselineValue, double currentValue, boolean lowerIsBetter,
+                                        double maxRegressionPercent) {
+        final double changePercent = baselineValue > 0 ? (currentValue - baselineValue) / baselineValue * 100 : 0;
+        final boolean regressed = (lowerIsBetter ? changePercent : -changePercent) > maxRegressionPercent;
+        System.out.printf("  %-24s %10.1f -> %10.1f (%+.1f%%)%s%n", name, baselineValue, currentValue, changePercent,
+                regressed ? "  REGRESSION" : "");
+        return regressed;
+    }
+
+    /**
+     * Picks the documents to be sent: in turns or, when the mix is given, by the document type picked at random
+     * with the given weights (the documents of the types not in the mix are not sent)
+     */
+    static class DocumentPicker {
+        private final List<Path> documents;
+        private final Map<String, List<Path>> documentsByType;
+        private final Map<String, Double> mix = new LinkedHashMap<>();
+        private final Random random;
+        private long next = 0;
+
+        DocumentPicker(List<Path> documents, Map<String, Double> mix, long seed) {
+            this.documents = documents;
+            this.documentsByType = documents.stream().collect(Collectors.groupingBy(DocumentPicker::getType));
+            this.random = new Random(seed);
+
+            mix.forEach((type, weight) -> {
+                if (!documentsByType.containsKey(type)) {
+                    throw new IllegalArgumentException("No documents of type: " + type + " in the corpus");
+                }
+                if (weight > 0) {
+                    this.mix.put(type, weight);
+                }
+            });
+        }
+
+        static String getType(Path document) {
+            String name = document.getFileName().toString();
+            int extension = name.lastIndexOf('.');
+            return extension > 0 ? name.substring(extension + 1).toLowerCase(Locale.ROOT) : "none";
+        }
+
+        synchronized Path next() {
+            if (mix.isEmpty()) {
+                return documents.get((int) (next++ % documents.size()));
+            }
+
+            double pick = random.nextDouble() * mix.values().stream().mapToDouble(Double::doubleValue).sum();
+            String type = null;
+            for (Map.Entry<String, Double> entry : mix.entrySet()) {
+                type = entry.getKey();
+                pick -= entry.getValue();
+                if (pick < 0) {
+                    break;
+                }
+            }
+            List<Path> typeDocuments = documentsByType.get(type);
+            return typeDocuments.get(random.nextInt(typeDocuments.size()));
+        }
+    }
+}
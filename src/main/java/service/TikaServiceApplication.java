@@ -6,7 +6,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import service.controller.TikaServiceController;
+import tika.utils.StartupTimings;
+
+import java.lang.management.ManagementFactory;
 
 
 /**
@@ -26,4 +31,13 @@ public class TikaServiceApplication {
 			logger.error(e.getMessage());
 		}
 	}
-}
\ No newline at end of file
+
+	@EventListener
+	public void onApplicationReady(ApplicationReadyEvent event) {
+		if (event.getTimeTaken() != null) {
+			StartupTimings.recordMs("application_context", event.getTimeTaken().toMillis());
+		}
+		// incl. the JVM startup and the class loading before the application context is started
+		StartupTimings.recordMs("jvm_to_ready", ManagementFactory.getRuntimeMXBean().getUptime());
+	}
+}
@@ -0,0 +1,268 @@
+package service.controller;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import tika.model.TikaProcessingResult;
+import tika.processor.AbstractTikaProcessor;
+import tika.processor.BulkProcessingConfig;
+import tika.processor.BulkProcessingScheduler;
+import tika.processor.ProcessingCostEstimate;
+import tika.processor.ProcessingLane;
+import tika.processor.ProcessingProgress;
+import tika.utils.DocumentBuffer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.*;
+
+
+/**
+ * Schedules the documents from the bulk requests on the bounded processing stage, shared with the single
+ * document requests and the jobs, hence subject to the same workers, queues and OCR budget.
+ *
+ * Each document is firstly classified by one of the workers of the text lane (so that neither the content type
+ * detection nor the loading of PDFs runs on the request thread). The text-native documents are then processed
+ * right away by the same worker, whereas the ones that need OCR are admitted against the OCR budget (without
+ * holding any thread while waiting) and processed in the OCR lane.
+ *
+ * The documents are not failed right away when the queue of the lane is full: the submission of the document
+ * blocks the caller (i.e. the reading of the following documents of the request) until there is room in the text
+ * lane, whereas the admitted documents are re-submitted to the full OCR lane in the background, counting against
+ * the documents in flight of the request meanwhile. The same applies to the documents waiting for the OCR budget.
+ * Only the documents that cannot be scheduled within the max waiting time are reported as failed.
+ *
+ * Each document is given a timeout counted from the moment its processing starts: when it passes, the document
+ * is reported as failed and its worker is interrupted.
+ */
+@Component
+public class BulkProcessingStage implements BulkProcessingScheduler {
+
+    @Autowired
+    private BulkProcessingConfig config;
+
+    @Autowired
+    private DocumentProcessingExecutor processingExecutor;
+
+    @Autowired
+    private ProcessingAdmissionControl admissionControl;
+
+    // the initial and the max delay between the attempts to submit the document to the full lane
+    private static final long MIN_RETRY_DELAY_MILLIS = 50;
+    private static final long MAX_RETRY_DELAY_MILLIS = 1000;
+
+    // used for running the documents timeouts and the re-submissions to the full lanes
+    private ScheduledExecutorService timeoutExecutor;
+
+    private final Logger logger = LogManager.getLogger(BulkProcessingStage.class);
+
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tika-bulk-timeout-");
+        threadFactory.setDaemon(true);
+        timeoutExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timeoutExecutor.shutdownNow();
+    }
+
+    @Override
+    public int getMaxDocumentsInFlight() {
+        return Math.max(1, config.getNumConsumers());
+    }
+
+    @Override
+    public CompletableFuture<TikaProcessingResult> submit(final DocumentBuffer document, final AbstractTikaProcessor processor) {
+        final CompletableFuture<TikaProcessingResult> result = new CompletableFuture<>();
+
+        // NB: the worker keeps its own reference to the document (and the scheduling of the admitted document
+        //   another one), as the caller can leave early (e.g. while the document waits for the OCR budget)
+        try {
+            // the caller is held back while the lane is full, so that the following documents are not read
+            final long deadlineMillis = getRetryDeadlineMillis();
+            for (long delayMillis = MIN_RETRY_DELAY_MILLIS; ; delayMillis = Math.min(2 * delayMillis, MAX_RETRY_DELAY_MILLIS)) {
+                try {
+                    processingExecutor.submit(document, ProcessingLane.TEXT, () -> {
+                        classify(document, processor, result);
+                        return null;
+                    });
+                    break;
+                }
+                catch (DocumentProcessingExecutor.LaneFullException e) {
+                    if (System.currentTimeMillis() + delayMillis > deadlineMillis) {
+                        throw e;
+                    }
+                    Thread.sleep(delayMillis);
+                }
+            }
+        }
+        catch (RejectedExecutionException | IOException e) {
+            result.complete(createFailedResult(e));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.complete(createFailedResult(e));
+        }
+        return result;
+    }
+
+    private long getRetryDeadlineMillis() {
+        return System.currentTimeMillis() + Math.max(0, config.getMaxWaitSeconds()) * 1000L;
+    }
+
+    private void classify(final DocumentBuffer document, final AbstractTikaProcessor processor,
+                          final CompletableFuture<TikaProcessingResult> result) {
+        try {
+            if (result.isDone()) {
+                return;
+            }
+
+            final ProcessingCostEstimate estimate = processingExecutor.estimateCost(document, processor);
+            final CompletableFuture<ProcessingAdmissionControl.Admission> admission = admissionControl.admitAsync(estimate);
+
+            if (admission.isDone() && !admission.isCompletedExceptionally()
+                    && processingExecutor.isSharedLane(ProcessingLane.TEXT, estimate.getLane())) {
+                // no need to wait, nor to be queued again
+                try (ProcessingAdmissionControl.Admission ignored = admission.join()) {
+                    run(document, processor, estimate, result);
+                }
+            }
+            else {
+                // the reference of the document is handed over to the scheduling of the admitted document
+                document.retain();
+                final long deadlineMillis = getRetryDeadlineMillis();
+                admission.whenComplete((admitted, e) -> schedule(document, processor, estimate, admitted, e, result,
+                        deadlineMillis, MIN_RETRY_DELAY_MILLIS));
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            result.complete(createFailedResult(e));
+        }
+    }
+
+    private void schedule(final DocumentBuffer document, final AbstractTikaProcessor processor,
+                          final ProcessingCostEstimate estimate, final ProcessingAdmissionControl.Admission admission,
+                          final Throwable admissionError, final CompletableFuture<TikaProcessingResult> result,
+                          final long deadlineMillis, final long retryDelayMillis) {
+        try {
+            if (admissionError != null) {
+                result.complete(createFailedResult(admissionError instanceof CompletionException
+                        ? admissionError.getCause() : admissionError));
+                return;
+            }
+            if (result.isDone()) {
+                admission.close();
+                return;
+            }
+
+            // the budget is taken until the processing of the document completes
+            processingExecutor.submit(document, estimate.getLane(), () -> {
+                try {
+                    if (!result.isDone()) {
+                        run(document, processor, estimate, result);
+                    }
+                }
+                finally {
+                    admission.close();
+                }
+                return null;
+            });
+        }
+        catch (DocumentProcessingExecutor.LaneFullException e) {
+            if (System.currentTimeMillis() + retryDelayMillis > deadlineMillis) {
+                admission.close();
+                result.complete(createFailedResult(e));
+            }
+            else {
+                // submitted again once there may be room in the lane, still holding the admission
+                retry(document, () -> schedule(document, processor, estimate, admission, null, result, deadlineMillis,
+                        Math.min(2 * retryDelayMillis, MAX_RETRY_DELAY_MILLIS)), retryDelayMillis, admission, result);
+            }
+        }
+        catch (RejectedExecutionException | IOException e) {
+            admission.close();
+            result.complete(createFailedResult(e));
+        }
+        finally {
+            closeQuietly(document);
+        }
+    }
+
+    /**
+     * Runs the attempt to schedule the document again after the delay, with its own reference to the document
+     */
+    private void retry(final DocumentBuffer document, final Runnable attempt, final long delayMillis,
+                       final ProcessingAdmissionControl.Admission admission,
+                       final CompletableFuture<TikaProcessingResult> result) {
+        document.retain();
+        try {
+            timeoutExecutor.schedule(attempt, delayMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            closeQuietly(document);
+            admission.close();
+            result.complete(createFailedResult(e));
+        }
+    }
+
+    private void run(final DocumentBuffer document, final AbstractTikaProcessor processor,
+                     final ProcessingCostEstimate estimate, final CompletableFuture<TikaProcessingResult> result) {
+        final Thread worker = Thread.currentThread();
+        final ScheduledFuture<?> timeout = timeoutExecutor.schedule(() -> {
+            // NB: the result is completed and the worker interrupted under the same lock as when
+            //   the processing finishes, so that the worker cannot be interrupted when running another document
+            synchronized (result) {
+                if (result.complete(createTimeoutResult())) {
+                    worker.interrupt();
+                }
+            }
+        }, config.getDocumentTimeout(), TimeUnit.SECONDS);
+
+        TikaProcessingResult processingResult;
+        try {
+            processingResult = processor.process(document, new ProcessingProgress(), estimate);
+        }
+        catch (Exception e) {
+            logger.error("Error processing the document: " + e.getMessage());
+            processingResult = createFailedResult(e);
+        }
+
+        timeout.cancel(false);
+        synchronized (result) {
+            result.complete(processingResult);
+            // clear the interruption (if any) before the worker picks up another document
+            Thread.interrupted();
+        }
+    }
+
+    private static void closeQuietly(DocumentBuffer document) {
+        try {
+            document.close();
+        }
+        catch (IOException ignored) {}
+    }
+
+    private static TikaProcessingResult createFailedResult(Throwable e) {
+        final String message = e instanceof RejectedExecutionException || e instanceof ProcessingAdmissionControl.CostLimitExceededException
+                ? "The document could not be scheduled for processing: " + e.getMessage()
+                : "Exception caught while processing the document: " + e.getMessage();
+        return TikaProcessingResult.builder()
+                .error(message)
+                .success(false)
+                .build();
+    }
+
+    private TikaProcessingResult createTimeoutResult() {
+        final String message = "The document processing timed out after " + config.getDocumentTimeout() + " s";
+        logger.error(message);
+        return TikaProcessingResult.builder()
+                .error(message)
+                .success(false)
+                .build();
+    }
+}
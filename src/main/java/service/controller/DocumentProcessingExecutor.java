@@ -0,0 +1,318 @@
+package service.controller;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import service.model.ProcessingQueueInformation;
+import tika.processor.AbstractTikaProcessor;
+import tika.processor.ProcessingCostEstimate;
+import tika.processor.ProcessingLane;
+import tika.utils.DocumentBuffer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A bounded stage processing the documents, separate from the request threads.
+ *
+ * The documents are processed by a fixed number of workers, with a bounded queue of the documents waiting
+ * for processing. When the queue is full, the documents are rejected right away (so that the clients can
+ * retry later or elsewhere) instead of overloading the node.
+ *
+ * The text-native documents and the ones that need OCR are processed in separate lanes, each with its own
+ * workers, queue and metrics, so that the processing time of the former does not depend on the OCR backlog.
+ */
+@Component
+public class DocumentProcessingExecutor {
+
+    @Autowired
+    private TikaServiceConfig serviceConfig;
+
+    private final Map<ProcessingLane, Lane> lanes = new EnumMap<>(ProcessingLane.class);
+
+    private final Logger logger = LogManager.getLogger(DocumentProcessingExecutor.class);
+
+    /**
+     * A single execution lane, with its workers, queue and metrics
+     */
+    private static class Lane {
+        final String name;
+        final ThreadPoolExecutor executor;
+
+        final LongAdder numCompleted = new LongAdder();
+        final LongAdder numRejected = new LongAdder();
+        final LongAdder totalWaitTimeNanos = new LongAdder();
+        final LongAdder totalProcessingTimeNanos = new LongAdder();
+
+        Lane(String name, int numWorkers, int queueCapacity) {
+            if (numWorkers <= 0) {
+                numWorkers = Runtime.getRuntime().availableProcessors();
+            }
+
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tika-processing-" + name + "-");
+            threadFactory.setDaemon(true);
+
+            this.name = name;
+            this.executor = new ThreadPoolExecutor(numWorkers, numWorkers, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                    threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        boolean hasCapacity() {
+            return executor.getActiveCount() < executor.getMaximumPoolSize() || executor.getQueue().remainingCapacity() > 0;
+        }
+
+        long getAvgProcessingTimeMs() {
+            final long completed = numCompleted.sum();
+            return completed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalProcessingTimeNanos.sum() / completed) : 0;
+        }
+
+        long getEstimatedWaitTimeMs() {
+            // all the documents in the queue need to be processed first, using all the workers
+            return executor.getQueue().size() * getAvgProcessingTimeMs() / Math.max(1, executor.getMaximumPoolSize());
+        }
+
+        ProcessingQueueInformation getQueueInformation() {
+            final long completed = numCompleted.sum();
+
+            return ProcessingQueueInformation.builder()
+                    .numWorkers(executor.getMaximumPoolSize())
+                    .activeWorkers(executor.getActiveCount())
+                    .queueCapacity(executor.getQueue().size() + executor.getQueue().remainingCapacity())
+                    .queueDepth(executor.getQueue().size())
+                    .completed(completed)
+                    .rejected(numRejected.sum())
+                    .avgWaitTimeMs(completed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitTimeNanos.sum() / completed) : 0)
+                    .avgProcessingTimeMs(getAvgProcessingTimeMs())
+                    .estimatedWaitTimeMs(getEstimatedWaitTimeMs())
+                    .build();
+        }
+    }
+
+    /**
+     * Thrown when the queue of the lane is full
+     */
+    public static class LaneFullException extends RejectedExecutionException {
+        private final ProcessingLane lane;
+
+        LaneFullException(ProcessingLane lane) {
+            super("Processing queue of the " + lane.name().toLowerCase() + " lane is full");
+            this.lane = lane;
+        }
+
+        public ProcessingLane getLane() {
+            return lane;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        Lane ocrLane = new Lane("ocr", serviceConfig.getExecutorNumWorkers(), serviceConfig.getExecutorQueueCapacity());
+        lanes.put(ProcessingLane.OCR, ocrLane);
+
+        if (serviceConfig.isExecutorLanesEnabled()) {
+            lanes.put(ProcessingLane.TEXT, new Lane("text", serviceConfig.getExecutorTextLaneNumWorkers(),
+                    serviceConfig.getExecutorTextLaneQueueCapacity()));
+        }
+        else {
+            // all the documents are processed by the same workers
+            lanes.put(ProcessingLane.TEXT, ocrLane);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        lanes.values().forEach(lane -> lane.executor.shutdownNow());
+    }
+
+    /**
+     * Estimates the cost of the document when it is needed to schedule it, i.e. when the documents are processed
+     * in separate lanes or admitted against the OCR budget. Otherwise, the document is not inspected up front
+     * and is processed in the OCR lane (shared by all the documents then).
+     */
+    public ProcessingCostEstimate estimateCost(final DocumentBuffer document, final AbstractTikaProcessor processor)
+            throws IOException {
+        if (!serviceConfig.isExecutorLanesEnabled() && !serviceConfig.isAdmissionEnabled()) {
+            return ProcessingCostEstimate.unknown();
+        }
+        return processor.estimateCost(document);
+    }
+
+    /**
+     * Checks whether any of the lanes has room for the document, so that the request can be rejected before
+     * the cost of the document is estimated (i.e. the lane of the document is known).
+     * Throws LaneFullException when the queues of all the lanes are full.
+     */
+    public void checkCapacity() {
+        for (Lane lane : lanes.values()) {
+            if (lane.hasCapacity()) {
+                return;
+            }
+        }
+        lanes.get(ProcessingLane.OCR).numRejected.increment();
+        logger.warn("Processing queues of all the lanes are full, rejecting the document");
+        throw new LaneFullException(ProcessingLane.OCR);
+    }
+
+    /**
+     * Thrown when the document has not been processed within the timeout, its processing is cancelled then
+     */
+    public static class DocumentTimeoutException extends TimeoutException {
+        DocumentTimeoutException(int timeoutSeconds) {
+            super("The document processing timed out after " + timeoutSeconds + " s");
+        }
+    }
+
+    /**
+     * Processes the document using one of the workers of the lane, waiting for the result up to the document
+     * timeout. Throws LaneFullException when the queue of the lane is full and DocumentTimeoutException when
+     * the document has not been processed in time (cancelling its processing, i.e. interrupting the worker).
+     */
+    public <T> T execute(final DocumentBuffer document, final ProcessingLane lane, final Callable<T> task)
+            throws InterruptedException, ExecutionException, IOException, DocumentTimeoutException {
+        final int timeoutSeconds = serviceConfig.getExecutorDocumentTimeoutSeconds();
+        Future<T> result = submit(document, lane, task);
+        try {
+            return timeoutSeconds > 0 ? result.get(timeoutSeconds, TimeUnit.SECONDS) : result.get();
+        }
+        catch (InterruptedException e) {
+            result.cancel(true);
+            throw e;
+        }
+        catch (TimeoutException e) {
+            result.cancel(true);
+            logger.warn("The document processing timed out after " + timeoutSeconds + " s, cancelling it");
+            throw new DocumentTimeoutException(timeoutSeconds);
+        }
+    }
+
+    /**
+     * Submits the document for processing by one of the workers of the lane, without waiting for the result.
+     * Throws LaneFullException when the queue of the lane is full.
+     */
+    public <T> Future<T> submit(final DocumentBuffer document, final ProcessingLane lane, final Callable<T> task)
+            throws IOException {
+        final Lane processingLane = lanes.get(lane);
+        final long submitTimeNanos = System.nanoTime();
+
+        // the worker keeps its own reference to the document, as the request can leave early
+        document.retain();
+
+        // either the worker or the cancellation (of the task not started yet, hence never run) releases the document
+        final AtomicBoolean started = new AtomicBoolean(false);
+        final FutureTask<T> result = new FutureTask<>(() -> {
+            if (!started.compareAndSet(false, true)) {
+                return null;
+            }
+            final long startTimeNanos = System.nanoTime();
+            processingLane.totalWaitTimeNanos.add(startTimeNanos - submitTimeNanos);
+            try {
+                return task.call();
+            }
+            finally {
+                processingLane.totalProcessingTimeNanos.add(System.nanoTime() - startTimeNanos);
+                processingLane.numCompleted.increment();
+                document.close();
+            }
+        }) {
+            @Override
+            protected void done() {
+                if (isCancelled() && started.compareAndSet(false, true)) {
+                    closeQuietly(document);
+                }
+            }
+        };
+
+        try {
+            processingLane.executor.execute(result);
+            return result;
+        }
+        catch (RejectedExecutionException e) {
+            processingLane.numRejected.increment();
+            document.close();
+            logger.warn("Processing queue of the " + processingLane.name + " lane is full, rejecting the document");
+            throw new LaneFullException(lane);
+        }
+    }
+
+    private static void closeQuietly(DocumentBuffer document) {
+        try {
+            document.close();
+        }
+        catch (IOException ignored) {}
+    }
+
+    /**
+     * Checks whether the documents of both the lanes are processed by the same workers (i.e. the lanes are disabled)
+     */
+    public boolean isSharedLane(final ProcessingLane lane, final ProcessingLane otherLane) {
+        return lanes.get(lane) == lanes.get(otherLane);
+    }
+
+    /**
+     * Returns the suggested time (s) after which the requests rejected by the lane can be retried
+     */
+    public int getRetryAfterSeconds(final RejectedExecutionException rejection) {
+        return getRetryAfterSeconds(rejection instanceof LaneFullException laneFull ? laneFull.getLane() : ProcessingLane.OCR);
+    }
+
+    public int getRetryAfterSeconds(final ProcessingLane lane) {
+        final long estimatedWaitTimeSeconds = TimeUnit.MILLISECONDS.toSeconds(lanes.get(lane).getEstimatedWaitTimeMs());
+        return (int) Math.max(serviceConfig.getExecutorMinRetryAfterSeconds(), estimatedWaitTimeSeconds);
+    }
+
+    /**
+     * Returns the state of the processing queue, summed over all the lanes, with the details of each lane
+     */
+    public ProcessingQueueInformation getQueueInformation() {
+        if (!serviceConfig.isExecutorLanesEnabled()) {
+            return lanes.get(ProcessingLane.OCR).getQueueInformation();
+        }
+
+        Map<String, ProcessingQueueInformation> lanesInformation = new LinkedHashMap<>();
+        for (Lane lane : lanes.values()) {
+            lanesInformation.put(lane.name, lane.getQueueInformation());
+        }
+
+        long completed = 0, totalWaitTimeNanos = 0, totalProcessingTimeNanos = 0;
+        int numWorkers = 0, activeWorkers = 0, queueCapacity = 0, queueDepth = 0;
+        long rejected = 0, estimatedWaitTimeMs = 0;
+
+        for (Lane lane : lanes.values()) {
+            ProcessingQueueInformation information = lanesInformation.get(lane.name);
+            numWorkers += information.getNumWorkers();
+            activeWorkers += information.getActiveWorkers();
+            queueCapacity += information.getQueueCapacity();
+            queueDepth += information.getQueueDepth();
+            rejected += information.getRejected();
+            estimatedWaitTimeMs = Math.max(estimatedWaitTimeMs, information.getEstimatedWaitTimeMs());
+
+            completed += lane.numCompleted.sum();
+            totalWaitTimeNanos += lane.totalWaitTimeNanos.sum();
+            totalProcessingTimeNanos += lane.totalProcessingTimeNanos.sum();
+        }
+
+        return ProcessingQueueInformation.builder()
+                .numWorkers(numWorkers)
+                .activeWorkers(activeWorkers)
+                .queueCapacity(queueCapacity)
+                .queueDepth(queueDepth)
+                .completed(completed)
+                .rejected(rejected)
+                .avgWaitTimeMs(completed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitTimeNanos / completed) : 0)
+                .avgProcessingTimeMs(completed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalProcessingTimeNanos / completed) : 0)
+                .estimatedWaitTimeMs(estimatedWaitTimeMs)
+                .lanes(lanesInformation)
+                .build();
+    }
+}
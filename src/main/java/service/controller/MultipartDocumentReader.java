@@ -0,0 +1,80 @@
+package service.controller;
+
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import tika.model.TikaFileResource;
+import tika.processor.AbstractTikaProcessor;
+import tika.utils.DocumentBuffer;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Reads the documents sent as multipart files directly from the request stream, one part at a time.
+ *
+ * In contrast to the multipart files resolved by the servlet container, the parts are not stored up-front:
+ * each part is buffered (in memory or spilled to a temporary file) only when the next document is requested,
+ * hence the documents can be processed while the rest of the request is still being received.
+ */
+class MultipartDocumentReader implements AbstractTikaProcessor.BulkResourceSupplier {
+
+    /**
+     * Buffers the content of a single part
+     */
+    @FunctionalInterface
+    interface PartBuffer {
+        DocumentBuffer buffer(InputStream stream) throws IOException;
+    }
+
+    private final FileItemIterator iterator;
+    private final String fieldName;
+    private final PartBuffer partBuffer;
+
+    MultipartDocumentReader(HttpServletRequest request, String fieldName, long maxFileSize, long maxRequestSize,
+                            PartBuffer partBuffer) throws IOException {
+        ServletFileUpload upload = new ServletFileUpload();
+        upload.setFileSizeMax(maxFileSize);
+        upload.setSizeMax(maxRequestSize);
+
+        try {
+            this.iterator = upload.getItemIterator(request);
+        }
+        catch (FileUploadException e) {
+            throw new IOException("Error reading the multipart request: " + e.getMessage(), e);
+        }
+        this.fieldName = fieldName;
+        this.partBuffer = partBuffer;
+    }
+
+    static boolean isMultipartContent(HttpServletRequest request) {
+        return ServletFileUpload.isMultipartContent(request);
+    }
+
+    /**
+     * Returns the next document sent in the request (skipping the other form fields),
+     * or null when there are no more documents
+     */
+    @Override
+    public TikaFileResource next() throws IOException {
+        try {
+            while (iterator.hasNext()) {
+                FileItemStream item = iterator.next();
+                if (item.isFormField() || !fieldName.equals(item.getFieldName())) {
+                    continue;
+                }
+
+                try (InputStream stream = item.openStream()) {
+                    return new TikaFileResource(item.getName(), partBuffer.buffer(stream));
+                }
+            }
+            return null;
+        }
+        catch (FileUploadException e) {
+            throw new IOException("Error reading the multipart request: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package service.controller;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import tika.processor.ProcessingCostEstimate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Admits the documents for processing against the per-node budget of the pages under OCR.
+ *
+ * Each document takes its estimated cost (the number of pages expected to need OCR) out of the budget
+ * until its processing completes. When the budget is exhausted, the document waits (in the order of arrival)
+ * until enough of it is released; the documents which cannot be admitted within the max waiting time are
+ * rejected, and the ones which cost alone is over the per-document limit are rejected right away.
+ * The text-native documents have no cost, hence are always admitted.
+ *
+ * The documents can either wait for the admission on the calling thread (the single document requests and
+ * the jobs) or be notified once admitted (the documents from the bulk requests), so that no thread is held
+ * while waiting.
+ */
+@Component
+public class ProcessingAdmissionControl {
+
+    @Autowired
+    private TikaServiceConfig serviceConfig;
+
+    private int budgetSize;
+
+    // the part of the budget not taken by the admitted documents, guarded by the lock of the component
+    private int availableBudget;
+
+    // the documents waiting for the budget, in the order of arrival
+    private final Deque<PendingAdmission> waiting = new ArrayDeque<>();
+
+    private final Logger logger = LogManager.getLogger(ProcessingAdmissionControl.class);
+
+    /**
+     * The admitted document, releasing its cost from the budget when closed
+     */
+    public interface Admission extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Admission NO_ADMISSION = () -> {};
+
+    /**
+     * The document waiting for the budget
+     */
+    private static class PendingAdmission {
+        final int cost;
+        final int permits;
+        final CompletableFuture<Admission> admission = new CompletableFuture<>();
+
+        PendingAdmission(int cost, int permits) {
+            this.cost = cost;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * Thrown when the document could not be admitted within the max waiting time
+     */
+    public static class BudgetExceededException extends RejectedExecutionException {
+        BudgetExceededException(int cost) {
+            super("The OCR budget is exhausted, cannot admit the document of cost: " + cost + " pages");
+        }
+    }
+
+    /**
+     * Thrown when the cost of the document alone is over the per-document limit
+     */
+    public static class CostLimitExceededException extends RuntimeException {
+        CostLimitExceededException(int cost, int limit) {
+            super("The document needs OCR on an estimated " + cost + " pages, over the limit of " + limit + " pages");
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        budgetSize = Math.max(1, serviceConfig.getAdmissionOcrPagesBudget());
+        availableBudget = budgetSize;
+    }
+
+    /**
+     * Admits the document of the given estimated cost, waiting for the budget when needed.
+     * Throws BudgetExceededException when the budget was not released within the max waiting time and
+     * CostLimitExceededException when the document is over the per-document limit.
+     */
+    public Admission admit(final ProcessingCostEstimate estimate) throws InterruptedException {
+        final CompletableFuture<Admission> admission = admitAsync(estimate);
+        try {
+            return admission.get();
+        }
+        catch (InterruptedException e) {
+            // the document may have been admitted in the meantime, then its cost is returned right away
+            if (!admission.cancel(false)) {
+                admission.thenAccept(Admission::close);
+            }
+            throw e;
+        }
+        catch (ExecutionException e) {
+            // the rejections are runtime exceptions
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    /**
+     * Admits the document of the given estimated cost, without waiting for the budget: the returned future
+     * completes once the document is admitted, or fails with BudgetExceededException when the budget was not
+     * released within the max waiting time and with CostLimitExceededException when the document is over
+     * the per-document limit. The waiting document is withdrawn when the future is cancelled.
+     */
+    public CompletableFuture<Admission> admitAsync(final ProcessingCostEstimate estimate) {
+        final int cost = estimate.getCost();
+        if (!serviceConfig.isAdmissionEnabled() || cost <= 0) {
+            return CompletableFuture.completedFuture(NO_ADMISSION);
+        }
+
+        final int maxDocumentCost = serviceConfig.getAdmissionMaxDocumentOcrPages();
+        if (maxDocumentCost > 0 && cost > maxDocumentCost) {
+            logger.info("Rejecting the document of cost: " + cost + " pages, over the per-document limit");
+            return CompletableFuture.failedFuture(new CostLimitExceededException(cost, maxDocumentCost));
+        }
+
+        // the documents costing more than the whole budget are admitted once it is fully available
+        final PendingAdmission pending = new PendingAdmission(cost, Math.min(cost, budgetSize));
+        synchronized (this) {
+            if (waiting.isEmpty() && availableBudget >= pending.permits) {
+                availableBudget -= pending.permits;
+                return CompletableFuture.completedFuture(createAdmission(pending.permits));
+            }
+            waiting.addLast(pending);
+        }
+
+        CompletableFuture.delayedExecutor(serviceConfig.getAdmissionMaxWaitSeconds(), TimeUnit.SECONDS)
+                .execute(() -> expire(pending));
+        pending.admission.whenComplete((admission, e) -> {
+            if (e instanceof CancellationException) {
+                withdraw(pending);
+            }
+        });
+        return pending.admission;
+    }
+
+    private void expire(final PendingAdmission pending) {
+        if (withdraw(pending)) {
+            logger.info("Rejecting the document of cost: " + pending.cost + " pages, the OCR budget is exhausted");
+            pending.admission.completeExceptionally(new BudgetExceededException(pending.cost));
+        }
+    }
+
+    /**
+     * Removes the document from the waiting ones, unless it has already been admitted
+     */
+    private boolean withdraw(final PendingAdmission pending) {
+        final boolean removed;
+        synchronized (this) {
+            removed = waiting.remove(pending);
+        }
+        if (removed) {
+            // the documents behind it may fit in the budget now
+            release(0);
+        }
+        return removed;
+    }
+
+    private void release(final int permits) {
+        List<PendingAdmission> admitted = new ArrayList<>();
+        synchronized (this) {
+            availableBudget += permits;
+            while (!waiting.isEmpty() && availableBudget >= waiting.peekFirst().permits) {
+                PendingAdmission next = waiting.pollFirst();
+                availableBudget -= next.permits;
+                admitted.add(next);
+            }
+        }
+
+        // NB: the waiting documents are notified outside the lock, as they carry on with their processing
+        for (PendingAdmission next : admitted) {
+            if (!next.admission.complete(createAdmission(next.permits))) {
+                // the document has left in the meantime
+                release(next.permits);
+            }
+        }
+    }
+
+    private Admission createAdmission(final int permits) {
+        return new Admission() {
+            private boolean released = false;
+
+            @Override
+            public void close() {
+                synchronized (this) {
+                    if (released) {
+                        return;
+                    }
+                    released = true;
+                }
+                release(permits);
+            }
+        };
+    }
+
+    public int getBudgetSize() {
+        return budgetSize;
+    }
+
+    /**
+     * Returns the part of the budget (in pages) that is currently not taken by the admitted documents
+     */
+    public synchronized int getAvailableBudget() {
+        return availableBudget;
+    }
+}
@@ -0,0 +1,265 @@
+package service.controller;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import service.model.ProcessingJobInformation;
+import tika.model.TikaProcessingResult;
+import tika.processor.AbstractTikaProcessor;
+import tika.processor.ProcessingCostEstimate;
+import tika.processor.ProcessingProgress;
+import tika.utils.DocumentBuffer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Manages the asynchronous document processing jobs.
+ *
+ * The jobs are run by the documents processing workers, with their status kept in memory and their results
+ * stored (compressed) in a local directory, so that they can be fetched by the clients later on. Both the jobs
+ * and the results are removed once the configured time-to-live passes since the job completion.
+ */
+@Component
+public class ProcessingJobManager {
+
+    private static final String RESULT_FILE_SUFFIX = ".json.gz";
+
+    @Autowired
+    private TikaServiceConfig serviceConfig;
+
+    @Autowired
+    private DocumentProcessingExecutor processingExecutor;
+
+    @Autowired
+    private ProcessingAdmissionControl admissionControl;
+
+    private final ConcurrentHashMap<String, ProcessingJob> jobs = new ConcurrentHashMap<>();
+
+    private Path storeDirectory;
+
+    private ScheduledExecutorService cleanupExecutor;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Logger logger = LogManager.getLogger(ProcessingJobManager.class);
+
+    private static class ProcessingJob {
+        final String id = UUID.randomUUID().toString();
+        final OffsetDateTime submittedAt = OffsetDateTime.now();
+        final ProcessingProgress progress = new ProcessingProgress();
+        volatile ProcessingJobInformation.Status status = ProcessingJobInformation.Status.QUEUED;
+        volatile OffsetDateTime completedAt;
+        volatile String error;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (serviceConfig.getJobsStoreDirectory() != null && !serviceConfig.getJobsStoreDirectory().isBlank()) {
+            storeDirectory = Paths.get(serviceConfig.getJobsStoreDirectory());
+        }
+        else {
+            storeDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "tika-service-jobs");
+        }
+        Files.createDirectories(storeDirectory);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tika-jobs-cleanup-");
+        threadFactory.setDaemon(true);
+        cleanupExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        cleanupExecutor.scheduleWithFixedDelay(this::removeExpiredJobs, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleanupExecutor.shutdownNow();
+    }
+
+    /**
+     * Submits the document for processing, returning the status of the created job.
+     * Throws RejectedExecutionException when the processing queue is full or the document could not be admitted
+     * against the OCR budget.
+     */
+    public ProcessingJobInformation submit(final DocumentBuffer document, final AbstractTikaProcessor processor)
+            throws IOException, InterruptedException {
+        final ProcessingCostEstimate estimate = processingExecutor.estimateCost(document, processor);
+        // the budget is taken until the job completes
+        final ProcessingAdmissionControl.Admission admission = admissionControl.admit(estimate);
+
+        final ProcessingJob job = new ProcessingJob();
+        jobs.put(job.id, job);
+
+        try {
+            processingExecutor.submit(document, estimate.getLane(), () -> {
+                try {
+                    return runJob(job, document, processor, estimate);
+                }
+                finally {
+                    admission.close();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            admission.close();
+            throw e;
+        }
+
+        logger.info("Submitted processing job: " + job.id);
+        return createJobInformation(job);
+    }
+
+    /**
+     * Returns the status of the job, if present
+     */
+    public Optional<ProcessingJobInformation> getJob(final String jobId) {
+        ProcessingJob job = jobs.get(jobId);
+        if (job != null) {
+            return Optional.of(createJobInformation(job));
+        }
+
+        // the job may have completed before the service was restarted
+        Path resultFile = getResultFile(jobId);
+        if (resultFile == null || !Files.exists(resultFile)) {
+            return Optional.empty();
+        }
+
+        OffsetDateTime completedAt = null;
+        try {
+            completedAt = OffsetDateTime.ofInstant(Files.getLastModifiedTime(resultFile).toInstant(), ZoneId.systemDefault());
+        }
+        catch (IOException e) {
+            logger.debug("Cannot read the job result modification time: " + e.getMessage());
+        }
+
+        return Optional.of(ProcessingJobInformation.builder()
+                .jobId(jobId)
+                .status(ProcessingJobInformation.Status.COMPLETED)
+                .completedAt(completedAt)
+                .build());
+    }
+
+    /**
+     * Returns the result of the completed job, if present
+     */
+    public Optional<TikaProcessingResult> getResult(final String jobId) throws IOException {
+        Path resultFile = getResultFile(jobId);
+        if (resultFile == null || !Files.exists(resultFile)) {
+            return Optional.empty();
+        }
+
+        try (InputStream stream = new GZIPInputStream(Files.newInputStream(resultFile))) {
+            return Optional.of(objectMapper.readValue(stream, TikaProcessingResult.class));
+        }
+    }
+
+    private TikaProcessingResult runJob(final ProcessingJob job, final DocumentBuffer document,
+                                        final AbstractTikaProcessor processor, final ProcessingCostEstimate estimate)
+            throws IOException {
+        job.status = ProcessingJobInformation.Status.RUNNING;
+        try {
+            TikaProcessingResult result = processor.process(document, job.progress, estimate);
+            storeResult(job.id, result);
+
+            job.completedAt = OffsetDateTime.now();
+            job.status = ProcessingJobInformation.Status.COMPLETED;
+            logger.info("Completed processing job: " + job.id);
+            return result;
+        }
+        catch (IOException | RuntimeException e) {
+            logger.error("Processing job: " + job.id + " failed: " + e.getMessage());
+            job.error = e.getMessage();
+            job.completedAt = OffsetDateTime.now();
+            job.status = ProcessingJobInformation.Status.FAILED;
+            throw e;
+        }
+    }
+
+    private void storeResult(final String jobId, final TikaProcessingResult result) throws IOException {
+        // the result is written to a temporary file first, so that the readers never see a partial result
+        Path tmpFile = Files.createTempFile(storeDirectory, jobId, ".tmp");
+        try {
+            try (OutputStream stream = new GZIPOutputStream(Files.newOutputStream(tmpFile))) {
+                objectMapper.writeValue(stream, result);
+            }
+            Files.move(tmpFile, getResultFile(jobId), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    private Path getResultFile(final String jobId) {
+        // only the valid job identifiers are resolved, so that no other files can be accessed
+        try {
+            UUID.fromString(jobId);
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+        return storeDirectory.resolve(jobId + RESULT_FILE_SUFFIX);
+    }
+
+    private ProcessingJobInformation createJobInformation(final ProcessingJob job) {
+        return ProcessingJobInformation.builder()
+                .jobId(job.id)
+                .status(job.status)
+                .pagesDone(job.progress.getPagesDone())
+                .pagesTotal(job.progress.getPagesTotal())
+                .submittedAt(job.submittedAt)
+                .completedAt(job.completedAt)
+                .error(job.error)
+                .build();
+    }
+
+    private void removeExpiredJobs() {
+        removeJobsCompletedBefore(Instant.now().minus(serviceConfig.getJobsResultTtlMinutes(), ChronoUnit.MINUTES));
+    }
+
+    /**
+     * Removes the jobs, together with their results, which completed before the given time
+     */
+    public void removeJobsCompletedBefore(final Instant expiryTime) {
+        jobs.values().removeIf(job -> job.completedAt != null && job.completedAt.toInstant().isBefore(expiryTime));
+
+        try (Stream<Path> resultFiles = Files.list(storeDirectory)) {
+            resultFiles.filter(path -> path.getFileName().toString().endsWith(RESULT_FILE_SUFFIX))
+                    .forEach(path -> {
+                        try {
+                            if (Files.getLastModifiedTime(path).toInstant().isBefore(expiryTime)) {
+                                Files.deleteIfExists(path);
+                            }
+                        }
+                        catch (IOException e) {
+                            logger.warn("Cannot remove the expired job result: " + path + ", " + e.getMessage());
+                        }
+                    });
+        }
+        catch (IOException e) {
+            logger.warn("Cannot list the job results: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package service.controller;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import service.model.ReadinessInformation;
+import service.model.ReadinessInformation.WarmUpState;
+import service.model.WarmUpStepInformation;
+import tika.legacy.LegacyTikaProcessor;
+import tika.model.TikaProcessingResult;
+import tika.processor.AbstractTikaProcessor;
+import tika.processor.CompositeTikaProcessor;
+import tika.processor.ProcessingCostEstimate;
+import tika.utils.DocumentBuffer;
+import tika.utils.StartupTimings;
+import tika.utils.WarmUpCorpus;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Warms up the processing paths on startup, before the service is reported as ready.
+ *
+ * The sample documents (the text PDF, the scanned PDF, DOCX, HTML and the image) are run through the default
+ * documents processor, so that the classes are loaded, the code is compiled by JIT, the font caches are built
+ * and the OCR engine is launched before the first requests arrive. The warm-up runs once the application context
+ * is started and the failures of the individual documents (e.g. with no OCR installed) do not fail the startup.
+ */
+@Component
+public class ProcessingWarmUp implements ApplicationRunner {
+
+    @Autowired
+    private TikaServiceConfig serviceConfig;
+
+    @Autowired
+    @Qualifier("legacyTikaProcessor")
+    private LegacyTikaProcessor legacyTikaProcessor;
+
+    @Autowired
+    @Qualifier("compositeTikaProcessor")
+    private CompositeTikaProcessor compositeTikaProcessor;
+
+    private volatile WarmUpState state = WarmUpState.PENDING;
+
+    private volatile Long warmUpTimeMs;
+
+    private final List<WarmUpStepInformation> steps = new CopyOnWriteArrayList<>();
+
+    private final Logger logger = LogManager.getLogger(ProcessingWarmUp.class);
+
+    @PostConstruct
+    public void init() {
+        if (!serviceConfig.isWarmUpEnabled()) {
+            state = WarmUpState.DISABLED;
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (state != WarmUpState.PENDING) {
+            return;
+        }
+        state = WarmUpState.RUNNING;
+
+        final long startTimeNanos = System.nanoTime();
+        try {
+            // use the same processor as the one selected for processing the requests
+            final AbstractTikaProcessor processor = serviceConfig.isUseLegacyTikaProcessor()
+                    ? legacyTikaProcessor : compositeTikaProcessor;
+
+            List<WarmUpCorpus.SampleDocument> documents;
+            final String documentsDirectory = serviceConfig.getWarmUpDocumentsDirectory();
+            if (documentsDirectory != null && !documentsDirectory.isBlank()) {
+                documents = WarmUpCorpus.fromDirectory(Paths.get(documentsDirectory));
+            }
+            else {
+                documents = WarmUpCorpus.createBuiltIn();
+            }
+
+            logger.info("Warming up the processing using: " + documents.size() + " sample documents");
+            for (WarmUpCorpus.SampleDocument document : documents) {
+                steps.add(warmUp(processor, document, Math.max(1, serviceConfig.getWarmUpIterations())));
+            }
+        }
+        catch (Exception e) {
+            logger.error("Error warming up the processing: " + e.getMessage());
+        }
+        finally {
+            warmUpTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos);
+            StartupTimings.recordMs("warm_up", warmUpTimeMs);
+            state = WarmUpState.COMPLETED;
+            logger.info("Warm-up completed in: " + warmUpTimeMs + " ms");
+        }
+    }
+
+    private WarmUpStepInformation warmUp(final AbstractTikaProcessor processor,
+                                         final WarmUpCorpus.SampleDocument document,
+                                         final int iterations) {
+        WarmUpStepInformation.WarmUpStepInformationBuilder step = WarmUpStepInformation.builder()
+                .name(document.getName())
+                .iterations(iterations)
+                .success(true);
+
+        List<Long> runTimesMs = new ArrayList<>();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                final long startTimeNanos = System.nanoTime();
+                try (DocumentBuffer buffer = DocumentBuffer.fromStream(
+                        new ByteArrayInputStream(document.getContent()), Long.MAX_VALUE, null)) {
+                    ProcessingCostEstimate estimate = processor.estimateCost(buffer);
+                    step.contentType(estimate.getContentType());
+
+                    // the results cache is bypassed, as otherwise only the first iteration would run the parsers
+                    TikaProcessingResult result = processor.processUncached(buffer);
+                    if (!Boolean.TRUE.equals(result.getSuccess())) {
+                        step.success(false).error(result.getError());
+                    }
+                }
+                runTimesMs.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos));
+            }
+        }
+        catch (Exception e) {
+            step.success(false).error(e.getMessage());
+        }
+
+        if (!runTimesMs.isEmpty()) {
+            step.firstRunTimeMs(runTimesMs.get(0))
+                    .lastRunTimeMs(runTimesMs.get(runTimesMs.size() - 1))
+                    .totalTimeMs(runTimesMs.stream().mapToLong(Long::longValue).sum());
+        }
+
+        WarmUpStepInformation information = step.build();
+        logger.info("Warm-up of: " + information.getName() + " success: " + information.isSuccess()
+                + ", first run: " + information.getFirstRunTimeMs() + " ms, last run: "
+                + information.getLastRunTimeMs() + " ms");
+        return information;
+    }
+
+    /**
+     * Returns whether the service is ready, i.e. the warm-up has completed (or is disabled)
+     */
+    public boolean isReady() {
+        return state == WarmUpState.COMPLETED || state == WarmUpState.DISABLED;
+    }
+
+    public ReadinessInformation getReadinessInformation() {
+        return ReadinessInformation.builder()
+                .ready(isReady())
+                .warmUpState(state)
+                .warmUpTimeMs(warmUpTimeMs)
+                .steps(new ArrayList<>(steps))
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package service.controller;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+import tika.utils.VirtualThreads;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ExecutorService;
+
+
+/**
+ * Runs the request handling on the virtual threads (JDK 21+), when enabled.
+ *
+ * The request threads mostly wait: for the request content, for the processing workers and for the external
+ * processes (ImageMagick, Tesseract), hence a virtual thread per request replaces the large pool of the platform
+ * request threads. The documents are still parsed by the bounded pools of the processing workers (see
+ * DocumentProcessingExecutor), so that the CPU-heavy work remains bounded by the number of workers.
+ */
+@Component
+public class RequestExecutionCustomizer implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+
+    @Autowired
+    private TikaServiceConfig serviceConfig;
+
+    private boolean useVirtualThreads = false;
+
+    private final Logger logger = LogManager.getLogger(RequestExecutionCustomizer.class);
+
+    @PostConstruct
+    public void init() {
+        if (!serviceConfig.isVirtualThreadsEnabled()) {
+            return;
+        }
+
+        if (VirtualThreads.enable()) {
+            useVirtualThreads = true;
+            logger.info("Using the virtual threads for the request handling and the external processes");
+        }
+        else {
+            logger.warn("The virtual threads are not available in the running JDK (" + Runtime.version()
+                    + "), 21+ is required -- using the platform threads");
+        }
+    }
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        if (!useVirtualThreads) {
+            return;
+        }
+
+        factory.addProtocolHandlerCustomizers(protocolHandler -> {
+            try {
+                ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("tika-request-");
+                protocolHandler.setExecutor(executor);
+            }
+            catch (ReflectiveOperationException e) {
+                logger.error("Cannot create the virtual threads executor: " + e.getMessage()
+                        + " -- using the platform threads");
+            }
+        });
+    }
+
+    public boolean isUsingVirtualThreads() {
+        return useVirtualThreads;
+    }
+}
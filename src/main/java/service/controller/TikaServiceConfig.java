@@ -36,4 +36,114 @@ public class TikaServiceConfig {
     @Value("${processing.fail-on-non-document-types:true}")
     boolean failOnNonDocumentTypes;
 
+    // the max size (in MB) of the request content that is buffered in memory,
+    // the documents exceeding this size are spilled to a temporary file
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.request-buffer.in-memory-threshold-mb:16}")
+    int requestBufferInMemoryThresholdMb;
+
+    // the directory where the spilled documents are stored (when empty, the system default is used)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.request-buffer.tmp-directory:}")
+    String requestBufferTmpDirectory;
+
+    // the number of workers processing the documents, separate from the request threads
+    // (0 - the number of available cores)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.executor.num-workers:0}")
+    int executorNumWorkers;
+
+    // the max number of documents waiting for processing, the requests exceeding it are rejected
+    // with 429 (Too Many Requests) status
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.executor.queue-capacity:64}")
+    int executorQueueCapacity;
+
+    // the min value (s) of the Retry-After hint sent with the rejected requests
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.executor.min-retry-after-seconds:5}")
+    int executorMinRetryAfterSeconds;
+
+    // the max time (s) the request waits for its document to be processed (incl. the time spent in the queue),
+    // after which the processing is cancelled and the request fails with 504 (Gateway Timeout) status (0 - no limit)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.executor.document-timeout-seconds:600}")
+    int executorDocumentTimeoutSeconds;
+
+    // whether to process the text-native documents in a separate lane (with its own workers and queue),
+    // so that they do not wait behind the documents that need OCR (the "executor" settings apply to the OCR lane)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.executor.lanes-enabled:true}")
+    boolean executorLanesEnabled;
+
+    // the number of workers processing the text-native documents (0 - the number of available cores)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.executor.text-lane.num-workers:0}")
+    int executorTextLaneNumWorkers;
+
+    // the max number of text-native documents waiting for processing
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.executor.text-lane.queue-capacity:256}")
+    int executorTextLaneQueueCapacity;
+
+    // the directory where the results of the asynchronous processing jobs are stored
+    // (when empty, a sub-directory of the system default temporary directory is used)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.jobs.store-directory:}")
+    String jobsStoreDirectory;
+
+    // for how long (min) the results of the asynchronous processing jobs are kept
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.jobs.result-ttl-minutes:60}")
+    int jobsResultTtlMinutes;
+
+    // whether to run the request handling and the waits for the external processes on the virtual threads
+    // (requires JDK 21+, otherwise the platform threads are used), the documents are still parsed by the workers
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.virtual-threads.enabled:false}")
+    boolean virtualThreadsEnabled;
+
+    // whether to admit the documents for processing against the per-node budget of the pages under OCR
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.admission.enabled:false}")
+    boolean admissionEnabled;
+
+    // the max number of pages (estimated to need OCR) processed at the same time on the node
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.admission.ocr-pages-budget:1000}")
+    int admissionOcrPagesBudget;
+
+    // the max number of pages (estimated to need OCR) of a single document, the documents exceeding it are
+    // rejected with 413 (Payload Too Large) status (0 - no limit)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.admission.max-document-ocr-pages:0}")
+    int admissionMaxDocumentOcrPages;
+
+    // the max time (s) the document waits for the budget to be released, after which it is rejected
+    // with 429 (Too Many Requests) status
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.admission.max-wait-seconds:30}")
+    int admissionMaxWaitSeconds;
+
+    // whether to expose the endpoint re-initializing the processors resources, disabled by default
+    // as the endpoint is not authenticated and the re-initialization is expensive
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.admin.reset-enabled:false}")
+    boolean adminResetEnabled;
+
+    // whether to run the sample documents through the processing paths on startup, before reporting
+    // the service as ready (see the readiness endpoint)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.warm-up.enabled:false}")
+    boolean warmUpEnabled;
+
+    // the number of times each of the sample documents is processed
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.warm-up.iterations:2}")
+    int warmUpIterations;
+
+    // the directory with the sample documents (when empty, the built-in ones are used)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.warm-up.documents-directory:}")
+    String warmUpDocumentsDirectory;
 }
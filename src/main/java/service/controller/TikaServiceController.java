@@ -1,32 +1,56 @@
 package service.controller;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import common.JsonPropertyAccessView;
-import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.tika.io.TemporaryResources;
-import org.apache.tika.io.TikaInputStream;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.boot.web.servlet.error.ErrorController;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import service.model.BulkProcessingSummary;
+import service.model.ProcessingQueueInformation;
+import service.model.ReadinessInformation;
 import service.model.ServiceInformation;
+import service.model.ServiceRequestContent;
 import service.model.ServiceResponseContent;
 import tika.legacy.LegacyTikaProcessor;
+import tika.model.TikaFileResource;
 import tika.model.TikaProcessingResult;
 import tika.processor.AbstractTikaProcessor;
 import tika.processor.CompositeTikaProcessor;
+import tika.processor.ProcessingCostEstimate;
+import tika.processor.ProcessingMetrics;
+import tika.processor.ProcessingProgress;
+import tika.processor.StageTimings;
+import tika.utils.DocumentBuffer;
 import tika.utils.TikaUtils;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
-import java.io.*;
-import java.nio.file.Files;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
@@ -39,6 +63,9 @@ public class TikaServiceController implements ErrorController {
     private final String apiPathPrefix = "/api";
     private final String apiFullPath = apiPathPrefix;
 
+    // the content type of the streamed results, with a single JSON record per line
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
     private final Logger logger = LogManager.getLogger(TikaServiceController.class);
 
     /**
@@ -52,12 +79,54 @@ public class TikaServiceController implements ErrorController {
     @Qualifier("compositeTikaProcessor")
     private CompositeTikaProcessor compositeTikaProcessor;
 
+    /**
+     * The bounded stage running the documents processing
+     */
+    @Autowired
+    private DocumentProcessingExecutor processingExecutor;
+
+    /**
+     * Admits the documents for processing against the budget of the pages under OCR
+     */
+    @Autowired
+    private ProcessingAdmissionControl admissionControl;
+
+    /**
+     * The latencies of the documents processing and of its stages
+     */
+    @Autowired
+    private ProcessingMetrics processingMetrics;
+
+    /**
+     * The warm-up of the processing paths run on startup
+     */
+    @Autowired
+    private ProcessingWarmUp warmUp;
+
+    /**
+     * The asynchronous document processing jobs
+     */
+    @Autowired
+    private ProcessingJobManager jobManager;
+
     /**
      * All the necessary information about the service, incl. config
      */
     @Autowired
     ServiceInformation serviceInfo;
 
+    /**
+     * The limits of the multipart requests, also applied when reading the files directly from the request
+     */
+    @Autowired
+    private MultipartProperties multipartProperties;
+
+    /**
+     * Used for writing the streamed results
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
     private AbstractTikaProcessor tikaProcessor;
 
     @PostConstruct
@@ -81,6 +150,73 @@ public class TikaServiceController implements ErrorController {
             return serviceInfo;
     }
 
+    /**
+     * The endpoint returning the state of the documents processing queue
+     */
+    @GetMapping(value = apiFullPath + "/queue", produces = "application/json")
+    public @ResponseBody
+        ProcessingQueueInformation queue() {
+            ProcessingQueueInformation queueInformation = processingExecutor.getQueueInformation();
+            if (serviceInfo.getServiceConfig().isAdmissionEnabled()) {
+                queueInformation.setOcrPagesBudget(admissionControl.getBudgetSize());
+                queueInformation.setOcrPagesAvailable(admissionControl.getAvailableBudget());
+            }
+            return queueInformation;
+    }
+
+    /**
+     * The endpoint returning the latencies (p50/p95/p99) of the documents processing and of each of its stages
+     * (e.g. detection, text extraction, rendering, OCR), by the processing route and the content type,
+     * together with the JVM memory and garbage collection figures
+     */
+    @GetMapping(value = apiFullPath + "/metrics", produces = "application/json")
+    public @ResponseBody
+        ProcessingMetrics.Snapshot metrics() {
+            return processingMetrics.getSnapshot();
+    }
+
+    /**
+     * The endpoint reporting whether the service is ready to accept the traffic (i.e. the startup warm-up
+     * has completed), with the time taken by each of the warm-up steps; returns 503 status until ready
+     */
+    @GetMapping(value = apiFullPath + "/ready", produces = "application/json")
+    public ResponseEntity<ReadinessInformation> ready() {
+        ReadinessInformation readiness = warmUp.getReadinessInformation();
+        return new ResponseEntity<>(readiness, readiness.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * The endpoint re-initializing the resources of both the processors (the parsers), e.g. to release the memory
+     * held by the parsers, returning the time taken; the requests in progress complete using the previous resources.
+     * NB: the resources are rebuilt from the configuration loaded on startup, which is not reloaded, and the endpoint
+     * is only available when explicitly enabled, as it is not authenticated
+     */
+    @PostMapping(value = apiFullPath + "/admin/reset", produces = "application/json")
+    public ResponseEntity<Map<String, Object>> reset() {
+        if (!serviceInfo.getServiceConfig().isAdminResetEnabled()) {
+            return new ResponseEntity<>(Map.of("error", "The reset of the processors is not enabled"), HttpStatus.NOT_FOUND);
+        }
+
+        Map<String, Long> resetTimingsMs = new LinkedHashMap<>();
+        try {
+            long startTimeNanos = System.nanoTime();
+            legacyTikaProcessor.reset();
+            resetTimingsMs.put("legacy_processor", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos));
+
+            startTimeNanos = System.nanoTime();
+            compositeTikaProcessor.reset();
+            resetTimingsMs.put("composite_processor", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos));
+        }
+        catch (Exception e) {
+            final String message = "Error resetting the processors: " + e.getMessage();
+            logger.error(message);
+            return new ResponseEntity<>(Map.of("error", message), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        logger.info("Processors reset, time taken (ms): " + resetTimingsMs);
+        return new ResponseEntity<>(Map.of("reset_timings_ms", resetTimingsMs), HttpStatus.OK);
+    }
+
     @GetMapping(value = "/")
     public String home() {
         return "Tika Service, you can see the current configuration of the service by going to /api/info";
@@ -91,58 +227,130 @@ public class TikaServiceController implements ErrorController {
      */
     @PostMapping(value = apiFullPath + "/process", produces = "application/json")
     public ResponseEntity<ServiceResponseContent> process(HttpServletRequest request) {
-        try {
-            byte[] streamContent = IOUtils.toByteArray(request.getInputStream());
+        // we are buffering the stream in order to enable re-reading the binary document content,
+        // large documents are spilled to disk so that they won't be held in memory
+        try (DocumentBuffer document = bufferDocument(request.getInputStream())) {
 
-            if (streamContent.length == 0) {
+            if (document.isEmpty()) {
                 final String message = "Empty content";
                 logger.info(message);
                 return createEmptyDocumentResponseEntity(message);
             }
 
-            // we are buffering the stream using ByteArrayInputStream in order to enable
-            // re-reading the binary document content
-            ByteArrayInputStream byteBuffer = new ByteArrayInputStream(streamContent);
-
-            TikaProcessingResult result = processStream(byteBuffer);
+            TikaProcessingResult result = processDocument(document);
 
             return createProcessedDocumentResponseEntity(result);
         }
+        catch (RejectedExecutionException e) {
+            return createTooManyRequestsResponseEntity(e);
+        }
+        catch (ProcessingAdmissionControl.CostLimitExceededException e) {
+            logger.info(e.getMessage());
+            return new ResponseEntity<>(createErrorResponse(e.getMessage()), HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        catch (DocumentProcessingExecutor.DocumentTimeoutException e) {
+            logger.error(e.getMessage());
+            return new ResponseEntity<>(createErrorResponse(e.getMessage()), HttpStatus.GATEWAY_TIMEOUT);
+        }
         catch (Exception e) {
             final String message = "Error processing the query: " + e.getMessage();
-            logger.error(message);
-            e.printStackTrace();
+            logger.error(message, e);
             return new ResponseEntity<>(createErrorResponse(message), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * The endpoint used for bulk processing of documents sent as multipart files, returning the results
+     * in the order of the files. The files are read from the request one at a time and processed
+     * while the rest of the request is being received.
+     */
     @PostMapping(name="process_bulk", value = apiFullPath + "/process_bulk", consumes = "multipart/form-data", produces = "application/json")
-    public ResponseEntity<ServiceResponseContent> process(@RequestParam("file") MultipartFile[] multipartFiles) {
-        if(multipartFiles.length == 0)
-        {
-            final String message = "Empty content, no files were sent.";
-            logger.info(message);
-            return createEmptyDocumentResponseEntity(message);
-        }
-
+    public ResponseEntity<ServiceResponseContent> processBulk(HttpServletRequest request) {
         try {
-            logger.info("Bulk processing number of files : " + multipartFiles.length);
             logger.info("Running processor: " + tikaProcessor.getClass().toString());
 
-            var results = tikaProcessor.process(multipartFiles);
+            AbstractTikaProcessor.BulkResourceSupplier resources = createMultipartDocumentReader(request);
+            TikaFileResource first = resources.next();
+            if (first == null) {
+                final String message = "Empty content, no files were sent.";
+                logger.info(message);
+                return createEmptyDocumentResponseEntity(message);
+            }
+
+            Map<Integer, TikaProcessingResult> results = new TreeMap<>();
+            tikaProcessor.process(prepend(first, resources), results::put);
+            logger.info("Bulk processing number of files : " + results.size());
 
             ServiceResponseContent serviceResponseContent = new ServiceResponseContent();
+            serviceResponseContent.setResults(new ArrayList<>(results.values()));
 
-            return new ResponseEntity<ServiceResponseContent>(serviceResponseContent, HttpStatus.OK);
+            return new ResponseEntity<>(serviceResponseContent, HttpStatus.OK);
         }
         catch (Exception e) {
             final String message = "Error processing: " + e.getMessage();
-            logger.error(message);
-            e.printStackTrace();
+            logger.error(message, e);
             return new ResponseEntity<>(createErrorResponse(message), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * The endpoint used for bulk processing of documents sent as multipart files, streaming back the results
+     * as NDJSON: each line contains the result of a single document, written as soon as its processing completes,
+     * with the last line containing the summary. The files are read from the request one at a time and processed
+     * while the rest of the request is being received.
+     */
+    @PostMapping(value = apiFullPath + "/process_bulk_stream", consumes = "multipart/form-data", produces = NDJSON_MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> processBulkStreamed(HttpServletRequest request) {
+        final AbstractTikaProcessor.BulkResourceSupplier resources;
+        final TikaFileResource first;
+        try {
+            resources = createMultipartDocumentReader(request);
+            first = resources.next();
+        }
+        catch (Exception e) {
+            final String message = "Error processing: " + e.getMessage();
+            logger.error(message);
+            return createStreamedResponseEntity(createErrorResponse(message), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        if (first == null) {
+            final String message = "Empty content, no files were sent.";
+            logger.info(message);
+            return createStreamedResponseEntity(createErrorResponse(message), HttpStatus.BAD_REQUEST);
+        }
+
+        // NB: the rest of the files is read from the request while the results are streamed back
+        StreamingResponseBody body = outputStream -> {
+            final long startTimeNanos = System.nanoTime();
+            final int[] numDocuments = {0};
+            final int[] numSucceeded = {0};
+
+            tikaProcessor.process(prepend(first, resources), (index, result) -> {
+                numDocuments[0]++;
+                if (Boolean.TRUE.equals(result.getSuccess())) {
+                    numSucceeded[0]++;
+                }
+                ServiceResponseContent record = new ServiceResponseContent();
+                record.setResult(result);
+                writeRecord(outputStream, record);
+            });
+            logger.info("Bulk processing (streamed) number of files : " + numDocuments[0]);
+
+            ServiceResponseContent record = new ServiceResponseContent();
+            record.setSummary(BulkProcessingSummary.builder()
+                    .numDocuments(numDocuments[0])
+                    .numSucceeded(numSucceeded[0])
+                    .numFailed(numDocuments[0] - numSucceeded[0])
+                    .processingElapsedTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos))
+                    .build());
+            writeRecord(outputStream, record);
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE))
+                .body(body);
+    }
+
     /**
      * The endpoint used for processing documents sent as multipart files
      */
@@ -156,22 +364,218 @@ public class TikaServiceController implements ErrorController {
         }
 
         // process the content
-        try {
-            // we are buffering the stream using ByteArrayInputStream in order to enable
-            // re-reading the binary document content
-            ByteArrayInputStream byteBuffer = new ByteArrayInputStream(file.getBytes());
-
-            TikaProcessingResult result = processStream(byteBuffer);
+        try (DocumentBuffer document = bufferDocument(file.getInputStream())) {
+            TikaProcessingResult result = processDocument(document);
             return createProcessedDocumentResponseEntity(result);
         }
+        catch (RejectedExecutionException e) {
+            return createTooManyRequestsResponseEntity(e);
+        }
+        catch (ProcessingAdmissionControl.CostLimitExceededException e) {
+            logger.info(e.getMessage());
+            return new ResponseEntity<>(createErrorResponse(e.getMessage()), HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        catch (DocumentProcessingExecutor.DocumentTimeoutException e) {
+            logger.error(e.getMessage());
+            return new ResponseEntity<>(createErrorResponse(e.getMessage()), HttpStatus.GATEWAY_TIMEOUT);
+        }
         catch (Exception e) {
             final String message = "Error processing the query: " + e.getMessage();
-            logger.error(message);
-            e.printStackTrace();
+            logger.error(message, e);
             return new ResponseEntity<>(createErrorResponse(message), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * The endpoint returning the estimated processing cost of the document sent as [octet] stream, without
+     * processing it (e.g. so that the clients can distribute the documents before sending them for processing)
+     */
+    @PostMapping(value = apiFullPath + "/estimate", produces = "application/json")
+    public ResponseEntity<ServiceResponseContent> estimate(HttpServletRequest request) {
+        try (DocumentBuffer document = bufferDocument(request.getInputStream())) {
+            if (document.isEmpty()) {
+                final String message = "Empty content";
+                logger.info(message);
+                return createEmptyDocumentResponseEntity(message);
+            }
+
+            ServiceResponseContent response = new ServiceResponseContent();
+            response.setEstimate(tikaProcessor.estimateCost(document));
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
+        catch (Exception e) {
+            final String message = "Error estimating the document processing cost: " + e.getMessage();
+            logger.error(message, e);
+            return new ResponseEntity<>(createErrorResponse(message), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * The endpoint used for submitting the asynchronous processing jobs with the documents sent as [octet] stream,
+     * returning the job id
+     */
+    @PostMapping(value = apiFullPath + "/jobs", produces = "application/json")
+    public ResponseEntity<ServiceResponseContent> submitJob(HttpServletRequest request) {
+        try (DocumentBuffer document = bufferDocument(request.getInputStream())) {
+            return submitJob(document);
+        }
+        catch (Exception e) {
+            final String message = "Error submitting the job: " + e.getMessage();
+            logger.error(message, e);
+            return new ResponseEntity<>(createErrorResponse(message), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * The endpoint used for submitting the asynchronous processing jobs with the documents sent in JSON request,
+     * returning the job id
+     */
+    @PostMapping(value = apiFullPath + "/jobs", consumes = "application/json", produces = "application/json")
+    public ResponseEntity<ServiceResponseContent> submitJob(@RequestBody ServiceRequestContent requestContent) {
+        if (requestContent.getDocument() == null || requestContent.getDocument().getContent() == null) {
+            final String message = "Empty content";
+            logger.info(message);
+            return createEmptyDocumentResponseEntity(message);
+        }
+
+        try (DocumentBuffer document = bufferDocument(new ByteArrayInputStream(requestContent.getDocument().getContent()))) {
+            return submitJob(document);
+        }
+        catch (Exception e) {
+            final String message = "Error submitting the job: " + e.getMessage();
+            logger.error(message, e);
+            return new ResponseEntity<>(createErrorResponse(message), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * The endpoint returning the status of the processing job, with the progress (pages done out of total)
+     */
+    @GetMapping(value = apiFullPath + "/jobs/{jobId}", produces = "application/json")
+    public ResponseEntity<ServiceResponseContent> getJob(@PathVariable("jobId") String jobId) {
+        var job = jobManager.getJob(jobId);
+        if (job.isEmpty()) {
+            return createJobNotFoundResponseEntity(jobId);
+        }
+
+        ServiceResponseContent response = new ServiceResponseContent();
+        response.setJob(job.get());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    /**
+     * The endpoint returning the result of the processing job, once completed
+     */
+    @GetMapping(value = apiFullPath + "/jobs/{jobId}/result", produces = "application/json")
+    public ResponseEntity<ServiceResponseContent> getJobResult(@PathVariable("jobId") String jobId) {
+        var job = jobManager.getJob(jobId);
+        if (job.isEmpty()) {
+            return createJobNotFoundResponseEntity(jobId);
+        }
+
+        ServiceResponseContent response;
+        HttpStatus status;
+
+        switch (job.get().getStatus()) {
+            case COMPLETED -> {
+                try {
+                    var result = jobManager.getResult(jobId);
+                    if (result.isEmpty()) {
+                        return createJobNotFoundResponseEntity(jobId);
+                    }
+                    ResponseEntity<ServiceResponseContent> resultResponse = createProcessedDocumentResponseEntity(result.get());
+                    response = resultResponse.getBody();
+                    status = resultResponse.getStatusCode();
+                }
+                catch (IOException e) {
+                    final String message = "Error reading the job result: " + e.getMessage();
+                    logger.error(message);
+                    response = createErrorResponse(message);
+                    status = HttpStatus.INTERNAL_SERVER_ERROR;
+                }
+            }
+            case FAILED -> {
+                response = createErrorResponse("The job failed: " + job.get().getError());
+                status = HttpStatus.INTERNAL_SERVER_ERROR;
+            }
+            default -> {
+                // the job is still in progress
+                response = new ServiceResponseContent();
+                status = HttpStatus.ACCEPTED;
+            }
+        }
+
+        response.setJob(job.get());
+        return new ResponseEntity<>(response, status);
+    }
+
+    private ResponseEntity<ServiceResponseContent> submitJob(DocumentBuffer document) throws IOException, InterruptedException {
+        if (document.isEmpty()) {
+            final String message = "Empty content";
+            logger.info(message);
+            return createEmptyDocumentResponseEntity(message);
+        }
+
+        try {
+            ServiceResponseContent response = new ServiceResponseContent();
+            response.setJob(jobManager.submit(document, tikaProcessor));
+            return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
+        }
+        catch (RejectedExecutionException e) {
+            return createTooManyRequestsResponseEntity(e);
+        }
+        catch (ProcessingAdmissionControl.CostLimitExceededException e) {
+            logger.info(e.getMessage());
+            return new ResponseEntity<>(createErrorResponse(e.getMessage()), HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+    }
+
+    private ResponseEntity<ServiceResponseContent> createJobNotFoundResponseEntity(String jobId) {
+        final String message = "Job not found (or its result has already expired): " + jobId;
+        logger.info(message);
+        return new ResponseEntity<>(createErrorResponse(message), HttpStatus.NOT_FOUND);
+    }
+
+    private void writeRecord(OutputStream outputStream, ServiceResponseContent record) throws IOException {
+        outputStream.write(objectMapper.writeValueAsBytes(record));
+        outputStream.write('\n');
+        // send the record to the client straight away
+        outputStream.flush();
+    }
+
+    private ResponseEntity<StreamingResponseBody> createStreamedResponseEntity(ServiceResponseContent record,
+                                                                               HttpStatus status) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE))
+                .body(outputStream -> writeRecord(outputStream, record));
+    }
+
+    private MultipartDocumentReader createMultipartDocumentReader(HttpServletRequest request) throws IOException {
+        if (!MultipartDocumentReader.isMultipartContent(request)) {
+            throw new IOException("Not a multipart request");
+        }
+        return new MultipartDocumentReader(request, "file",
+                multipartProperties.getMaxFileSize().toBytes(),
+                multipartProperties.getMaxRequestSize().toBytes(),
+                this::bufferDocument);
+    }
+
+    /**
+     * Returns the already read document, followed by the remaining ones
+     */
+    private static AbstractTikaProcessor.BulkResourceSupplier prepend(TikaFileResource first,
+                                                                     AbstractTikaProcessor.BulkResourceSupplier rest) {
+        final TikaFileResource[] pending = {first};
+        return () -> {
+            if (pending[0] != null) {
+                TikaFileResource resource = pending[0];
+                pending[0] = null;
+                return resource;
+            }
+            return rest.next();
+        };
+    }
+
     private ServiceResponseContent createErrorResponse(String message) {
         ServiceResponseContent response = new ServiceResponseContent();
         TikaProcessingResult result = TikaProcessingResult.builder()
@@ -181,23 +585,85 @@ public class TikaServiceController implements ErrorController {
         return response;
     }
 
-    private TikaProcessingResult processStream(ByteArrayInputStream stream) throws IOException {
-        TemporaryResources temporaryResources = new TemporaryResources();
-        File tmpFilePath = temporaryResources.createTemporaryFile();
+    private DocumentBuffer bufferDocument(InputStream stream) throws IOException {
+        TikaServiceConfig serviceConfig = serviceInfo.getServiceConfig();
+        final long inMemoryThreshold = (long) serviceConfig.getRequestBufferInMemoryThresholdMb() * 1024 * 1024;
 
-        logger.info("Storing tmp file at :" + tmpFilePath.toString());
+        Path tmpDirectory = null;
+        if (serviceConfig.getRequestBufferTmpDirectory() != null && !serviceConfig.getRequestBufferTmpDirectory().isBlank()) {
+            tmpDirectory = Paths.get(serviceConfig.getRequestBufferTmpDirectory());
+        }
 
-        TikaInputStream tikaInputStream = TikaInputStream.get(stream, temporaryResources);
-        TikaProcessingResult result = tikaProcessor.process(tikaInputStream);
+        DocumentBuffer document = DocumentBuffer.fromStream(stream, inMemoryThreshold, tmpDirectory);
+        processingMetrics.recordBuffering(document.getBufferingTimeNanos());
+        return document;
+    }
 
-        if (tmpFilePath.exists()) {
-            logger.info("Deleting tmp file:" + tmpFilePath.toPath());
-            Files.delete(tmpFilePath.toPath());
-        }
-        tikaInputStream.close();
+    private TikaProcessingResult processDocument(DocumentBuffer document)
+            throws IOException, InterruptedException, ExecutionException, DocumentProcessingExecutor.DocumentTimeoutException {
         logger.info("Running processor: " + tikaProcessor.getClass().toString());
 
-        return result;
+        // the request is rejected right away when the processing queues are full, before the (possibly costly)
+        // estimate of the document is made
+        processingExecutor.checkCapacity();
+
+        // the document is processed by one of the processing workers (of the lane depending on whether
+        // it is expected to need OCR), not on the request thread, once admitted against the OCR budget
+        final ProcessingCostEstimate estimate = processingExecutor.estimateCost(document, tikaProcessor);
+        final ProcessingAdmissionControl.Admission admission = admissionControl.admit(estimate);
+
+        // the budget is taken until the processing completes, i.e. released by the worker (as the processing can
+        // carry on for a while after the request times out), or here when the processing never started
+        final AtomicBoolean started = new AtomicBoolean(false);
+        TikaProcessingResult result;
+        try {
+            result = processingExecutor.execute(document, estimate.getLane(), () -> {
+                if (!started.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return tikaProcessor.process(document, new ProcessingProgress(), estimate);
+                }
+                finally {
+                    admission.close();
+                }
+            });
+        }
+        finally {
+            if (started.compareAndSet(false, true)) {
+                admission.close();
+            }
+        }
+        return addBufferingTime(result, document);
+    }
+
+    /**
+     * Returns the result including the time taken by buffering of the request content, as a copy,
+     * since the result can be shared (e.g. with the concurrent requests for the identical document)
+     */
+    private static TikaProcessingResult addBufferingTime(TikaProcessingResult result, DocumentBuffer document) {
+        final long bufferingTimeMs = TimeUnit.NANOSECONDS.toMillis(document.getBufferingTimeNanos());
+
+        Map<String, Long> stageTimingsMs = new LinkedHashMap<>();
+        stageTimingsMs.put(StageTimings.BUFFERING, bufferingTimeMs);
+        if (result.getStageTimingsMs() != null) {
+            result.getStageTimingsMs().forEach((stage, timeMs) -> stageTimingsMs.merge(stage, timeMs, Long::sum));
+        }
+
+        return result.toBuilder()
+                .processingElapsedTime(result.getProcessingElapsedTime() + bufferingTimeMs)
+                .stageTimingsMs(stageTimingsMs)
+                .build();
+    }
+
+    private ResponseEntity<ServiceResponseContent> createTooManyRequestsResponseEntity(RejectedExecutionException rejection) {
+        final int retryAfterSeconds = processingExecutor.getRetryAfterSeconds(rejection);
+        final String message = "The service is busy, please retry after: " + retryAfterSeconds + " s";
+        logger.info(message);
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(createErrorResponse(message));
     }
 
     private ResponseEntity<ServiceResponseContent> createEmptyDocumentResponseEntity(String errorMessage) {
@@ -0,0 +1,27 @@
+package service.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Data;
+
+
+/**
+ * The summary of the bulk processing, sent as the last record when streaming the results
+ */
+@Data
+@Builder
+public class BulkProcessingSummary {
+
+    @JsonProperty("num_documents")
+    int numDocuments;
+
+    @JsonProperty("num_succeeded")
+    int numSucceeded;
+
+    @JsonProperty("num_failed")
+    int numFailed;
+
+    // total elapsed time in milliseconds
+    @JsonProperty("processing_elapsed_time")
+    long processingElapsedTime;
+}
@@ -0,0 +1,49 @@
+package service.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.OffsetDateTime;
+
+
+/**
+ * The status of the asynchronous document processing job
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProcessingJobInformation {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    @JsonProperty("job_id")
+    String jobId;
+
+    @JsonProperty("status")
+    Status status;
+
+    // the processing progress, the total number of pages is 0 until known
+    @JsonProperty("pages_done")
+    Integer pagesDone;
+
+    @JsonProperty("pages_total")
+    Integer pagesTotal;
+
+    @JsonProperty("submitted_at")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
+    OffsetDateTime submittedAt;
+
+    @JsonProperty("completed_at")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
+    OffsetDateTime completedAt;
+
+    // the error message in case the job failed
+    @JsonProperty("error")
+    String error;
+}
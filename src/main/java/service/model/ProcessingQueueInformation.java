@@ -0,0 +1,63 @@
+package service.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+
+/**
+ * The current state of the documents processing queue, as used e.g. by the load balancers
+ */
+@Data
+@Builder
+public class ProcessingQueueInformation {
+
+    @JsonProperty("num_workers")
+    int numWorkers;
+
+    @JsonProperty("active_workers")
+    int activeWorkers;
+
+    @JsonProperty("queue_capacity")
+    int queueCapacity;
+
+    // the number of documents waiting for processing
+    @JsonProperty("queue_depth")
+    int queueDepth;
+
+    @JsonProperty("completed")
+    long completed;
+
+    @JsonProperty("rejected")
+    long rejected;
+
+    // the average time (ms) the documents waited in the queue before being processed
+    @JsonProperty("avg_wait_time_ms")
+    long avgWaitTimeMs;
+
+    // the average time (ms) of processing of the documents
+    @JsonProperty("avg_processing_time_ms")
+    long avgProcessingTimeMs;
+
+    // the estimated time (ms) a new document would wait in the queue
+    @JsonProperty("estimated_wait_time_ms")
+    long estimatedWaitTimeMs;
+
+    // the per-node budget of the pages under OCR and the part of it not taken by the admitted documents
+    // (when the admission control is enabled)
+    @JsonProperty("ocr_pages_budget")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Integer ocrPagesBudget;
+
+    @JsonProperty("ocr_pages_available")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Integer ocrPagesAvailable;
+
+    // the state of each of the processing lanes (when the documents are processed in separate lanes)
+    @JsonProperty("lanes")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Map<String, ProcessingQueueInformation> lanes;
+}
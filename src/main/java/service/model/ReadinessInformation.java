@@ -0,0 +1,40 @@
+package service.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+
+/**
+ * Whether the service is ready to accept the traffic, as used e.g. by the load balancers, with the progress
+ * of the startup warm-up
+ */
+@Data
+@Builder
+public class ReadinessInformation {
+
+    /**
+     * The state of the startup warm-up
+     */
+    public enum WarmUpState {
+        DISABLED, PENDING, RUNNING, COMPLETED
+    }
+
+    @JsonProperty("ready")
+    boolean ready;
+
+    @JsonProperty("warm_up_state")
+    WarmUpState warmUpState;
+
+    // the time (ms) of the whole warm-up, once completed
+    @JsonProperty("warm_up_time_ms")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Long warmUpTimeMs;
+
+    // the outcome of each of the completed warm-up steps
+    @JsonProperty("steps")
+    List<WarmUpStepInformation> steps;
+}
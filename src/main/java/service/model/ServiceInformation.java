@@ -1,5 +1,7 @@
 package service.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
 import common.JsonPropertyAccessView;
@@ -10,7 +12,15 @@ import org.springframework.context.annotation.Configuration;
 import service.controller.TikaServiceConfig;
 import tika.legacy.LegacyPdfProcessorConfig;
 import tika.model.TikaPackageInformation;
+import tika.processor.BulkProcessingConfig;
 import tika.processor.CompositeTikaProcessorConfig;
+import tika.processor.ProcessingResultCache;
+import tika.processor.ProcessingResultCacheConfig;
+import tika.processor.RequestCoalescerConfig;
+import tika.processor.TesseractWorkerPoolConfig;
+import tika.utils.StartupTimings;
+
+import java.util.Map;
 
 
 /**
@@ -18,6 +28,7 @@ import tika.processor.CompositeTikaProcessorConfig;
  */
 @Data
 @Configuration
+@JsonIgnoreProperties(value={"result_cache_stats", "startup_timings_ms"}, allowGetters=true)
 @ComponentScan({"tika.legacy", "tika.processor"})
 public class ServiceInformation {
 
@@ -31,6 +42,30 @@ public class ServiceInformation {
     @JsonView(JsonPropertyAccessView.Public.class)
     CompositeTikaProcessorConfig compositeProcessorConfig;
 
+    @Autowired
+    @JsonProperty("tesseract_worker_pool_config")
+    @JsonView(JsonPropertyAccessView.Public.class)
+    TesseractWorkerPoolConfig tesseractWorkerPoolConfig;
+
+    @Autowired
+    @JsonProperty("result_cache_config")
+    @JsonView(JsonPropertyAccessView.Public.class)
+    ProcessingResultCacheConfig resultCacheConfig;
+
+    @Autowired
+    @JsonProperty("request_coalescing_config")
+    @JsonView(JsonPropertyAccessView.Public.class)
+    RequestCoalescerConfig requestCoalescerConfig;
+
+    @Autowired
+    @JsonProperty("bulk_processing_config")
+    @JsonView(JsonPropertyAccessView.Public.class)
+    BulkProcessingConfig bulkProcessingConfig;
+
+    @Autowired(required = false)
+    @JsonIgnore
+    ProcessingResultCache resultCache;
+
     @Autowired
     @JsonProperty("service_config")
     @JsonView(JsonPropertyAccessView.Public.class)
@@ -40,4 +75,17 @@ public class ServiceInformation {
     @JsonView(JsonPropertyAccessView.Public.class)
     TikaPackageInformation tikaInfo = new TikaPackageInformation();
 
+    @JsonProperty("result_cache_stats")
+    @JsonView(JsonPropertyAccessView.Public.class)
+    public ProcessingResultCache.Stats getResultCacheStats() {
+        return resultCache != null ? resultCache.getStats() : null;
+    }
+
+    // the time taken by the stages of the service startup
+    @JsonProperty("startup_timings_ms")
+    @JsonView(JsonPropertyAccessView.Public.class)
+    public Map<String, Long> getStartupTimings() {
+        return StartupTimings.getTimingsMs();
+    }
+
 }
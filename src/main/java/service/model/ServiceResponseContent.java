@@ -3,6 +3,7 @@ package service.model;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import tika.model.TikaProcessingResult;
+import tika.processor.ProcessingCostEstimate;
 
 import java.util.List;
 
@@ -16,5 +17,13 @@ public class ServiceResponseContent {
 
     TikaProcessingResult result;
     List<TikaProcessingResult> results;
+
+    // the status of the asynchronous processing job (when using the jobs API)
+    ProcessingJobInformation job;
+
+    // the summary of the bulk processing (sent as the last record of the streamed results)
+    BulkProcessingSummary summary;
+    // the estimated processing cost of the document (when using the estimate endpoint)
+    ProcessingCostEstimate estimate;
     // TODO: footer as in NLP
 }
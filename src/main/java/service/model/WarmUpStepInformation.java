@@ -0,0 +1,44 @@
+package service.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Data;
+
+
+/**
+ * The outcome of the warm-up processing of a single sample document
+ */
+@Data
+@Builder
+public class WarmUpStepInformation {
+
+    // the name of the sample document
+    @JsonProperty("name")
+    String name;
+
+    @JsonProperty("content_type")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String contentType;
+
+    @JsonProperty("iterations")
+    int iterations;
+
+    @JsonProperty("success")
+    boolean success;
+
+    @JsonProperty("error")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String error;
+
+    // the time (ms) of processing of the document in the first and the last iteration
+    @JsonProperty("first_run_time_ms")
+    long firstRunTimeMs;
+
+    @JsonProperty("last_run_time_ms")
+    long lastRunTimeMs;
+
+    // the time (ms) of all the iterations
+    @JsonProperty("total_time_ms")
+    long totalTimeMs;
+}
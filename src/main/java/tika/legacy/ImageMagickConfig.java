@@ -284,7 +284,13 @@ public class ImageMagickConfig implements Serializable{
         this.maxTiffSize = maxTiffSize;
     }
 
+    /**
+     * Set ImageMagick installation folder, needed if it is not on system path.
+     */
     public void setImageMagickPath(String imageMagickPath) {
+        if(!imageMagickPath.isEmpty() && !imageMagickPath.endsWith(File.separator))
+            imageMagickPath += File.separator;
+
         this.imageMagickPath = imageMagickPath;
     }
 
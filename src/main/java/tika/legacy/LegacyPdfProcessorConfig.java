@@ -9,8 +9,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.xml.sax.SAXException;
 import common.JsonPropertyAccessView;
+import tika.utils.StartupTimings;
+import tika.utils.TikaUtils;
+
 import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -30,6 +35,11 @@ public class LegacyPdfProcessorConfig {
     @Value("${tika.parsers.legacy-pdf-parser.image-magick.timeout:120}")
     private int conversionTimeout;
 
+    // path to the ImageMagick installation folder, if not on the system path
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.legacy-pdf-parser.image-magick.path:}")
+    private String imageMagickPath;
+
     // the timeout value (s) when performing OCR over the documents
     // the default value in Tika is 120s, but this may be too short for multi-page documents
     @JsonView(JsonPropertyAccessView.Public.class)
@@ -42,10 +52,31 @@ public class LegacyPdfProcessorConfig {
     @Value("${tika.parsers.legacy-pdf-parser.min-doc-text-length:100}")
     private int pdfMinDocTextLength;
 
+    // the comma-separated class names of the only parsers to be loaded (apart from the legacy PDF parser),
+    // when empty all the parsers available on the class path are loaded
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.allow-list:}")
+    private String parserAllowList;
+
 
     @PostConstruct
     public void init() throws IOException, SAXException, TikaException  {
-        tikaConfig = new TikaConfig(this.getClass().getClassLoader()
+        final long startTimeNanos = System.nanoTime();
+        tikaConfig = createTikaConfig();
+        StartupTimings.record("legacy_tika_config", startTimeNanos);
+    }
+
+    /**
+     * Creates a new Tika configuration (with its own parsers) as used by the legacy processor
+     */
+    public TikaConfig createTikaConfig() throws IOException, SAXException, TikaException {
+        List<String> allowedParsers = TikaUtils.splitList(parserAllowList);
+        if (!allowedParsers.isEmpty()) {
+            // the PDF documents are handled only by the legacy parser, as in the default configuration
+            return TikaUtils.createTikaConfig(allowedParsers,
+                    Map.of("application/pdf", LegacyPdfProcessorParser.class.getName()));
+        }
+        return new TikaConfig(this.getClass().getClassLoader()
                 .getResourceAsStream("tika-config/legacy-parser-config.xml"));
     }
 }
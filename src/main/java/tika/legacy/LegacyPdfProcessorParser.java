@@ -36,28 +36,38 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.parser.AbstractParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.external.ExternalParser;
+import org.apache.tika.parser.ocr.TesseractOCRConfig;
 import org.apache.tika.parser.ocr.TesseractOCRParser;
 import org.apache.tika.parser.pdf.PDFParser;
 import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.XHTMLContentHandler;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 import tika.model.MetadataKeys;
+import tika.processor.StageTimings;
+import tika.processor.TesseractWorkerPool;
+import tika.utils.VirtualThreads;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 
 public class LegacyPdfProcessorParser extends AbstractParser {
 
     private static final long serialVersionUID = -8167538283213097265L;
-    private static Map<String, Boolean> IMAGEMAGICK_PRESENT = new HashMap<String, Boolean>();
+    // whether ImageMagick is present at the given path, checked once per path (by the concurrent requests)
+    private static final Map<String, Boolean> IMAGEMAGICK_PRESENT = new ConcurrentHashMap<>();
     private static final ImageMagickConfig DEFAULT_IMAGEMAGICK_CONFIG = new ImageMagickConfig();
+    private static final TesseractOCRConfig DEFAULT_TESSERACT_CONFIG = new TesseractOCRConfig();
 
     private static final Set<MediaType> SUPPORTED_TYPES = Collections.unmodifiableSet(
             new HashSet<>(Collections.singletonList(MediaType.application("pdf"))));
@@ -81,22 +91,19 @@ public class LegacyPdfProcessorParser extends AbstractParser {
         // Fetch where the config says to find hasImageMagick
         String imageMagick = config.getImageMagickPath() + getImageMagickProg();
 
-        // Have we already checked for a copy of ImageMagick there?
-        if (IMAGEMAGICK_PRESENT.containsKey(imageMagick)) {
-            return IMAGEMAGICK_PRESENT.get(imageMagick);
-        }
+        // Check for a copy of ImageMagick there only once, even when asked concurrently
+        return IMAGEMAGICK_PRESENT.computeIfAbsent(imageMagick, LegacyPdfProcessorParser::checkImageMagick);
+    }
 
+    private static boolean checkImageMagick(String imageMagick) {
         // Try running ImageMagick from there, and see if it exists + works
         String[] checkCmd = {imageMagick};
         try {
-            boolean hasImageMagick = ExternalParser.check(checkCmd);
-            IMAGEMAGICK_PRESENT.put(imageMagick, hasImageMagick);
-            return hasImageMagick;
+            return ExternalParser.check(checkCmd);
         } catch (NoClassDefFoundError e) {
             // This happens under OSGi + Fork Parser - see TIKA-1507
             // As a workaround for now, just say we can't use OCR
             // TODO Resolve it so we don't need this try/catch block
-            IMAGEMAGICK_PRESENT.put(imageMagick, false);
             return false;
         }
     }
@@ -112,6 +119,7 @@ public class LegacyPdfProcessorParser extends AbstractParser {
         //TemporaryResources tmp = new TemporaryResources();
         //TikaInputStream pdfStream = TikaInputStream.get(stream);
         PDFParser pdfParser = new PDFParser();
+        StageTimings timings = StageTimings.from(context);
 
         //create temp handlers to investigate object
         BodyContentHandler body = new BodyContentHandler(-1);
@@ -123,14 +131,19 @@ public class LegacyPdfProcessorParser extends AbstractParser {
         }
 
         //first do initial parse to see if there's subsantial content in pdf metadata already
-        pdfParser.parse(stream, body, pdfMetadata, context);
+        try (StageTimings.Stage ignored = timings.start(StageTimings.TEXT_EXTRACTION)) {
+            pdfParser.parse(stream, body, pdfMetadata, context);
+        }
         stream.reset();
         //if there's content - reparse with official handlers/metadata. What else can you do? Also check imagemagick is available
 
         LegacyPdfProcessorConfig generalConfig = context.get(LegacyPdfProcessorConfig.class);
 
         if (body.toString().length() > generalConfig.getPdfMinDocTextLength() || !hasImageMagick(config)) {
-            pdfParser.parse(stream, handler, metadata, context);
+            timings.setRouteIfAbsent("pdf_text");
+            try (StageTimings.Stage ignored = timings.start(StageTimings.TEXT_EXTRACTION)) {
+                pdfParser.parse(stream, handler, metadata, context);
+            }
             //metadata.set("X-PDFPREPROC-OCR-APPLIED", "NA");
             return;
         }
@@ -144,20 +157,73 @@ public class LegacyPdfProcessorParser extends AbstractParser {
         });
 
         //objects to hold file references for manipulation outside of Java
+        //(the file-backed streams are passed as-is, without copying their content)
         File tiffFileOfPDF = null;
-        File pdfFileFromStream = File.createTempFile("tempPDF", ".pdf");
+        File tiffPagesDirectory = null;
+        TikaInputStream tikaStream = TikaInputStream.cast(stream);
+        final boolean isFileBacked = tikaStream != null && tikaStream.hasFile();
+        File pdfFileFromStream = isFileBacked ? tikaStream.getFile() : File.createTempFile("tempPDF", ".pdf");
+        timings.setRouteIfAbsent("pdf_ocr");
         try {
-            FileUtils.copyInputStreamToFile(stream, pdfFileFromStream);
-            tiffFileOfPDF = File.createTempFile("tempTIFF", ".tiff");
-            makeTiffFromPDF(pdfFileFromStream,tiffFileOfPDF, config);
-            if (tiffFileOfPDF.exists()) {
+            if (!isFileBacked) {
+                try (StageTimings.Stage ignored = timings.start(StageTimings.BUFFERING)) {
+                    FileUtils.copyInputStreamToFile(stream, pdfFileFromStream);
+                }
+            }
+            TesseractWorkerPool workerPool = context.get(TesseractWorkerPool.class);
+            TesseractOCRConfig tessConfig = context.get(TesseractOCRConfig.class, DEFAULT_TESSERACT_CONFIG);
+            final boolean useWorkerPool = workerPool != null && workerPool.isAvailable() && workerPool.supports(tessConfig);
+
+            // the pages are rendered into separate images for the workers pool, so that they are split
+            // into the batches of the workers, whereas Tika's OCR parser is given a single multi-page TIFF
+            List<File> pageImages = Collections.emptyList();
+            if (useWorkerPool) {
+                tiffPagesDirectory = Files.createTempDirectory("tempTIFF").toFile();
+                try (StageTimings.Stage ignored = timings.start(StageTimings.RENDERING)) {
+                    makeTiffFromPDF(pdfFileFromStream, new File(tiffPagesDirectory, "page-%04d.tiff"), config, true);
+                }
+                File[] renderedPages = tiffPagesDirectory.listFiles();
+                if (renderedPages != null) {
+                    Arrays.sort(renderedPages, Comparator.comparing(File::getName));
+                    pageImages = Arrays.asList(renderedPages);
+                }
+            }
+            else {
+                tiffFileOfPDF = File.createTempFile("tempTIFF", ".tiff");
+                try (StageTimings.Stage ignored = timings.start(StageTimings.RENDERING)) {
+                    makeTiffFromPDF(pdfFileFromStream, tiffFileOfPDF, config, false);
+                }
+            }
+
+            if (useWorkerPool ? !pageImages.isEmpty() : tiffFileOfPDF.exists()) {
                 long tessStartTime = System.currentTimeMillis();
-                TesseractOCRParser tesseract = new TesseractOCRParser();
 
-                tesseract.parse(FileUtils.openInputStream(tiffFileOfPDF), handler, metadata, context);
+                try (StageTimings.Stage ignored = timings.start(StageTimings.OCR)) {
+                    if (useWorkerPool) {
+                        // the page images are processed in batches, by the workers from the pool
+                        List<String> pagesText = workerPool.recognize(
+                                pageImages.stream().map(File::toPath).collect(Collectors.toList()),
+                                tessConfig, getDensity(config), generalConfig.getOcrTimeout());
+
+                        XHTMLContentHandler xhtml = new XHTMLContentHandler(handler, metadata);
+                        xhtml.startDocument();
+                        for (String pageText : pagesText) {
+                            xhtml.startElement("div", "class", "page");
+                            xhtml.characters(pageText);
+                            xhtml.endElement("div");
+                        }
+                        xhtml.endDocument();
+
+                        metadata.add(MetadataKeys.X_TIKA_PARSED_BY, TesseractWorkerPool.class.getName());
+                    }
+                    else {
+                        TesseractOCRParser tesseract = new TesseractOCRParser();
+                        tesseract.parse(FileUtils.openInputStream(tiffFileOfPDF), handler, metadata, context);
+                        metadata.add(MetadataKeys.X_TIKA_PARSED_BY, TesseractOCRParser.class.getName());
+                    }
+                }
 
                 metadata.set(MetadataKeys.OCR_APPLIED, "true");
-                metadata.add(MetadataKeys.X_TIKA_PARSED_BY, TesseractOCRParser.class.getName());
 
                 logger.debug("Document parsing -- OCR processing time: {} ms", System.currentTimeMillis() - tessStartTime);
             }
@@ -166,10 +232,13 @@ public class LegacyPdfProcessorParser extends AbstractParser {
             throw e;
         }
         finally {
-            if (tiffFileOfPDF.exists()) {
+            if (tiffFileOfPDF != null && tiffFileOfPDF.exists()) {
                 tiffFileOfPDF.delete();
             }
-            if (pdfFileFromStream.exists()) {
+            if (tiffPagesDirectory != null) {
+                FileUtils.deleteQuietly(tiffPagesDirectory);
+            }
+            if (!isFileBacked && pdfFileFromStream.exists()) {
                 pdfFileFromStream.delete();
             }
         }
@@ -179,13 +248,21 @@ public class LegacyPdfProcessorParser extends AbstractParser {
         return System.getProperty("os.name").startsWith("Windows") ? "convert.exe" : "convert";
     }
 
-    private File makeTiffFromPDF(File input, File output, ImageMagickConfig config) throws IOException, TikaException {
-        String[] cmd = {config.getImageMagickPath() + getImageMagickProg(),
+    /**
+     * Renders the pages of the PDF into a multi-page TIFF, or into a TIFF per page when splitting the pages
+     * (the output is then the pattern of the file names, with the page number placeholder)
+     */
+    private File makeTiffFromPDF(File input, File output, ImageMagickConfig config, boolean splitPages)
+            throws IOException, TikaException {
+        List<String> cmd = new ArrayList<>(List.of(config.getImageMagickPath() + getImageMagickProg(),
                 "-density", config.getDensity(), input.getPath(),
                 "-depth", config.getDepth(),
                 "-quality", config.getQuality(),
-                "-background", "white", "+matte",
-                output.getPath()};
+                "-background", "white", "+matte"));
+        if (splitPages) {
+            cmd.add("+adjoin");
+        }
+        cmd.add(output.getPath());
 
         ProcessBuilder pb = new ProcessBuilder(cmd);
         //setEnv(config, pb);
@@ -198,44 +275,44 @@ public class LegacyPdfProcessorParser extends AbstractParser {
         logStream("ImageMagick-stdout", out, input);
         logStream("ImageMagick-stderr", err, input);
 
-        FutureTask<Integer> waitTask = new FutureTask<Integer>(new Callable<Integer>() {
-            public Integer call() throws Exception {
-                return process.waitFor();
-            }
-        });
-
-        Thread waitThread = new Thread(waitTask);
-        waitThread.start();
-
+        // the process is waited for on the calling thread, which can be a virtual one (see VirtualThreads)
+        boolean completed;
         try {
-            waitTask.get(config.getTimeout(), TimeUnit.SECONDS);
-            return output;
-        } catch (Exception e) {
-            waitThread.interrupt();
+            completed = process.waitFor(config.getTimeout(), TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
             process.destroy();
+            deleteOutput(output, out);
+            Thread.currentThread().interrupt();
+            throw new TikaException("ImageMagick-OCR-PDFParser: interrupted", e);
+        }
 
-            if (output.exists())
-            {
-                IOUtils.closeQuietly(out);
-                output.delete();
-            }
+        if (!completed) {
+            process.destroy();
+            deleteOutput(output, out);
+            throw new TikaException("ImageMagick-OCR-PDFParser: timeout");
+        }
 
-            if (e instanceof InterruptedException)
-            {
-                Thread.currentThread().interrupt();
-                throw new TikaException("ImageMagick-OCR-PDFParser: interrupted", e);
-            }
-            else if (e instanceof  ExecutionException)
-            {
-                throw new TikaException("ImageMagick-OCR-PDFParser: execution exception ", e);
-            }
-            else if (e instanceof TimeoutException)
-            {
-                throw new TikaException("ImageMagick-OCR-PDFParser: timeout", e);
-            }
+        return output;
+    }
+
+    /**
+     * Returns the resolution (DPI) the pages are rendered at, 0 when not set as a number
+     */
+    private static int getDensity(ImageMagickConfig config) {
+        try {
+            return Integer.parseInt(config.getDensity().trim());
+        }
+        catch (NumberFormatException e) {
+            return 0;
         }
+    }
 
-        return null;
+    private static void deleteOutput(File output, InputStream out) {
+        if (output.exists()) {
+            IOUtils.closeQuietly(out);
+            output.delete();
+        }
     }
 
     /**
@@ -244,24 +321,22 @@ public class LegacyPdfProcessorParser extends AbstractParser {
      * closed once fully processed.
      */
     private void logStream(final String logType, final InputStream stream, final File file) {
-        new Thread() {
-            public void run() {
-                Reader reader = new InputStreamReader(stream);
-                StringBuilder out = new StringBuilder();
-                char[] buffer = new char[1024];
-                try {
-                    for (int n = reader.read(buffer); n != -1; n = reader.read(buffer)) {
-                        out.append(buffer, 0, n);
-                    }
-                } catch (IOException e) {
-
-                } finally {
-                    IOUtils.closeQuietly(stream);
+        VirtualThreads.startProcessStreamReader(() -> {
+            Reader reader = new InputStreamReader(stream);
+            StringBuilder out = new StringBuilder();
+            char[] buffer = new char[1024];
+            try {
+                for (int n = reader.read(buffer); n != -1; n = reader.read(buffer)) {
+                    out.append(buffer, 0, n);
                 }
+            } catch (IOException e) {
 
-                String msg = out.toString();
-                LogFactory.getLog(LegacyPdfProcessorParser.class).debug(msg);
+            } finally {
+                IOUtils.closeQuietly(stream);
             }
-        }.start();
+
+            String msg = out.toString();
+            LogFactory.getLog(LegacyPdfProcessorParser.class).debug(msg);
+        });
     }
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package tika.legacy;
 
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.ocr.TesseractOCRConfig;
@@ -11,16 +13,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 import tika.model.TikaProcessingResult;
 import tika.processor.AbstractTikaProcessor;
+import tika.processor.ParallelPdfOcrParser;
+import tika.processor.ProcessingCostEstimate;
+import tika.processor.ProcessingLane;
+import tika.processor.ProcessorGenerationHolder;
+import tika.processor.StageTimings;
+import tika.processor.TesseractWorkerPool;
+import tika.utils.DocumentBuffer;
+import tika.utils.StartupTimings;
 import tika.utils.TikaUtils;
 
 import javax.annotation.PostConstruct;
 import java.io.ByteArrayOutputStream;
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 import static tika.model.MetadataKeys.IMAGE_PROCESSING_ENABLED;
@@ -40,11 +47,30 @@ public class LegacyTikaProcessor extends AbstractTikaProcessor {
     @Autowired
     private LegacyPdfProcessorConfig config;
 
+    // the pool of Tesseract workers (optional), used by the PDF parser when enabled
+    @Autowired(required = false)
+    private TesseractWorkerPool tesseractWorkerPool;
+
     /**
-     * Document-type based automatic detection of the parser to be used by Tika
+     * The parser with its configuration, replaced as a whole on reset
      */
-    private AutoDetectParser defaultParser;
-    private ParseContext defaultParseContext;
+    private static class ProcessorResources {
+        TikaConfig tikaConfig;
+
+        // document-type based automatic detection of the parser to be used by Tika
+        AutoDetectParser defaultParser;
+
+        // the parsers configuration, the parse contexts are created per each processed document
+        // so that they are not shared between the concurrently processed documents
+        TesseractOCRConfig tessConfig;
+        ImageMagickConfig imgConfig;
+    }
+
+    // the current generation of the resources, the requests in progress complete using the one they started with
+    private final ProcessorGenerationHolder<ProcessorResources> generations = new ProcessorGenerationHolder<>(resources -> {});
+
+    // the number of the first pages of PDF documents checked for the text layer when estimating the processing cost
+    private static final int CLASSIFICATION_SAMPLE_PAGES = 3;
 
     private Logger log = LoggerFactory.getLogger(LegacyTikaProcessor.class);
 
@@ -54,46 +80,137 @@ public class LegacyTikaProcessor extends AbstractTikaProcessor {
     @PostConstruct
     @Override
     public void init() throws Exception {
-        defaultParseContext = new ParseContext();
-        defaultParseContext.set(TikaConfig.class, config.getTikaConfig());
-        defaultParseContext.set(LegacyPdfProcessorConfig.class, config);
+        final long startTimeNanos = System.nanoTime();
+        generations.install(createResources(config.getTikaConfig()));
+        StartupTimings.record("legacy_processor", startTimeNanos);
+    }
 
-        TesseractOCRConfig tessConfig = new TesseractOCRConfig();
-//        tessConfig.setTimeout(config.getOcrTimeout());
-        defaultParseContext.set(TesseractOCRConfig.class, tessConfig);
+    private ProcessorResources createResources(TikaConfig tikaConfig) {
+        ProcessorResources resources = new ProcessorResources();
+        resources.tikaConfig = tikaConfig;
 
-        ImageMagickConfig imgConfig = new ImageMagickConfig();
-        imgConfig.setTimeout(config.getConversionTimeout());
-        defaultParseContext.set(ImageMagickConfig.class, imgConfig);
+        resources.tessConfig = new TesseractOCRConfig();
+//        resources.tessConfig.setTimeout(config.getOcrTimeout());
 
-        defaultParser = new AutoDetectParser(config.getTikaConfig());
+        resources.imgConfig = new ImageMagickConfig();
+        resources.imgConfig.setTimeout(config.getConversionTimeout());
+        resources.imgConfig.setImageMagickPath(config.getImageMagickPath());
+
+        resources.defaultParser = new AutoDetectParser(tikaConfig);
+        return resources;
     }
 
     /**
-     * Resets the component with any intermediate data used
+     * Resets the component with any intermediate data used: the new resources (with a new Tika configuration)
+     * are built aside and swapped in once ready, the requests in progress complete using the previous ones
      */
     @Override
-    public void reset() throws Exception {
+    public synchronized void reset() throws Exception {
         // actually, we only need to re-initialize all the resources apart from the configuration
-        init();
+        generations.install(createResources(config.createTikaConfig()));
+        log.info("Legacy Tika processor re-initialized");
+    }
+
+    @Override
+    protected String getConfigurationFingerprint() {
+        return super.getConfigurationFingerprint()
+                + "pdfMinDocTextLength=" + config.getPdfMinDocTextLength()
+                + "tesseractWorkerPool=" + (tesseractWorkerPool != null && tesseractWorkerPool.isEnabled());
+    }
+
+    /**
+     * Estimates the cost of the document following the routing of the parsers: images and the PDFs without
+     * enough text (judging by the text layer of the first pages) are expected to need OCR
+     */
+    @Override
+    public ProcessingCostEstimate estimateCost(DocumentBuffer document) {
+        try (ProcessorGenerationHolder<ProcessorResources>.Lease generation = generations.acquire();
+             TikaInputStream stream = document.openStream()) {
+            MediaType mediaType = generation.get().defaultParser.getDetector().detect(stream, new Metadata());
+
+            if (mediaType.getType().equals("image")) {
+                return ProcessingCostEstimate.builder()
+                        .contentType(mediaType.toString())
+                        .lane(ProcessingLane.OCR)
+                        .pageCount(1)
+                        .numImages(1)
+                        .textLayerLength(0)
+                        .cost(1)
+                        .build();
+            }
+            if (!mediaType.equals(MediaType.application("pdf"))) {
+                return ProcessingCostEstimate.builder()
+                        .contentType(mediaType.toString())
+                        .lane(ProcessingLane.TEXT)
+                        .pageCount(-1)
+                        .numImages(-1)
+                        .textLayerLength(-1)
+                        .cost(0)
+                        .build();
+            }
+
+            try (PDDocument pdfDocument = ParallelPdfOcrParser.loadDocument(stream)) {
+                final int pageCount = pdfDocument.getNumberOfPages();
+                final int numSampledPages = Math.min(CLASSIFICATION_SAMPLE_PAGES, pageCount);
+                final long textLayerLength = extrapolateTextLength(
+                        countTextCharacters(ParallelPdfOcrParser.extractTextLayer(pdfDocument, numSampledPages)), numSampledPages, pageCount);
+                final int cost = textLayerLength > config.getPdfMinDocTextLength() ? 0 : pageCount;
+
+                return ProcessingCostEstimate.builder()
+                        .contentType(mediaType.toString())
+                        .lane(cost > 0 ? ProcessingLane.OCR : ProcessingLane.TEXT)
+                        .pageCount(pageCount)
+                        .numImages(ParallelPdfOcrParser.countImages(pdfDocument))
+                        .textLayerLength(textLayerLength)
+                        .cost(cost)
+                        .build();
+            }
+        }
+        catch (Exception e) {
+            log.debug("Could not estimate the document processing cost, assuming it needs OCR: " + e.getMessage());
+            return ProcessingCostEstimate.unknown();
+        }
+    }
+
+    private ParseContext createParseContext(ProcessorResources resources, StageTimings timings) {
+        ParseContext parseContext = new ParseContext();
+        parseContext.set(StageTimings.class, timings);
+        parseContext.set(TikaConfig.class, resources.tikaConfig);
+        parseContext.set(LegacyPdfProcessorConfig.class, config);
+        parseContext.set(TesseractOCRConfig.class, resources.tessConfig);
+        parseContext.set(ImageMagickConfig.class, resources.imgConfig);
+        if (tesseractWorkerPool != null) {
+            parseContext.set(TesseractWorkerPool.class, tesseractWorkerPool);
+        }
+        return parseContext;
     }
 
     /**
      * Processes the input stream returning the extracted text
      */
     protected TikaProcessingResult processStream(TikaInputStream stream) {
+        final StageTimings timings = new StageTimings();
         TikaProcessingResult result;
 
-        try {
+        try (ProcessorGenerationHolder<ProcessorResources>.Lease generation = generations.acquire()) {
             ByteArrayOutputStream outStream = new ByteArrayOutputStream(64 * 1024);
             BodyContentHandler handler = new BodyContentHandler(outStream);
             Metadata metadata = new Metadata();
             metadata.add(IMAGE_PROCESSING_ENABLED, "true");
 
-            defaultParser.parse(stream, handler, metadata, defaultParseContext);
+            // the PDF parser records its own stages (text extraction, rendering and OCR), the rest is parsing
+            try (StageTimings.Stage ignored = timings.start(StageTimings.PARSING)) {
+                generation.get().defaultParser.parse(stream, handler, metadata, createParseContext(generation.get(), timings));
+            }
+            final String contentType = metadata.get(Metadata.CONTENT_TYPE);
+            timings.setContentType(contentType);
+            timings.setRouteIfAbsent(contentType != null && contentType.startsWith("image/") ? "image" : "default");
 
             // parse the metadata and store the result
-            Map<String, Object> resultMetadata = TikaUtils.extractMetadata(metadata);
+            Map<String, Object> resultMetadata;
+            try (StageTimings.Stage ignored = timings.start(StageTimings.METADATA_EXTRACTION)) {
+                resultMetadata = TikaUtils.extractMetadata(metadata);
+            }
 
             result = TikaProcessingResult.builder()
                     .text(outStream.toString())
@@ -111,12 +228,6 @@ public class LegacyTikaProcessor extends AbstractTikaProcessor {
                     .build();
         }
 
-        return result;
-    }
-
-    @Override
-    protected List<TikaProcessingResult> processBatch(MultipartFile[] multipartFiles) {
-        List <TikaProcessingResult> tikaProcessingResultList = new ArrayList<>();
-        return tikaProcessingResultList;
+        return completeResult(result, timings);
     }
 }
@@ -13,6 +13,10 @@ public class MetadataKeys {
     public final static String PAGE_COUNT = "Page-Count";
     public final static String IMAGE_PROCESSING_ENABLED = "Image-Processing-Enabled";
 
+    // Tika Service internal tags
+    public final static String X_DETECTED_CONTENT_TYPE = "X-TikaService:Detected-Content-Type";
+    public final static String X_OCR_PAGES_COUNT = "X-TikaService:OCR-Pages-Count";
+
     // MS OFFICE metadata tags
     public final static String COMMENTS = "meta:comments";
     public final static String AUTHOR = "meta:last-author";
@@ -1,49 +1,32 @@
 package tika.model;
 
-import org.apache.tika.batch.FileResource;
-import org.apache.tika.metadata.Metadata;
+import tika.utils.DocumentBuffer;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
 
-public class TikaFileResource implements FileResource, Closeable {
+
+/**
+ * A single document submitted for the bulk processing, identified by its resource id (e.g. the file name)
+ */
+public class TikaFileResource implements Closeable {
 
     private final String resourceId;
-    private final Metadata metadata;
-    private final InputStream content;
-    private TikaProcessingResult tikaProcessingResult;
+    private final DocumentBuffer content;
 
-    public TikaFileResource(String resourceId, Metadata metadata, InputStream fileContent) {
+    public TikaFileResource(String resourceId, DocumentBuffer content) {
         this.resourceId = resourceId;
-        this.metadata = metadata;
-        this.content = fileContent;
+        this.content = content;
     }
 
-    @Override
     public String getResourceId() {
         return resourceId;
     }
 
-    @Override
-    public Metadata getMetadata() {
-        return metadata;
-    }
-
-    @Override
-    public InputStream openInputStream() {
+    public DocumentBuffer getContent() {
         return content;
     }
 
-    public TikaProcessingResult getTikaProcessingResult()
-    {
-        return tikaProcessingResult;
-    }
-
-    public void setTikaProcessingResult(TikaProcessingResult tikaProcessingResult) {
-        this.tikaProcessingResult = tikaProcessingResult;
-    }
-
     @Override
     public void close() throws IOException {
         content.close();
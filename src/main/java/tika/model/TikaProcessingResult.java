@@ -14,7 +14,7 @@ import java.util.Map;
  * Tika processing result payload
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 //@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class TikaProcessingResult {
@@ -38,6 +38,9 @@ public class TikaProcessingResult {
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
     OffsetDateTime timestamp;
 
-    // total elapsed time in seconds
+    // total elapsed time in milliseconds
     long processingElapsedTime;
+
+    // the time (in milliseconds) taken by each of the processing stages
+    Map<String, Long> stageTimingsMs;
 }
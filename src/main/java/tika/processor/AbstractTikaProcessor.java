@@ -1,12 +1,31 @@
 package tika.processor;
 
 import org.apache.tika.io.TikaInputStream;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.beans.factory.annotation.Autowired;
+import tika.model.MetadataKeys;
 import tika.model.TikaBinaryDocument;
+import tika.model.TikaFileResource;
 import tika.model.TikaProcessingResult;
+import tika.utils.DocumentBuffer;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -14,6 +33,22 @@ import java.util.List;
  */
 public abstract class AbstractTikaProcessor {
 
+    // the processing results cache (optional), shared by the processors
+    @Autowired(required = false)
+    private ProcessingResultCache resultCache;
+
+    // coalesces the concurrent requests for the identical documents (optional)
+    @Autowired(required = false)
+    private RequestCoalescer requestCoalescer;
+
+    // schedules the documents from the bulk requests (optional, the documents are processed sequentially otherwise)
+    @Autowired(required = false)
+    private BulkProcessingScheduler bulkProcessingScheduler;
+
+    // the latencies of the processing, by the route and the content type (optional)
+    @Autowired(required = false)
+    private ProcessingMetrics processingMetrics;
+
     /**
      * Processor lifecycle methods
      */
@@ -26,7 +61,66 @@ public abstract class AbstractTikaProcessor {
      */
     protected abstract TikaProcessingResult processStream(TikaInputStream tikaInputStream);
 
-    protected abstract List<TikaProcessingResult> processBatch(MultipartFile[] multipartFiles);
+    /**
+     * Returns the processor configuration that affects the processing results, used to identify the cached results
+     */
+    protected String getConfigurationFingerprint() {
+        return getClass().getName();
+    }
+
+    /**
+     * Completes the result with the time taken by the processing and by each of its stages,
+     * recording them in the metrics
+     */
+    protected TikaProcessingResult completeResult(TikaProcessingResult result, StageTimings timings) {
+        result.setProcessingElapsedTime(TimeUnit.NANOSECONDS.toMillis(timings.getElapsedNanos()));
+        result.setStageTimingsMs(timings.getStageTimingsMs());
+        if (processingMetrics != null) {
+            processingMetrics.record(getClass().getSimpleName(), timings, Boolean.TRUE.equals(result.getSuccess()));
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the cost of processing of the document, used to decide on the lane it is processed in
+     * (so that the text-native documents can be processed separately from the ones that need OCR) and whether
+     * it can be admitted for processing. As it runs before the processing is scheduled, it shall be cheap
+     * (e.g. based on the detected content type, the number of pages and a sample of the text layer),
+     * the documents that cannot be inspected are assumed to need OCR.
+     */
+    public ProcessingCostEstimate estimateCost(DocumentBuffer document) throws IOException {
+        return ProcessingCostEstimate.unknown();
+    }
+
+    /**
+     * Extrapolates the length of the text layer of the whole document from the one of its first pages
+     */
+    protected static long extrapolateTextLength(long sampleTextLength, int numSampledPages, int pageCount) {
+        return numSampledPages > 0 ? sampleTextLength * pageCount / numSampledPages : 0;
+    }
+
+    /**
+     * Counts the characters of the extracted text apart from the white space, as the text extraction
+     * emits the line breaks for each of the pages even when they have no text layer at all
+     */
+    protected static long countTextCharacters(CharSequence text) {
+        return text.codePoints().filter(c -> !Character.isWhitespace(c)).count();
+    }
+
+    /**
+     * Processes the buffered document content, processors running multiple passes over the document
+     * can override it to re-read the content directly from the buffer and to re-use what has already been
+     * found out when estimating its cost (e.g. the detected content type)
+     */
+    protected TikaProcessingResult processDocument(DocumentBuffer document, ProcessingProgress progress,
+                                                   ProcessingCostEstimate estimate) throws IOException {
+        TikaProcessingResult result;
+        try (TikaInputStream tikaInputStream = document.openStream()) {
+            result = processStream(tikaInputStream);
+        }
+        progress.complete(-1);
+        return result;
+    }
 
     /**
      * Wrappers over the main document processing method
@@ -43,8 +137,243 @@ public abstract class AbstractTikaProcessor {
         return processStream(tikaInputStream);
     }
 
-    public List<TikaProcessingResult> process(MultipartFile[] multipartFiles) {
-        return processBatch(multipartFiles);
+    public TikaProcessingResult process(DocumentBuffer document) throws IOException {
+        return process(document, new ProcessingProgress());
+    }
+
+    /**
+     * Processes the document reporting the progress on the way (NB: when the processing is shared with
+     * a concurrent request for the identical document, the progress is only reported to the first one)
+     */
+    public TikaProcessingResult process(DocumentBuffer document, ProcessingProgress progress) throws IOException {
+        return process(document, progress, ProcessingCostEstimate.unknown());
+    }
+
+    /**
+     * Processes the document whose cost has already been estimated (e.g. to schedule it), re-using the
+     * content type and the page count found out by the estimate
+     */
+    public TikaProcessingResult process(DocumentBuffer document, ProcessingProgress progress,
+                                        ProcessingCostEstimate estimate) throws IOException {
+        if (estimate.getPageCount() > 0) {
+            progress.setPagesTotal(estimate.getPageCount());
+        }
+
+        final boolean useCache = resultCache != null && resultCache.isEnabled();
+        final boolean useCoalescer = requestCoalescer != null && requestCoalescer.isEnabled();
+        if (!useCache && !useCoalescer) {
+            return processDocument(document, progress, estimate);
+        }
+
+        final StageTimings cacheTimings = new StageTimings();
+        final String documentKey;
+        TikaProcessingResult cachedResult = null;
+
+        try (StageTimings.Stage ignored = cacheTimings.start(StageTimings.CACHE_LOOKUP)) {
+            documentKey = createDocumentKey(document);
+            if (useCache) {
+                cachedResult = resultCache.get(documentKey);
+            }
+        }
+
+        if (cachedResult != null) {
+            cacheTimings.setRoute("cache");
+            if (cachedResult.getMetadata() != null && cachedResult.getMetadata().get(MetadataKeys.CONTENT_TYPE) != null) {
+                cacheTimings.setContentType(cachedResult.getMetadata().get(MetadataKeys.CONTENT_TYPE).toString());
+            }
+            progress.complete(-1);
+            return completeResult(cachedResult, cacheTimings);
+        }
+
+        if (!useCoalescer) {
+            return processAndCache(documentKey, document, progress, estimate);
+        }
+
+        try {
+            return requestCoalescer.process(documentKey, document,
+                    () -> processAndCache(documentKey, document, progress, estimate));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return TikaProcessingResult.builder()
+                    .error("Processing of the document has been interrupted")
+                    .success(false)
+                    .build();
+        }
+    }
+
+    /**
+     * Processes the document always running the parsers, i.e. bypassing the results cache and the coalescing
+     * of the identical requests (e.g. when warming up the processing paths)
+     */
+    public TikaProcessingResult processUncached(DocumentBuffer document) throws IOException {
+        return processDocument(document, new ProcessingProgress(), ProcessingCostEstimate.unknown());
+    }
+
+    /**
+     * Identifies the document by its content and the processor configuration
+     */
+    private String createDocumentKey(DocumentBuffer document) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(getConfigurationFingerprint().getBytes(StandardCharsets.UTF_8));
+            return document.computeContentHash() + "-" + HexFormat.of().formatHex(digest.digest(), 0, 16);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private TikaProcessingResult processAndCache(String documentKey, DocumentBuffer document,
+                                                 ProcessingProgress progress, ProcessingCostEstimate estimate)
+            throws IOException {
+        TikaProcessingResult result = processDocument(document, progress, estimate);
+        if (resultCache != null && resultCache.isEnabled()) {
+            resultCache.put(documentKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Provides the documents for the bulk processing one by one (e.g. as they are received), returns null when
+     * there are no more documents
+     */
+    @FunctionalInterface
+    public interface BulkResourceSupplier {
+        TikaFileResource next() throws IOException;
+    }
+
+    /**
+     * Receives the results of the bulk processing, as soon as the processing of each of the documents completes
+     */
+    @FunctionalInterface
+    public interface BulkResultConsumer {
+        void accept(int index, TikaProcessingResult result) throws IOException;
+    }
+
+    /**
+     * Processes the documents in bulk, returning the results in the order of the documents,
+     * each tagged with the resource id of the corresponding document
+     */
+    public List<TikaProcessingResult> process(final List<TikaFileResource> resources) {
+        final TikaProcessingResult[] results = new TikaProcessingResult[resources.size()];
+        final Iterator<TikaFileResource> iterator = resources.iterator();
+        try {
+            // the documents remain owned by the caller
+            process(() -> iterator.hasNext() ? retain(iterator.next()) : null,
+                    (index, result) -> results[index] = result);
+        }
+        catch (IOException e) {
+            // not thrown when collecting the results
+            throw new UncheckedIOException(e);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Processes the documents in bulk, passing the results (tagged with the resource id of the corresponding document)
+     * to the consumer in the order the documents complete, so that the caller does not need to hold all of them.
+     *
+     * The next document is requested from the supplier only when the number of the documents being processed
+     * is below the limit, otherwise the caller is held back until some of them complete. The documents are
+     * owned by the processing, each is closed once its result is passed on. Any error reported by the supplier
+     * or the consumer stops the processing of the remaining documents.
+     */
+    public void process(final BulkResourceSupplier resources, final BulkResultConsumer consumer) throws IOException {
+        if (bulkProcessingScheduler == null) {
+            int index = 0;
+            for (TikaFileResource resource = resources.next(); resource != null; resource = resources.next(), index++) {
+                try (resource) {
+                    TikaProcessingResult result = processResource(resource);
+                    result.setResourceId(resource.getResourceId());
+                    consumer.accept(index, result);
+                }
+            }
+            return;
+        }
+
+        final Map<Integer, TikaFileResource> inFlightResources = new HashMap<>();
+        final Map<Integer, CompletableFuture<TikaProcessingResult>> inFlight = new HashMap<>();
+        final BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+        final int maxInFlight = bulkProcessingScheduler.getMaxDocumentsInFlight();
+
+        try {
+            for (int index = 0; ; index++) {
+                // pass on the results available so far, then wait for the free slot
+                for (Integer done = completed.poll(); done != null; done = completed.poll()) {
+                    passOnResult(done, inFlightResources, inFlight, consumer);
+                }
+                while (inFlight.size() >= maxInFlight) {
+                    passOnResult(completed.take(), inFlightResources, inFlight, consumer);
+                }
+
+                final TikaFileResource resource = resources.next();
+                if (resource == null) {
+                    break;
+                }
+
+                final int resourceIndex = index;
+                inFlightResources.put(resourceIndex, resource);
+                // NB: the documents are classified by the scheduler, not on the calling (request) thread
+                CompletableFuture<TikaProcessingResult> future = bulkProcessingScheduler.submit(resource.getContent(), this);
+                inFlight.put(resourceIndex, future);
+                future.whenComplete((result, e) -> completed.add(resourceIndex));
+            }
+
+            while (!inFlight.isEmpty()) {
+                passOnResult(completed.take(), inFlightResources, inFlight, consumer);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bulk processing of the documents has been interrupted");
+        }
+        catch (ExecutionException e) {
+            // the scheduler reports the failures as results, hence it is not expected to happen
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            // the documents still waiting are skipped by the scheduler, the running ones are not affected by
+            // closing their resources as the scheduler holds its own reference to the document
+            inFlight.values().forEach(future -> future.cancel(true));
+            for (TikaFileResource resource : inFlightResources.values()) {
+                closeQuietly(resource);
+            }
+        }
+    }
+
+    private void passOnResult(int index, Map<Integer, TikaFileResource> inFlightResources,
+                              Map<Integer, CompletableFuture<TikaProcessingResult>> inFlight,
+                              BulkResultConsumer consumer)
+            throws IOException, InterruptedException, ExecutionException {
+        TikaProcessingResult result = inFlight.remove(index).get();
+        try (TikaFileResource resource = inFlightResources.remove(index)) {
+            result.setResourceId(resource.getResourceId());
+            consumer.accept(index, result);
+        }
+    }
+
+    private static TikaFileResource retain(TikaFileResource resource) {
+        return new TikaFileResource(resource.getResourceId(), resource.getContent().retain());
+    }
+
+    private static void closeQuietly(TikaFileResource resource) {
+        try {
+            resource.close();
+        }
+        catch (IOException ignored) {}
+    }
+
+    private TikaProcessingResult processResource(TikaFileResource resource) {
+        try {
+            return process(resource.getContent());
+        }
+        catch (IOException e) {
+            return TikaProcessingResult.builder()
+                    .error("Exception caught while processing the document: " + e.getMessage())
+                    .success(false)
+                    .build();
+        }
     }
 
 }
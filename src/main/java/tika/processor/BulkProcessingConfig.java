@@ -0,0 +1,33 @@
+package tika.processor;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import common.JsonPropertyAccessView;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * The configuration of the bulk documents processing
+ */
+@Data
+@Configuration
+public class BulkProcessingConfig {
+
+    // the max number of documents from a single bulk request that are being processed or waiting for processing
+    // (by the processing workers shared with the other requests), the upload is held back when reached
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.bulk.num-consumers:8}")
+    private int numConsumers;
+
+    // the max time (in seconds) of processing a single document, once its processing started
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.bulk.document-timeout:300}")
+    private int documentTimeout;
+
+    // the max time (in seconds) a document waits for room in the full processing queue, holding back the upload
+    // of the following documents meanwhile, after which it is reported as failed
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.bulk.max-wait-seconds:30}")
+    private int maxWaitSeconds;
+}
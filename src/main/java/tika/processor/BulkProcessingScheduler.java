@@ -0,0 +1,28 @@
+package tika.processor;
+
+import tika.model.TikaProcessingResult;
+import tika.utils.DocumentBuffer;
+
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Schedules the processing of the documents from the bulk requests (e.g. on the workers shared with
+ * the other requests), the documents are processed sequentially by the processor when not available.
+ */
+public interface BulkProcessingScheduler {
+
+    /**
+     * Returns the max number of documents from a single bulk request that are being processed or waiting
+     * for processing, the request does not receive any further documents until some of them complete
+     */
+    int getMaxDocumentsInFlight();
+
+    /**
+     * Schedules the processing of a single document by the processor, the returned future completes with either
+     * its result or the one reporting the failure (e.g. the timeout). The caller can be blocked (up to the max
+     * waiting time) while there is no room for the document, holding back the following ones. The documents
+     * which future is cancelled before their processing starts are skipped.
+     */
+    CompletableFuture<TikaProcessingResult> submit(DocumentBuffer document, AbstractTikaProcessor processor);
+}
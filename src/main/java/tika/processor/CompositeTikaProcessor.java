@@ -1,10 +1,10 @@
 package tika.processor;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.tika.batch.*;
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.tika.config.TikaConfig;
+import org.apache.tika.detect.Detector;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
@@ -17,23 +17,29 @@ import org.apache.tika.parser.pdf.PDFParser;
 import org.apache.tika.parser.pdf.PDFParserConfig;
 import org.apache.tika.sax.BodyContentHandler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 import service.controller.TikaServiceController;
 import tika.legacy.ImageMagickConfig;
 import tika.legacy.LegacyPdfProcessorConfig;
 import tika.legacy.LegacyPdfProcessorParser;
 import tika.model.MetadataKeys;
-import tika.model.TikaFileResource;
-import tika.model.TikaFileResourceConsumer;
 import tika.model.TikaProcessingResult;
+import tika.utils.DocumentBuffer;
+import tika.utils.StartupTimings;
 import tika.utils.TikaUtils;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 
 import static tika.model.MetadataKeys.IMAGE_PROCESSING_ENABLED;
 
@@ -53,6 +59,10 @@ public class CompositeTikaProcessor extends AbstractTikaProcessor {
     @Autowired
     private LegacyPdfProcessorConfig legacyPdfProcessorConfig;
 
+    // the pool of Tesseract workers (optional), used in place of Tika's OCR parser when enabled
+    @Autowired(required = false)
+    private TesseractWorkerPool tesseractWorkerPool;
+
     /**
      In order to properly handle PDF documents and OCR we need three separate parsers:
      - a generic parser (for any, non-PDF document type),
@@ -67,158 +77,395 @@ public class CompositeTikaProcessor extends AbstractTikaProcessor {
      passed to the downstream analysis applications.
      */
 
-    // common tika and parsers configuration
-    private TikaConfig tikaConfig;
-    private TesseractOCRConfig tessConfig;
+    /**
+     * The parsers with their configuration used by a single request: the parsers (stateless, hence thread-safe)
+     * and the Tika configuration are shared by all the requests, whereas the parsers configuration (mutable)
+     * is built for each of the requests, so that it is never shared between the concurrently processed documents
+     */
+    private static class ParserBundle {
+        // common tika configuration (shared) and the parsers configuration
+        TikaConfig tikaConfig;
+        TesseractOCRConfig tessConfig;
+
+        // the default, generic parser for handling all document types (except PDF)
+        AutoDetectParser defaultParser;
+
+        // the default parser for PDFs (no OCR)
+        PDFParser pdfTextParser;
+        PDFParserConfig pdfTextOnlyConfig;
+
+        // the parser to extract text from PDFs using OCR
+        PDFParser pdfOcrParser;
+        PDFParserConfig pdfOcrConfig;
+
+        // the parser to extract text from PDFs using OCR only for single-pages
+        // (used to strip-off clutter from LibreOffice-generated PDFs just with images)
+        LegacyPdfProcessorParser pdfSinglePageOcrParser;
+        ImageMagickConfig pdfSinglePageImageMagickConfig;
+    }
 
-    // the default, generic parser for handling all document types (except PDF)
-    private AutoDetectParser defaultParser;
-    private ParseContext defaultParseContext;
+    /**
+     * All the resources of the processor built from its configuration, replaced as a whole on reset
+     */
+    private static class ProcessorResources {
+        // the configuration and the parsers shared by all the requests, built only once
+        // as loading the Tika configuration instantiates all the available parsers
+        TikaConfig tikaConfig;
+        AutoDetectParser defaultParser;
+        PDFParser pdfTextParser;
+        PDFParser pdfOcrParser;
+        LegacyPdfProcessorParser pdfSinglePageOcrParser;
+
+        // the parser to extract text from PDFs using OCR applied on the pages in parallel
+        ParallelPdfOcrParser pdfParallelOcrParser;
+        ExecutorService pdfParallelOcrExecutor;
+    }
 
-    // the default parser for PDFs (no OCR)
-    private PDFParser pdfTextParser;
-    private ParseContext pdfTextParseContext;
+    // the current generation of the resources, with the previous ones disposed of once their requests complete
+    private final ProcessorGenerationHolder<ProcessorResources> generations =
+            new ProcessorGenerationHolder<>(CompositeTikaProcessor::shutdownResources);
 
-    // the parser to extract text from PDFs using OCR
-    private PDFParser pdfOcrParser;
-    private ParseContext pdfOcrParseContext;
+    // NB: the parse contexts are created per each processed document, as they carry the document-specific
+    // information (such as the detected content type) alongside the parsers configuration of the request
 
-    // the parser to extract text from PDFs using OCR only for single-pages
-    // (used to strip-off clutter from LibreOffice-generated PDFs just with images)
-    private LegacyPdfProcessorParser pdfSinglePageOcrParser;
-    private ParseContext pdfSinglePageOcrParseContext;
+    // the max number of bytes read from the beginning of the document when looking for HTML markup
+    private static final int HTML_DETECTION_PREFIX_SIZE = 64 * 1024;
+    private static final Pattern HTML_MARKUP_PATTERN = Pattern.compile("<html[\\s>]", Pattern.CASE_INSENSITIVE);
 
-    private TikaFileResourceCrawler tikaFileResourceCrawler;
-    private TikaConsumerManager tikaConsumersManager;
-    private StatusReporter statusReporter;
+    // the number of the first pages of PDF documents checked for the text layer when estimating the processing cost
+    private static final int CLASSIFICATION_SAMPLE_PAGES = 3;
 
     private final Logger logger = LogManager.getLogger(TikaServiceController.class);
 
     @PostConstruct
     @Override
     public void init() throws Exception {
+        final long startTimeNanos = System.nanoTime();
+        generations.install(createResources());
+        StartupTimings.record("composite_processor", startTimeNanos);
+    }
+
+    /**
+     * Creates the Tika configuration, with only the allowed parsers (if any are listed)
+     */
+    private TikaConfig createTikaConfig() throws Exception {
+        List<String> allowedParsers = TikaUtils.splitList(compositeTikaProcessorConfig.getParserAllowList());
+        return allowedParsers.isEmpty() ? new TikaConfig() : TikaUtils.createTikaConfig(allowedParsers, Map.of());
+    }
 
-        tikaConfig = new TikaConfig();
+    /**
+     * Builds all the resources of the processor from its current configuration
+     */
+    private ProcessorResources createResources() throws Exception {
+        ProcessorResources resources = new ProcessorResources();
 
-        initializeTesseractConfig();
+        resources.tikaConfig = createTikaConfig();
+        resources.defaultParser = createDefaultParser(resources.tikaConfig);
+        resources.pdfTextParser = new PDFParser();
+        resources.pdfOcrParser = new PDFParser();
+        if (compositeTikaProcessorConfig.isUseLegacyOcrParserForSinglePageDocuments()) {
+            resources.pdfSinglePageOcrParser = new LegacyPdfProcessorParser();
+        }
 
-        initializeDefaultParser();
+        if (compositeTikaProcessorConfig.isPdfParallelPageOcr() || compositeTikaProcessorConfig.isPdfPerPageOcrDecision()) {
+            initializePdfParallelOcrParser(resources);
+        }
+        return resources;
+    }
 
-        initializePdfTextOnlyParser();
+    /**
+     * Builds the set of parsers for a single request, sharing the Tika configuration and the parsers
+     * of the resources, with its own parsers configuration (cheap to build, as no parsers are instantiated)
+     */
+    private ParserBundle createParserBundle(ProcessorResources resources) {
+        ParserBundle parsers = new ParserBundle();
+        parsers.tikaConfig = resources.tikaConfig;
+        parsers.tessConfig = createTesseractConfig();
+        parsers.defaultParser = resources.defaultParser;
 
-        initializePdfOcrParser();
+        initializePdfTextOnlyParser(parsers, resources);
+        initializePdfOcrParser(parsers, resources);
 
         if (compositeTikaProcessorConfig.isUseLegacyOcrParserForSinglePageDocuments()) {
-            initializePdfLegacyOcrParser();
+            initializePdfLegacyOcrParser(parsers, resources);
         }
+        return parsers;
     }
 
+    /**
+     * Re-initializes all the resources apart from the configuration: the new ones are built aside, on the calling
+     * thread, and swapped in once ready, whereas the requests already in progress complete using the previous ones
+     */
     @Override
-    public void reset() throws Exception {
-        // actually, we only need to re-initialize all the resources apart from the configuration
-        init();
+    public synchronized void reset() throws Exception {
+        generations.install(createResources());
+        logger.info("Composite Tika processor re-initialized");
     }
 
-    protected TikaProcessingResult processStream(TikaInputStream stream) {
-
-        var currentTimeNanos =  System.nanoTime();
-        TikaProcessingResult result;
-
-        try {
-            ByteArrayInputStream newStream = null;
+    @PreDestroy
+    public void destroy() {
+        generations.shutdown();
+    }
 
-            if (stream.markSupported())
-                stream.mark(Integer.MAX_VALUE);
+    @Override
+    protected String getConfigurationFingerprint() {
+        // NB: only the settings of the legacy parser affecting the extracted content are included
+        return super.getConfigurationFingerprint()
+                + compositeTikaProcessorConfig
+                + "legacyPdfMinDocTextLength=" + legacyPdfProcessorConfig.getPdfMinDocTextLength()
+                + "tesseractWorkerPool=" + (tesseractWorkerPool != null && tesseractWorkerPool.isEnabled());
+    }
 
-            if(stream.hasInputStreamFactory()) {
-                newStream = new ByteArrayInputStream(stream.getInputStreamFactory().getInputStream().readAllBytes());
+    /**
+     * Estimates the cost of the document following the same routing as used when processing it: images
+     * and the PDFs that would have OCR applied (judging by the text layer of the first pages) are expected
+     * to need OCR, in case of the per-page OCR decision only on the share of the pages without the text layer
+     */
+    @Override
+    public ProcessingCostEstimate estimateCost(DocumentBuffer document) {
+        try (ProcessorGenerationHolder<ProcessorResources>.Lease generation = generations.acquire();
+             TikaInputStream stream = document.openStream()) {
+            final ProcessorResources resources = generation.get();
+            DetectedDocumentType documentType = detectDocumentType(resources, stream);
+            final String contentType = documentType.getMediaType().toString();
+            final DetectedDocumentType detectedType = new DetectedDocumentType(documentType.getMediaType(),
+                    documentType.isHtml(), null);
+
+            if (documentType.isImage()) {
+                return ProcessingCostEstimate.builder()
+                        .contentType(contentType)
+                        .lane(ProcessingLane.OCR)
+                        .pageCount(1)
+                        .numImages(1)
+                        .textLayerLength(0)
+                        .cost(1)
+                        .documentType(detectedType)
+                        .build();
             }
-            else {
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-                stream.transferTo(outputStream);
-                newStream = new ByteArrayInputStream(outputStream.toByteArray());
+            if (!documentType.isPdf()) {
+                return ProcessingCostEstimate.builder()
+                        .contentType(contentType)
+                        .lane(ProcessingLane.TEXT)
+                        .pageCount(-1)
+                        .numImages(-1)
+                        .textLayerLength(-1)
+                        .cost(0)
+                        .documentType(detectedType)
+                        .build();
             }
 
-            final int MIN_TEXT_BUFFER_SIZE = 1;
-            ByteArrayOutputStream outStream = new ByteArrayOutputStream(MIN_TEXT_BUFFER_SIZE);
-            BodyContentHandler handler = new BodyContentHandler(outStream);
-            Metadata metadata = new Metadata();
-            metadata.add(IMAGE_PROCESSING_ENABLED, String.valueOf(tessConfig.isEnableImagePreprocessing()));
+            try (PDDocument pdfDocument = ParallelPdfOcrParser.loadDocument(stream)) {
+                final int pageCount = pdfDocument.getNumberOfPages();
+                final int numSampledPages = Math.min(CLASSIFICATION_SAMPLE_PAGES, pageCount);
+                final long textLayerLength = extrapolateTextLength(
+                        countTextCharacters(ParallelPdfOcrParser.extractTextLayer(pdfDocument, numSampledPages)), numSampledPages, pageCount);
 
-            // mark the stream for multi-pass processing
-            if (newStream.markSupported()) {
-                newStream.mark(Integer.MAX_VALUE);
+                // the documents with little or no text layer are the ones that need OCR, on each of their pages
+                int cost;
+                if (Objects.equals(compositeTikaProcessorConfig.getPdfOcrStrategy(), "NO_OCR")) {
+                    cost = 0;
+                }
+                else if (isPdfPerPageOcrEnabled()) {
+                    final int numSampledPagesWithoutText = resources.pdfParallelOcrParser.countPagesWithoutUsableText(pdfDocument, numSampledPages);
+                    cost = numSampledPages > 0
+                            ? (int) Math.ceil((double) numSampledPagesWithoutText * pageCount / numSampledPages)
+                            : 0;
+                }
+                else {
+                    cost = isPdfOcrPassRequired(textLayerLength) ? pageCount : 0;
+                }
+
+                return ProcessingCostEstimate.builder()
+                        .contentType(contentType)
+                        .lane(cost > 0 ? ProcessingLane.OCR : ProcessingLane.TEXT)
+                        .pageCount(pageCount)
+                        .numImages(ParallelPdfOcrParser.countImages(pdfDocument))
+                        .textLayerLength(textLayerLength)
+                        .cost(cost)
+                        .documentType(detectedType)
+                        .build();
             }
+        }
+        catch (Exception e) {
+            logger.debug("Could not estimate the document processing cost, assuming it needs OCR: " + e.getMessage());
+            return ProcessingCostEstimate.unknown();
+        }
+    }
 
-            // try to detect whether the document is PDF
-            if (isDocumentOfPdfType(newStream)) {
-                // firstly try the default parser
-                pdfTextParser.parse(newStream, handler, metadata, pdfTextParseContext);
+    protected TikaProcessingResult processStream(TikaInputStream stream) {
+        // the file-backed streams are re-used as they are, hence their content is not copied
+        try (DocumentBuffer document = DocumentBuffer.fromTikaInputStream(stream)) {
+            return processDocument(document, new ProcessingProgress(), ProcessingCostEstimate.unknown());
+        }
+        catch (Exception e) {
+            logger.error(e.getMessage());
+            e.printStackTrace();
+            return TikaProcessingResult.builder()
+                    .error("Exception caught while processing the document: " + e.getMessage())
+                    .success(false)
+                    .build();
+        }
+    }
 
-                // check if there have been enough characters read / extracted and that we read enough bytes from the stream
-                // (images embedded in the documents will occupy quite more space than just raw text)
-                if (outStream.size() >= compositeTikaProcessorConfig.getPdfMinDocTextLength() && !Objects.equals(compositeTikaProcessorConfig.getPdfOcrStrategy(), "NO_OCR")) {
-                    // since we are performing a second pass over the document, we need to reset cursor position
-                    // in both input and output streams
+    @Override
+    protected TikaProcessingResult processDocument(DocumentBuffer document, ProcessingProgress progress,
+                                                   ProcessingCostEstimate estimate) {
 
-                    newStream.reset();
-                    outStream.reset();
+        final StageTimings timings = new StageTimings();
+        TikaProcessingResult result;
 
-                    final boolean useOcrLegacyParser = compositeTikaProcessorConfig.isUseLegacyOcrParserForSinglePageDocuments()
-                            && TikaUtils.getPageCount(metadata) == 1;
+        // the request uses the same generation of the resources until it completes, even if the processor is reset
+        try (ProcessorGenerationHolder<ProcessorResources>.Lease generation = generations.acquire()) {
+            final ProcessorResources resources = generation.get();
+            final ParserBundle parsers = createParserBundle(resources);
 
-                    // TODO: Q: shall we use a clean metadata or re-use some of the previously parsed fields???
-                    handler = new BodyContentHandler(outStream);
-                    metadata = new Metadata();
-                    metadata.add(IMAGE_PROCESSING_ENABLED, String.valueOf(tessConfig.isEnableImagePreprocessing()));
+            // each of the passes over the document (detection, text extraction, OCR) opens a new stream
+            // over the same buffered content, so that it does not need to be copied or marked
+            final int MIN_TEXT_BUFFER_SIZE = 1;
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream(MIN_TEXT_BUFFER_SIZE);
+            BodyContentHandler handler = new BodyContentHandler(outStream);
+            Metadata metadata = new Metadata();
+            metadata.add(IMAGE_PROCESSING_ENABLED, String.valueOf(parsers.tessConfig.isEnableImagePreprocessing()));
+
+            try (TikaInputStream stream = document.openStream()) {
+                // the content type is detected only once (unless already known from the cost estimate), the same
+                // stream is then passed to the parsers so that they can re-use any container opened by the detector
+                DetectedDocumentType documentType = estimate.getDocumentType();
+                if (documentType == null) {
+                    try (StageTimings.Stage ignored = timings.start(StageTimings.DETECTION)) {
+                        documentType = detectDocumentType(resources, stream);
+                    }
+                }
+                timings.setContentType(documentType.getMediaType().toString());
+
+                if (documentType.isPdf() && isPdfPerPageOcrEnabled()) {
+                    // the document is loaded only once, serving both the page count and the text layer
+                    // that is extracted page by page, with OCR applied only on the pages without enough text
+                    PDDocument loadedDocument;
+                    try (StageTimings.Stage ignored = timings.start(StageTimings.PARSING)) {
+                        loadedDocument = ParallelPdfOcrParser.loadDocument(stream);
+                    }
+                    try (PDDocument pdfDocument = loadedDocument) {
+                        final boolean useOcrLegacyParser = compositeTikaProcessorConfig.isUseLegacyOcrParserForSinglePageDocuments()
+                                && pdfDocument.getNumberOfPages() == 1;
+
+                        if (useOcrLegacyParser) {
+                            timings.setRoute("pdf_single_page_ocr");
+                            try (TikaInputStream ocrStream = document.openStream()) {
+                                parsers.pdfSinglePageOcrParser.parse(ocrStream, handler, metadata, createPdfSinglePageOcrParseContext(parsers, documentType, timings));
+                            }
+                            // since we use the parser manually, update the metadata with the name of the parser class used
+                            metadata.add(MetadataKeys.X_TIKA_PARSED_BY, LegacyPdfProcessorParser.class.getName());
+                        }
+                        else {
+                            timings.setRoute("pdf_per_page_ocr");
+                            ParseContext ocrParseContext = createPdfOcrParseContext(parsers, documentType, timings);
+                            ocrParseContext.set(ProcessingProgress.class, progress);
+                            resources.pdfParallelOcrParser.parse(pdfDocument, handler, metadata, ocrParseContext);
+                            // since we use the parser manually, update the metadata with the name of the parser class used
+                            addParallelOcrParserUsed(metadata);
+                        }
+                    }
+                }
+                else if (documentType.isPdf()) {
+                    // firstly try the default parser
+                    timings.setRoute("pdf_text");
+                    try (StageTimings.Stage ignored = timings.start(StageTimings.TEXT_EXTRACTION)) {
+                        parsers.pdfTextParser.parse(stream, handler, metadata, createPdfTextParseContext(parsers, documentType, timings));
+                    }
 
-                    if (useOcrLegacyParser) {
-                        pdfSinglePageOcrParser.parse(newStream, handler, metadata, pdfSinglePageOcrParseContext);
-                        // since we use the parser manually, update the metadata with the name of the parser class used
-                        metadata.add(MetadataKeys.X_TIKA_PARSED_BY, LegacyPdfProcessorParser.class.getName());
+                    // check if there have been enough characters extracted, otherwise the document is expected to store
+                    // its content as images (NB: the white space is not counted, as it is emitted even for the empty pages)
+                    if (isPdfOcrPassRequired(countTextCharacters(outStream.toString(StandardCharsets.UTF_8)))) {
+                        // since we are performing a second pass over the document, we need to reset the output stream
+                        outStream.reset();
+
+                        final boolean useOcrLegacyParser = compositeTikaProcessorConfig.isUseLegacyOcrParserForSinglePageDocuments()
+                                && TikaUtils.getPageCount(metadata) == 1;
+
+                        // TODO: Q: shall we use a clean metadata or re-use some of the previously parsed fields???
+                        handler = new BodyContentHandler(outStream);
+                        metadata = new Metadata();
+                        metadata.add(IMAGE_PROCESSING_ENABLED, String.valueOf(parsers.tessConfig.isEnableImagePreprocessing()));
+
+                        timings.setRoute(useOcrLegacyParser ? "pdf_single_page_ocr" : "pdf_ocr");
+                        try (TikaInputStream ocrStream = document.openStream()) {
+                            if (useOcrLegacyParser) {
+                                parsers.pdfSinglePageOcrParser.parse(ocrStream, handler, metadata, createPdfSinglePageOcrParseContext(parsers, documentType, timings));
+                                // since we use the parser manually, update the metadata with the name of the parser class used
+                                metadata.add(MetadataKeys.X_TIKA_PARSED_BY, LegacyPdfProcessorParser.class.getName());
+                            }
+                            else if (compositeTikaProcessorConfig.isPdfParallelPageOcr()) {
+                                ParseContext ocrParseContext = createPdfOcrParseContext(parsers, documentType, timings);
+                                ocrParseContext.set(ProcessingProgress.class, progress);
+                                resources.pdfParallelOcrParser.parse(ocrStream, handler, metadata, ocrParseContext);
+                                // since we use the parser manually, update the metadata with the name of the parser class used
+                                addParallelOcrParserUsed(metadata);
+                            }
+                            else {
+                                // the rendering of the pages is run by the parser, together with OCR
+                                try (StageTimings.Stage ignored = timings.start(StageTimings.OCR)) {
+                                    parsers.pdfOcrParser.parse(ocrStream, handler, metadata, createPdfOcrParseContext(parsers, documentType, timings));
+                                }
+                                // since we use the parser manually, update the metadata with the name of the parser class used
+                                metadata.add(MetadataKeys.X_TIKA_PARSED_BY, PDFParser.class.getName());
+                            }
+                        }
                     }
                     else {
-                        pdfOcrParser.parse(newStream, handler, metadata, pdfOcrParseContext);
                         // since we use the parser manually, update the metadata with the name of the parser class used
                         metadata.add(MetadataKeys.X_TIKA_PARSED_BY, PDFParser.class.getName());
                     }
                 }
+                else if (documentType.isHtml()) {
+                    timings.setRoute("html");
+                    ParseContext parseContext = createDefaultParseContext(parsers, documentType, timings);
+                    HtmlParser htmlParser = new HtmlParser();
+                    parseContext.set(HtmlParser.class, htmlParser);
+                    try (StageTimings.Stage ignored = timings.start(StageTimings.PARSING)) {
+                        htmlParser.parse(stream, handler, metadata, parseContext);
+                    }
+                    metadata.add(MetadataKeys.X_TIKA_PARSED_BY, HtmlParser.class.getName());
+                }
                 else {
-                    // since we use the parser manually, update the metadata with the name of the parser class used
-                    metadata.add(MetadataKeys.X_TIKA_PARSED_BY, PDFParser.class.getName());
+                    // otherwise, run default documents parser, providing the already detected type
+                    metadata.set(MetadataKeys.X_DETECTED_CONTENT_TYPE, documentType.getMediaType().toString());
+                    // the images are parsed by running OCR over them
+                    final boolean isImage = documentType.getMediaType().getType().equals("image");
+                    timings.setRoute(isImage ? "image" : "default");
+                    try (StageTimings.Stage ignored = timings.start(isImage ? StageTimings.OCR : StageTimings.PARSING)) {
+                        parsers.defaultParser.parse(stream, handler, metadata, createDefaultParseContext(parsers, documentType, timings));
+                    }
+                    metadata.add(MetadataKeys.X_TIKA_PARSED_BY, AutoDetectParser.class.getName());
                 }
             }
-            else if (isDocumentOfHTMLType(newStream)) {
-                newStream.reset();
-                HtmlParser htmlParser = new HtmlParser();
-                defaultParseContext.set(HtmlParser.class, htmlParser);
-                htmlParser.parse(newStream, handler, metadata, defaultParseContext);
-                metadata.add(MetadataKeys.X_TIKA_PARSED_BY, HtmlParser.class.getName());
-            }
-            else {
-                // otherwise, run default documents parser
-                newStream.reset();
-                defaultParser.parse(newStream, handler, metadata, defaultParseContext);
-                metadata.add(MetadataKeys.X_TIKA_PARSED_BY, AutoDetectParser.class.getName());
-            }
+
+            progress.complete(TikaUtils.getPageCount(metadata));
 
             // parse the metadata and store the result
-            Map<String, Object> resultMeta = TikaUtils.extractMetadata(metadata);
+            Map<String, Object> resultMeta;
+            try (StageTimings.Stage ignored = timings.start(StageTimings.METADATA_EXTRACTION)) {
+                resultMeta = TikaUtils.extractMetadata(metadata);
+            }
 
             String outputText = "";
 
             if (compositeTikaProcessorConfig.isEnforceEncodingOutput()) {
-                if (Objects.equals(compositeTikaProcessorConfig.getOutputEncoding(), "")) {
-                    compositeTikaProcessorConfig.setOutputEncoding("UTF-8");
-                }
-                String detectedEncoding = TikaUtils.detectEncoding(new ByteArrayInputStream(outStream.toByteArray()));
-                try {
-                    outputText = new String(outStream.toString().getBytes(detectedEncoding), compositeTikaProcessorConfig.getOutputEncoding());
-                }
-                catch(Exception e) {
-                    outputText = outStream.toString();
-                    logger.error("Failed to convert text to encoding:" + compositeTikaProcessorConfig.getOutputEncoding());
-                    logger.error("Outputting Text in detected encoding:" + detectedEncoding );
+                try (StageTimings.Stage ignored = timings.start(StageTimings.ENCODING)) {
+                    // NB: the configuration is shared by all the requests, hence it is not modified here
+                    String outputEncoding = compositeTikaProcessorConfig.getOutputEncoding();
+                    if (Objects.equals(outputEncoding, "")) {
+                        outputEncoding = "UTF-8";
+                    }
+                    String detectedEncoding = TikaUtils.detectEncoding(new ByteArrayInputStream(outStream.toByteArray()));
+                    try {
+                        outputText = new String(outStream.toString().getBytes(detectedEncoding), outputEncoding);
+                    }
+                    catch(Exception e) {
+                        outputText = outStream.toString();
+                        logger.error("Failed to convert text to encoding:" + outputEncoding);
+                        logger.error("Outputting Text in detected encoding:" + detectedEncoding );
+                    }
                 }
             }
             else {
@@ -230,7 +477,6 @@ public class CompositeTikaProcessor extends AbstractTikaProcessor {
                     .metadata(resultMeta)
                     .success(true)
                     .timestamp(OffsetDateTime.now())
-                    .processingElapsedTime((long) ((System.nanoTime() - currentTimeNanos) * 1e-9))
                     .build();
 
             outStream.close();
@@ -244,162 +490,72 @@ public class CompositeTikaProcessor extends AbstractTikaProcessor {
                     .build();
         }
 
-        return result;
+        return completeResult(result, timings);
     }
 
-    protected List<TikaProcessingResult> processBatch(MultipartFile[] multipartFiles) {
-
-        List <TikaProcessingResult> tikaProcessingResultList = new ArrayList<>();
-
-        int timeoutMilisToSec = compositeTikaProcessorConfig.getOcrTimeout() * 60;
-
-        try {
-            List<TikaFileResource> tikaFileResourceList = new ArrayList<>();
-
-            logger.info("Converting multi-part files to resources files....");
-
-            for(MultipartFile file: multipartFiles) {
-                TikaFileResource tikaFileResource = new TikaFileResource(file.getOriginalFilename(), new Metadata(), TikaInputStream.get(file.getBytes()));
-                tikaFileResourceList.add(tikaFileResource);
-            }
-            logger.info("Conversion finished....");
-
-            int numberOfBatches = compositeTikaProcessorConfig.getBatchNumConsumers() > tikaFileResourceList.size() ? 1 : compositeTikaProcessorConfig.getBatchNumConsumers();
-            var queueBatches = TikaUtils.getBatchesFromList(tikaFileResourceList, numberOfBatches);
-
-            ArrayBlockingQueue<FileResource> fileResourceArrayBlockingQueue = new ArrayBlockingQueue<>(tikaFileResourceList.size(), true, tikaFileResourceList);
-            List<FileResourceConsumer> fileResourceConsumerList = new ArrayList<>();
-
-            for(List<TikaFileResource> fileResourceList: queueBatches) {
-                var tmpQueue = new ArrayBlockingQueue<FileResource>(fileResourceList.size(), true, fileResourceList);
-                fileResourceConsumerList.add(new TikaResourceConsumer(tmpQueue));
-            }
-
-            tikaFileResourceCrawler = new TikaFileResourceCrawler(fileResourceArrayBlockingQueue, fileResourceConsumerList.size());
-            tikaFileResourceCrawler.setMaxConsecWaitInMillis(1000);
-
-            tikaConsumersManager = new TikaConsumerManager(fileResourceConsumerList);
-            // does not let consumers hang over the specified maximum time
-            tikaConsumersManager.setConsumersManagerMaxMillis(timeoutMilisToSec);
+    /**
+     * Runs the content type detection over the document, together with the HTML markup heuristic
+     * (used for the documents that have no proper type assigned) that only looks at a bounded prefix
+     */
+    private DetectedDocumentType detectDocumentType(ProcessorResources resources, TikaInputStream stream) throws IOException {
+        MediaType mediaType = resources.defaultParser.getDetector().detect(stream, new Metadata());
 
-            statusReporter = new StatusReporter(tikaFileResourceCrawler, tikaConsumersManager);
-            statusReporter.setSleepMillis(1000);
-            statusReporter.setStaleThresholdMillis(1000);
+        boolean isHTML = mediaType.getSubtype().contains("html");
 
-            BatchProcess batchProcess = new BatchProcess(tikaFileResourceCrawler, tikaConsumersManager, statusReporter, null);
-            batchProcess.setTimeoutCheckPulseMillis(100);
-            batchProcess.setPauseOnEarlyTerminationMillis(100);
-            batchProcess.setTimeoutThresholdMillis(timeoutMilisToSec);
-            batchProcess.setMaxAliveTimeSeconds(compositeTikaProcessorConfig.getOcrTimeout());
+        // hack to deal with docs that have no type assigned
+        if (!isHTML && (mediaType.equals(MediaType.OCTET_STREAM) || mediaType.getType().equals("text"))) {
+            isHTML = containsHtmlMarkup(stream);
+        }
 
-            var parallelFileProcessingResult = batchProcess.call();
+        return new DetectedDocumentType(mediaType, isHTML, stream.getOpenContainer());
+    }
 
-            for (TikaFileResource tikaFileResource : tikaFileResourceList) {
-                tikaProcessingResultList.add(tikaFileResource.getTikaProcessingResult());
-                tikaFileResource.close();
-            }
+    private boolean containsHtmlMarkup(TikaInputStream stream) throws IOException {
+        byte[] prefix;
+        stream.mark(HTML_DETECTION_PREFIX_SIZE);
+        try {
+            prefix = stream.readNBytes(HTML_DETECTION_PREFIX_SIZE);
+        }
+        finally {
+            stream.reset();
+        }
 
-            logger.info("Consumed:" + parallelFileProcessingResult.getConsumed());
-            logger.info("Batch processing terminated with message: " + parallelFileProcessingResult.getCauseForTermination());
-            logger.info("Successfully finished processing.");
+        Charset charset = StandardCharsets.UTF_8;
+        String detectedEncoding = TikaUtils.detectEncoding(new ByteArrayInputStream(prefix));
+        try {
+            charset = Charset.forName(detectedEncoding);
         }
         catch (Exception e) {
-            e.printStackTrace();
-            logger.error(e.getMessage());
+            logger.debug("Cannot use the detected encoding: '" + detectedEncoding + "', falling back to UTF-8");
         }
 
-        return tikaProcessingResultList;
+        return HTML_MARKUP_PATTERN.matcher(new String(prefix, charset)).find();
     }
 
-    private class TikaResourceConsumer extends TikaFileResourceConsumer {
+    /**
+     * A detector re-using the content type already detected for the processed document,
+     * the remaining (e.g. embedded) documents are passed to the underlying detector
+     */
+    private static class DetectedTypeAwareDetector implements Detector {
 
-        private int fileQueueSize = 0;
+        private final Detector detector;
 
-        public TikaResourceConsumer(ArrayBlockingQueue<FileResource> fileQueue) {
-            super(fileQueue);
-            fileQueueSize = fileQueue.size();
+        DetectedTypeAwareDetector(Detector detector) {
+            this.detector = detector;
         }
 
         @Override
-        public boolean processFileResource(FileResource fileResource) {
-            int inactiveConsumers = 0;
-            try {
-                TikaProcessingResult result;
-                result = processStream(TikaInputStream.get(fileResource.openInputStream()));
-                logger.info("Processing file: " + fileResource.getResourceId());
-                if(result.getSuccess()) {
-                    ((TikaFileResource) fileResource).setTikaProcessingResult(result);
-                }
-                else {
-                    logger.warn("OCR-ing failed" + result.getError());
-                }
-
-                if(this.getNumResourcesConsumed() + 1 >= fileQueueSize) {
-                    this.pleaseShutdown();
-                    this.flushAndClose((TikaFileResource) fileResource);
-                    inactiveConsumers = inactiveConsumers + 1;
-                }
-
-                var consumers = tikaConsumersManager.getConsumers();
-
-                for(FileResourceConsumer consumer : consumers) {
-                    if(!consumer.isStillActive()) {
-                        inactiveConsumers = inactiveConsumers + 1;
-                        consumer.pleaseShutdown();
-                    }
-                }
-
-                if(inactiveConsumers > consumers.size()) {
-                    tikaFileResourceCrawler.shutDownNoPoison();
-                    tikaConsumersManager.shutdown();
-                    statusReporter.setIsShuttingDown(true);
-                }
-
-                return true;
+        public MediaType detect(InputStream input, Metadata metadata) throws IOException {
+            String detectedType = metadata.get(MetadataKeys.X_DETECTED_CONTENT_TYPE);
+            if (detectedType != null) {
+                return MediaType.parse(detectedType);
             }
-            catch (Exception e) {
-                e.printStackTrace();
-                logger.error("OCR-ing failed" + e.getMessage());
-            }
-            return false;
+            return detector.detect(input, metadata);
         }
     }
 
-    private boolean isDocumentOfPdfType(InputStream stream) throws Exception {
-        Metadata metadata = new Metadata();
-        MediaType mediaType = defaultParser.getDetector().detect(stream, metadata);
-        return mediaType.equals(MediaType.application("pdf"));
-    }
-
-    private boolean isDocumentOfImageType(InputStream stream) throws Exception {
-        Metadata metadata = new Metadata();
-        MediaType mediaType = defaultParser.getDetector().detect(stream, metadata);
-        return mediaType.getType().contains("image");
-    }
-
-    private boolean isDocumentOfHTMLType(InputStream stream) throws Exception {
-        Metadata metadata = new Metadata();
-        MediaType mediaType = defaultParser.getDetector().detect(stream, metadata);
-
-        boolean isHTML = mediaType.getSubtype().contains("html");
-
-        // hack to deal with docs that have no type assigned
-        if (!isHTML)
-        {
-            String detectedEncoding = TikaUtils.detectEncoding(stream);
-            byte[] streamBytes = IOUtils.toByteArray(stream);
-
-            String result = new String(streamBytes, detectedEncoding);
-            if (result.contains("<html>") && result.contains("</html>")) {
-                isHTML = true;
-            }
-        }
-
-        return isHTML;
-    }
-
-    private void initializeTesseractConfig() {
-        tessConfig = new TesseractOCRConfig();
+    private TesseractOCRConfig createTesseractConfig() {
+        TesseractOCRConfig tessConfig = new TesseractOCRConfig();
         tessConfig.setTimeoutSeconds(compositeTikaProcessorConfig.getOcrTimeout());
         tessConfig.setApplyRotation(compositeTikaProcessorConfig.isOcrApplyRotation());
         tessConfig.setResize(compositeTikaProcessorConfig.getOcrResize());
@@ -409,19 +565,28 @@ public class CompositeTikaProcessor extends AbstractTikaProcessor {
         tessConfig.setSkipOcr(false);
         tessConfig.setEnableImagePreprocessing(compositeTikaProcessorConfig.isOcrEnableImageProcessing());
         tessConfig.setLanguage(compositeTikaProcessorConfig.getOcrLanguage());
+        return tessConfig;
     }
 
-    private void initializeDefaultParser() {
-        defaultParser = new AutoDetectParser(tikaConfig);
+    private static AutoDetectParser createDefaultParser(TikaConfig tikaConfig) {
+        AutoDetectParser defaultParser = new AutoDetectParser(tikaConfig);
+        defaultParser.setDetector(new DetectedTypeAwareDetector(tikaConfig.getDetector()));
+        return defaultParser;
+    }
 
-        defaultParseContext = new ParseContext();
-        defaultParseContext.set(TikaConfig.class, tikaConfig);
-        defaultParseContext.set(TesseractOCRConfig.class, tessConfig);
-        defaultParseContext.set(AutoDetectParser.class, defaultParser);
-        defaultParseContext.set(Parser.class, defaultParser); //need to add this to make sure recursive parsing happens!
+    private ParseContext createDefaultParseContext(ParserBundle parsers, DetectedDocumentType documentType,
+                                                   StageTimings timings) {
+        ParseContext parseContext = new ParseContext();
+        parseContext.set(StageTimings.class, timings);
+        parseContext.set(TikaConfig.class, parsers.tikaConfig);
+        parseContext.set(TesseractOCRConfig.class, parsers.tessConfig);
+        parseContext.set(AutoDetectParser.class, parsers.defaultParser);
+        parseContext.set(Parser.class, parsers.defaultParser); //need to add this to make sure recursive parsing happens!
+        parseContext.set(DetectedDocumentType.class, documentType);
+        return parseContext;
     }
 
-    private void initializePdfTextOnlyParser() {
+    private void initializePdfTextOnlyParser(ParserBundle parsers, ProcessorResources resources) {
         PDFParserConfig pdfTextOnlyConfig = new PDFParserConfig();
         pdfTextOnlyConfig.setExtractInlineImages(false);
         pdfTextOnlyConfig.setExtractUniqueInlineImagesOnly(false); // do not extract multiple inline images
@@ -429,14 +594,22 @@ public class CompositeTikaProcessor extends AbstractTikaProcessor {
         pdfTextOnlyConfig.setOcrRenderingStrategy(PDFParserConfig.OCR_RENDERING_STRATEGY.TEXT_ONLY);
         pdfTextOnlyConfig.setOcrStrategy(PDFParserConfig.OCR_STRATEGY.NO_OCR);
 
-        pdfTextParser = new PDFParser();
-        pdfTextParseContext = new ParseContext();
-        pdfTextParseContext.set(TikaConfig.class, tikaConfig);
-        pdfTextParseContext.set(PDFParserConfig.class, pdfTextOnlyConfig);
-        // pdfTextParseContext.set(Parser.class, defaultParser); //need to add this to make sure recursive parsing happens!
+        parsers.pdfTextOnlyConfig = pdfTextOnlyConfig;
+        parsers.pdfTextParser = resources.pdfTextParser;
+    }
+
+    private ParseContext createPdfTextParseContext(ParserBundle parsers, DetectedDocumentType documentType,
+                                                   StageTimings timings) {
+        ParseContext parseContext = new ParseContext();
+        parseContext.set(StageTimings.class, timings);
+        parseContext.set(TikaConfig.class, parsers.tikaConfig);
+        parseContext.set(PDFParserConfig.class, parsers.pdfTextOnlyConfig);
+        parseContext.set(DetectedDocumentType.class, documentType);
+        // parseContext.set(Parser.class, defaultParser); //need to add this to make sure recursive parsing happens!
+        return parseContext;
     }
 
-    private void initializePdfOcrParser() {
+    private void initializePdfOcrParser(ParserBundle parsers, ProcessorResources resources) {
         PDFParserConfig pdfOcrConfig = new PDFParserConfig();
         pdfOcrConfig.setExtractUniqueInlineImagesOnly(false); // do not extract multiple inline images
         pdfOcrConfig.setOcrDPI(compositeTikaProcessorConfig.getPdfOcrDPI());
@@ -484,26 +657,120 @@ public class CompositeTikaProcessor extends AbstractTikaProcessor {
         pdfOcrConfig.setImageStrategy(ocrImageStrategy);
         pdfOcrConfig.setOcrStrategy(ocrStrategy);
 
-        pdfOcrParser = new PDFParser();
-        pdfOcrParseContext = new ParseContext();
-        pdfOcrParseContext.set(TikaConfig.class, tikaConfig);
-        pdfOcrParseContext.set(PDFParserConfig.class, pdfOcrConfig);
-        pdfOcrParseContext.set(TesseractOCRConfig.class, tessConfig);
-        //pdfOcrParseContext.set(Parser.class, defaultParser); //need to add this to make sure recursive parsing happens!
+        parsers.pdfOcrConfig = pdfOcrConfig;
+        parsers.pdfOcrParser = resources.pdfOcrParser;
+    }
+
+    private ParseContext createPdfOcrParseContext(ParserBundle parsers, DetectedDocumentType documentType,
+                                                  StageTimings timings) {
+        ParseContext parseContext = new ParseContext();
+        parseContext.set(StageTimings.class, timings);
+        parseContext.set(TikaConfig.class, parsers.tikaConfig);
+        parseContext.set(PDFParserConfig.class, parsers.pdfOcrConfig);
+        parseContext.set(TesseractOCRConfig.class, parsers.tessConfig);
+        parseContext.set(DetectedDocumentType.class, documentType);
+        //parseContext.set(Parser.class, defaultParser); //need to add this to make sure recursive parsing happens!
+        return parseContext;
     }
 
-    private void initializePdfLegacyOcrParser() {
-        pdfSinglePageOcrParser = new LegacyPdfProcessorParser();
+    /**
+     * Checks whether the PDF document needs the OCR pass, i.e. its text layer is not longer than the configured minimum
+     */
+    private boolean isPdfOcrPassRequired(long extractedTextLength) {
+        return extractedTextLength <= compositeTikaProcessorConfig.getPdfMinDocTextLength()
+                && !Objects.equals(compositeTikaProcessorConfig.getPdfOcrStrategy(), "NO_OCR");
+    }
 
-        pdfSinglePageOcrParseContext = new ParseContext();
-        pdfSinglePageOcrParseContext.set(TikaConfig.class, tikaConfig);
-        pdfSinglePageOcrParseContext.set(LegacyPdfProcessorConfig.class, legacyPdfProcessorConfig);
-        pdfSinglePageOcrParseContext.set(TesseractOCRConfig.class, tessConfig);
+    /**
+     * The parallel OCR parser is only reported when OCR has been applied on any of the pages, otherwise
+     * (all the pages having the text layer) the text is extracted as by the PDF parser
+     */
+    private static void addParallelOcrParserUsed(Metadata metadata) {
+        final String numOcrPages = metadata.get(MetadataKeys.X_OCR_PAGES_COUNT);
+        if (numOcrPages != null && Integer.parseInt(numOcrPages) > 0) {
+            metadata.add(MetadataKeys.X_TIKA_PARSED_BY, ParallelPdfOcrParser.class.getName());
+        }
+        else {
+            metadata.add(MetadataKeys.X_TIKA_PARSED_BY, PDFParser.class.getName());
+        }
+    }
 
-        ImageMagickConfig imgConfig = new ImageMagickConfig();
-        imgConfig.setTimeout(legacyPdfProcessorConfig.getConversionTimeout());
+    private boolean isPdfPerPageOcrEnabled() {
+        return compositeTikaProcessorConfig.isPdfPerPageOcrDecision()
+                && !Objects.equals(compositeTikaProcessorConfig.getPdfOcrStrategy(), "NO_OCR");
+    }
 
-        pdfSinglePageOcrParseContext.set(ImageMagickConfig.class, imgConfig);
-        pdfSinglePageOcrParseContext.set(Parser.class, defaultParser); //need to add this to make sure recursive parsing happens!
+    private void initializePdfParallelOcrParser(ProcessorResources resources) {
+        // only the per-page OCR decision is enabled, hence the pages are processed sequentially on the thread
+        // of the request, so that the requests do not queue behind each other on a shared pool
+        final boolean parallelPageOcr = compositeTikaProcessorConfig.isPdfParallelPageOcr();
+        int numWorkers = parallelPageOcr ? compositeTikaProcessorConfig.getPdfParallelPageOcrWorkers() : 1;
+        if (numWorkers <= 0) {
+            numWorkers = Runtime.getRuntime().availableProcessors();
+        }
+
+        // when using the Tesseract workers pool, each of the workers processes a batch of pages
+        final boolean useWorkerPool = tesseractWorkerPool != null && tesseractWorkerPool.isEnabled();
+        final int pagesPerWorkerBatch = useWorkerPool ? tesseractWorkerPool.getMaxPagesPerWorker() : 1;
+
+        int renderAhead = compositeTikaProcessorConfig.getPdfParallelPageOcrRenderAhead();
+        if (renderAhead <= 0) {
+            renderAhead = 2 * numWorkers * pagesPerWorkerBatch;
+        }
+
+        if (parallelPageOcr) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tika-pdf-ocr-");
+            threadFactory.setDaemon(true);
+            resources.pdfParallelOcrExecutor = Executors.newFixedThreadPool(numWorkers, threadFactory);
+        }
+
+        // the rendered pages are passed to the default parser, that will apply OCR on the images
+        resources.pdfParallelOcrParser = new ParallelPdfOcrParser(resources.defaultParser, resources.pdfParallelOcrExecutor,
+                compositeTikaProcessorConfig.getPdfOcrDPI(), renderAhead);
+
+        if (useWorkerPool) {
+            resources.pdfParallelOcrParser.setOcrWorkerPool(tesseractWorkerPool, pagesPerWorkerBatch);
+        }
+
+        final String tmpDirectory = compositeTikaProcessorConfig.getPdfParallelPageOcrTmpDirectory();
+        if (tmpDirectory != null && !tmpDirectory.isBlank()) {
+            resources.pdfParallelOcrParser.setTmpDirectory(Paths.get(tmpDirectory));
+        }
+
+        if (compositeTikaProcessorConfig.isPdfPerPageOcrDecision()) {
+            resources.pdfParallelOcrParser.setPerPageOcrDecision(compositeTikaProcessorConfig.getPdfMinPageTextLength(),
+                    compositeTikaProcessorConfig.getPdfMinPageTextQuality());
+        }
+    }
+
+    private static void shutdownResources(ProcessorResources resources) {
+        // the pages that are already queued will still be processed
+        if (resources.pdfParallelOcrExecutor != null) {
+            resources.pdfParallelOcrExecutor.shutdown();
+        }
+    }
+
+    private void initializePdfLegacyOcrParser(ParserBundle parsers, ProcessorResources resources) {
+        parsers.pdfSinglePageOcrParser = resources.pdfSinglePageOcrParser;
+
+        parsers.pdfSinglePageImageMagickConfig = new ImageMagickConfig();
+        parsers.pdfSinglePageImageMagickConfig.setTimeout(legacyPdfProcessorConfig.getConversionTimeout());
+        parsers.pdfSinglePageImageMagickConfig.setImageMagickPath(legacyPdfProcessorConfig.getImageMagickPath());
+    }
+
+    private ParseContext createPdfSinglePageOcrParseContext(ParserBundle parsers, DetectedDocumentType documentType,
+                                                            StageTimings timings) {
+        ParseContext parseContext = new ParseContext();
+        parseContext.set(StageTimings.class, timings);
+        parseContext.set(TikaConfig.class, parsers.tikaConfig);
+        parseContext.set(LegacyPdfProcessorConfig.class, legacyPdfProcessorConfig);
+        parseContext.set(TesseractOCRConfig.class, parsers.tessConfig);
+        parseContext.set(ImageMagickConfig.class, parsers.pdfSinglePageImageMagickConfig);
+        if (tesseractWorkerPool != null) {
+            parseContext.set(TesseractWorkerPool.class, tesseractWorkerPool);
+        }
+        parseContext.set(Parser.class, parsers.defaultParser); //need to add this to make sure recursive parsing happens!
+        parseContext.set(DetectedDocumentType.class, documentType);
+        return parseContext;
     }
 }
@@ -3,6 +3,7 @@ package tika.processor;
 import com.fasterxml.jackson.annotation.JsonView;
 import common.JsonPropertyAccessView;
 import lombok.Data;
+import lombok.ToString;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
@@ -71,6 +72,29 @@ public class CompositeTikaProcessorConfig {
     @Value("${tika.parsers.pdf-ocr-parser.ocr-dpi:300}")
     private int pdfOcrDPI;
 
+    // apply OCR on the PDF pages in parallel: the pages are rendered (using the DPI set above) and passed
+    // to a pool of OCR workers, with the extracted text being re-assembled in the page order
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.pdf-ocr-parser.parallel-page-ocr:false}")
+    private boolean pdfParallelPageOcr;
+
+    // the number of OCR workers used when applying OCR on the pages in parallel (0 - the number of available cores)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.pdf-ocr-parser.parallel-page-ocr-workers:0}")
+    private int pdfParallelPageOcrWorkers;
+
+    // the max number of pages rendered ahead of the OCR workers, per document (0 - twice the number of workers)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.pdf-ocr-parser.parallel-page-ocr-render-ahead:0}")
+    private int pdfParallelPageOcrRenderAhead;
+
+    // the directory where the pages rendered for OCR are stored, the same one as for the documents spilled from
+    // the requests (when empty, the system default is used), not affecting the processing results
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${processing.request-buffer.tmp-directory:}")
+    @ToString.Exclude
+    private String pdfParallelPageOcrTmpDirectory;
+
     // Drop Threshold for image detection
     @JsonView(JsonPropertyAccessView.Public.class)
     @Value("${tika.parsers.pdf-ocr-parser.drop-threshold:1.0f}")
@@ -105,6 +129,23 @@ public class CompositeTikaProcessorConfig {
     @Value("${tika.parsers.pdf-ocr-parser.min-doc-byte-size:10000}")
     private int pdfMinDocByteSize;
 
+    // decide whether to apply OCR per each PDF page rather than on the whole document: the text layer is
+    // extracted page by page and only the pages that do not meet the thresholds below are passed to OCR
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.pdf-ocr-parser.per-page-ocr-decision:false}")
+    private boolean pdfPerPageOcrDecision;
+
+    // apply OCR on the page when the number of characters extracted from its text layer is less than N
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.pdf-ocr-parser.min-page-text-length:10}")
+    private int pdfMinPageTextLength;
+
+    // apply OCR on the page when the ratio of valid characters (letters, digits, whitespaces, punctuation)
+    // in its text layer is less than N (used to catch the garbled text layers)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.pdf-ocr-parser.min-page-text-quality:0.5f}")
+    private float pdfMinPageTextQuality;
+
     // use a legacy parser for applying OCR for single-page PDF documents
     // (NB: when exporting single-page PDFs from LibreOffice that contain only one image,
     //   some additional clutter may be embedded in the PDF content)
@@ -112,10 +153,11 @@ public class CompositeTikaProcessorConfig {
     @Value("${tika.parsers.use-legacy-ocr-parser-for-single-page-doc:false}")
     private boolean useLegacyOcrParserForSinglePageDocuments;
 
-    // number of consumer for file batch processing
+    // the comma-separated class names of the only parsers to be loaded by the default parser, so that
+    // the unused ones are not loaded on startup (when empty, all the parsers available on the class path are loaded)
     @JsonView(JsonPropertyAccessView.Public.class)
-    @Value("${tika.bulk.num-consumers:8}")
-    private int batchNumConsumers;
+    @Value("${tika.parsers.allow-list:}")
+    private String parserAllowList;
 
     @JsonView(JsonPropertyAccessView.Public.class)
     @Value("${tika.post-ocr.output-encoding:UTF-8}")
@@ -0,0 +1,33 @@
+package tika.processor;
+
+import lombok.Data;
+import org.apache.tika.mime.MediaType;
+
+
+/**
+ * The content type of the processed document, detected only once per request.
+ *
+ * It is carried in the request's ParseContext alongside any container opened by the detector
+ * (e.g. the OOXML package), so that neither the routing logic nor the parsers need to run
+ * the detection again.
+ */
+@Data
+public class DetectedDocumentType {
+
+    // the content type as identified by the detector
+    private final MediaType mediaType;
+
+    // whether the document shall be parsed as HTML (also covering the documents with no type assigned)
+    private final boolean html;
+
+    // the container opened during the detection (if any)
+    private final Object openContainer;
+
+    public boolean isPdf() {
+        return mediaType.equals(MediaType.application("pdf"));
+    }
+
+    public boolean isImage() {
+        return mediaType.getType().contains("image");
+    }
+}
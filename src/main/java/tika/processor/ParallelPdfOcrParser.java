@@ -0,0 +1,525 @@
+package tika.processor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.Office;
+import org.apache.tika.metadata.PDF;
+import org.apache.tika.metadata.PagedText;
+import org.apache.tika.metadata.Property;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.AbstractParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.ocr.TesseractOCRConfig;
+import org.apache.tika.parser.xmp.JempboxExtractor;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import tika.model.MetadataKeys;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+
+/**
+ * A PDF parser applying OCR over the document pages in parallel.
+ *
+ * The pages are rendered one by one (PDFBox renderer is not thread-safe) on the calling thread and
+ * passed to a pool of OCR workers. The number of pages rendered ahead of the workers is bounded,
+ * so that the disk and memory usage does not depend on the number of pages in the document.
+ * The text extracted from the pages is then re-assembled in the page order.
+ *
+ * Optionally, the decision whether to apply OCR can be made per each page: the text layer is extracted
+ * page by page and only the pages with not enough (or garbled) text are passed to the OCR workers.
+ * When the Tesseract workers pool is used, the pages are passed to the workers in batches.
+ *
+ * The number of pages OCR has been applied on is reported in the metadata (X-TikaService:OCR-Pages-Count).
+ */
+public class ParallelPdfOcrParser extends AbstractParser {
+
+    private static final long serialVersionUID = 2178937413566718104L;
+
+    private static final Set<MediaType> SUPPORTED_TYPES = Collections.unmodifiableSet(
+            new HashSet<>(Collections.singletonList(MediaType.application("pdf"))));
+
+    private static final TesseractOCRConfig DEFAULT_TESSERACT_CONFIG = new TesseractOCRConfig();
+
+    // the document information entries mapped onto the Tika properties, the others are reported as the custom ones
+    private static final Set<String> STANDARD_INFO_KEYS = Set.of("Title", "Author", "Subject", "Keywords", "Creator",
+            "Producer", "CreationDate", "ModDate", "Trapped");
+
+    private static final Logger logger = LogManager.getLogger(ParallelPdfOcrParser.class);
+
+    // the parser used to run OCR over the rendered page images
+    private final Parser ocrParser;
+
+    private final transient ExecutorService ocrExecutor;
+
+    private final int ocrDpi;
+
+    private final int renderAhead;
+
+    // whether to extract the text layer of each page and apply OCR only on the pages without usable text
+    private boolean perPageOcrDecision = false;
+
+    // the min number of characters and the min ratio of valid characters in the page text layer
+    // for the page to be considered as having usable text
+    private int minPageTextLength = 1;
+    private float minPageTextQuality = 0.0f;
+
+    // the pool of Tesseract workers (if used) and the number of pages passed to a single worker
+    private transient TesseractWorkerPool ocrWorkerPool;
+    private int pagesPerWorkerBatch = 1;
+
+    // the directory where the rendered pages are stored until OCR is applied on them (the system default when not set)
+    private transient Path tmpDirectory;
+
+    /**
+     * Creates the parser running OCR over the pages on the given executor or, when null, sequentially
+     * on the calling thread (e.g. when only the per-page OCR decision is used)
+     */
+    public ParallelPdfOcrParser(Parser ocrParser, ExecutorService ocrExecutor, int ocrDpi, int renderAhead) {
+        this.ocrParser = ocrParser;
+        this.ocrExecutor = ocrExecutor;
+        this.ocrDpi = ocrDpi;
+        this.renderAhead = Math.max(1, renderAhead);
+    }
+
+    /**
+     * Enables applying OCR only on the pages which text layer does not meet the thresholds
+     */
+    public void setPerPageOcrDecision(int minPageTextLength, float minPageTextQuality) {
+        this.perPageOcrDecision = true;
+        this.minPageTextLength = minPageTextLength;
+        this.minPageTextQuality = minPageTextQuality;
+    }
+
+    /**
+     * Enables running OCR over the batches of pages using the Tesseract workers pool (when available)
+     * instead of the OCR parser, so that the OCR models are loaded only once per batch
+     */
+    public void setOcrWorkerPool(TesseractWorkerPool ocrWorkerPool, int pagesPerWorkerBatch) {
+        this.ocrWorkerPool = ocrWorkerPool;
+        // all the pages of the batch are kept rendered until the batch is processed
+        this.pagesPerWorkerBatch = Math.max(1, Math.min(pagesPerWorkerBatch, renderAhead));
+    }
+
+    public void setTmpDirectory(Path tmpDirectory) {
+        this.tmpDirectory = tmpDirectory;
+    }
+
+    /**
+     * Loads the PDF document directly from the file backing the stream (spilling the stream to a file if needed)
+     */
+    public static PDDocument loadDocument(TikaInputStream stream) throws IOException {
+        return PDDocument.load(stream.getFile(), MemoryUsageSetting.setupTempFileOnly());
+    }
+
+    /**
+     * Extracts the text layer of the first pages of the document (e.g. to estimate whether it needs OCR)
+     */
+    public static String extractTextLayer(PDDocument document, int maxPages) throws IOException {
+        PDFTextStripper textStripper = new PDFTextStripper();
+        textStripper.setStartPage(1);
+        textStripper.setEndPage(Math.min(maxPages, document.getNumberOfPages()));
+        return textStripper.getText(document);
+    }
+
+    /**
+     * Counts the images embedded in the pages of the document (without decoding them)
+     */
+    public static int countImages(PDDocument document) throws IOException {
+        int numImages = 0;
+        for (PDPage page : document.getPages()) {
+            PDResources resources = page.getResources();
+            if (resources == null) {
+                continue;
+            }
+            for (COSName name : resources.getXObjectNames()) {
+                if (resources.isImageXObject(name)) {
+                    numImages++;
+                }
+            }
+        }
+        return numImages;
+    }
+
+    /**
+     * Counts the first pages of the document without a usable text layer, i.e. the ones
+     * the per-page OCR decision would apply OCR to
+     */
+    int countPagesWithoutUsableText(PDDocument document, int maxPages) throws IOException {
+        final PDFTextStripper textStripper = new PDFTextStripper();
+        final int numPages = Math.min(maxPages, document.getNumberOfPages());
+        int numPagesWithoutText = 0;
+        for (int pageIndex = 0; pageIndex < numPages; pageIndex++) {
+            if (!hasUsableText(extractPageText(textStripper, document, pageIndex))) {
+                numPagesWithoutText++;
+            }
+        }
+        return numPagesWithoutText;
+    }
+
+    @Override
+    public Set<MediaType> getSupportedTypes(ParseContext context) {
+        return SUPPORTED_TYPES;
+    }
+
+    @Override
+    public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context)
+            throws IOException, SAXException, TikaException {
+        TemporaryResources tmp = new TemporaryResources();
+        try {
+            // PDFBox works best when reading the document directly from a file
+            TikaInputStream tikaStream = TikaInputStream.get(stream, tmp);
+            try (PDDocument document = loadDocument(tikaStream)) {
+                parse(document, handler, metadata, context);
+            }
+        }
+        finally {
+            tmp.close();
+        }
+    }
+
+    /**
+     * Parses the already loaded PDF document
+     */
+    public void parse(PDDocument document, ContentHandler handler, Metadata metadata, ParseContext context)
+            throws IOException, SAXException, TikaException {
+        extractMetadata(document, metadata);
+
+        List<String> pagesText = processPages(document, metadata, context);
+
+        XHTMLContentHandler xhtml = new XHTMLContentHandler(handler, metadata);
+        xhtml.startDocument();
+        for (String pageText : pagesText) {
+            xhtml.startElement("div", "class", "page");
+            xhtml.characters(pageText);
+            xhtml.endElement("div");
+        }
+        xhtml.endDocument();
+    }
+
+    /**
+     * Copies the document information dictionary and the XMP metadata, following the Tika PDF parser
+     */
+    private void extractMetadata(PDDocument document, Metadata metadata) {
+        metadata.set(Metadata.CONTENT_TYPE, MediaType.application("pdf").toString());
+        metadata.set(PagedText.N_PAGES, document.getNumberOfPages());
+        metadata.set(PDF.PDF_VERSION, Float.toString(document.getVersion()));
+
+        PDDocumentInformation info = document.getDocumentInformation();
+        if (info != null) {
+            setIfPresent(metadata, info.getTitle(), TikaCoreProperties.TITLE, PDF.DOC_INFO_TITLE);
+            setIfPresent(metadata, info.getAuthor(), TikaCoreProperties.CREATOR, PDF.DOC_INFO_CREATOR);
+            setIfPresent(metadata, info.getCreator(), TikaCoreProperties.CREATOR_TOOL, PDF.DOC_INFO_CREATOR_TOOL);
+            setIfPresent(metadata, info.getProducer(), PDF.PRODUCER, PDF.DOC_INFO_PRODUCER);
+            setIfPresent(metadata, info.getSubject(), TikaCoreProperties.DESCRIPTION, PDF.DOC_INFO_SUBJECT);
+            setIfPresent(metadata, info.getTrapped(), PDF.DOC_INFO_TRAPPED);
+
+            if (info.getKeywords() != null && !info.getKeywords().isBlank()) {
+                metadata.set(PDF.DOC_INFO_KEY_WORDS, info.getKeywords());
+                metadata.set(Office.KEYWORDS, info.getKeywords());
+                for (String keyword : info.getKeywords().split("[,;]")) {
+                    if (!keyword.isBlank()) {
+                        metadata.add(TikaCoreProperties.SUBJECT, keyword.trim());
+                    }
+                }
+            }
+
+            if (info.getCreationDate() != null) {
+                metadata.set(TikaCoreProperties.CREATED, info.getCreationDate());
+                metadata.set(PDF.DOC_INFO_CREATED, info.getCreationDate());
+            }
+            if (info.getModificationDate() != null) {
+                metadata.set(TikaCoreProperties.MODIFIED, info.getModificationDate());
+                metadata.set(PDF.DOC_INFO_MODIFICATION_DATE, info.getModificationDate());
+            }
+
+            for (String key : info.getMetadataKeys()) {
+                final String value = info.getCustomMetadataValue(key);
+                if (!STANDARD_INFO_KEYS.contains(key) && value != null && !value.isBlank()) {
+                    metadata.add(PDF.PDF_DOC_INFO_CUSTOM_PREFIX + key, value);
+                }
+            }
+        }
+
+        // the XMP metadata takes precedence over the document information, as in the Tika PDF parser
+        PDMetadata xmp = document.getDocumentCatalog().getMetadata();
+        if (xmp != null) {
+            try (InputStream xmpStream = xmp.exportXMPMetadata()) {
+                new JempboxExtractor(metadata).parse(xmpStream);
+            }
+            catch (IOException | TikaException | RuntimeException e) {
+                logger.debug("Cannot read the XMP metadata of the document: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void setIfPresent(Metadata metadata, String value, Property... properties) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        for (Property property : properties) {
+            metadata.set(property, value);
+        }
+    }
+
+    /**
+     * Renders the pages of the document and runs OCR over them in the workers pool (skipping the pages
+     * with usable text layer, when enabled), returning the extracted text in the page order
+     */
+    private List<String> processPages(PDDocument document, Metadata metadata, ParseContext context)
+            throws IOException, TikaException {
+        final int numPages = document.getNumberOfPages();
+        final PDFRenderer renderer = new PDFRenderer(document);
+        final PDFTextStripper textStripper = perPageOcrDecision ? new PDFTextStripper() : null;
+        final boolean useOcrWorkerPool = ocrWorkerPool != null && ocrWorkerPool.isAvailable()
+                && ocrWorkerPool.supports(context.get(TesseractOCRConfig.class, DEFAULT_TESSERACT_CONFIG));
+        final int batchSize = useOcrWorkerPool ? pagesPerWorkerBatch : 1;
+
+        final ProcessingProgress progress = context.get(ProcessingProgress.class, new ProcessingProgress());
+        progress.setPagesTotal(numPages);
+        final StageTimings timings = StageTimings.from(context);
+
+        // limits the number of the rendered pages waiting for (or being under) OCR
+        final Semaphore renderPermits = new Semaphore(renderAhead);
+        final String[] pagesText = new String[numPages];
+        final List<Future<?>> ocrResults = new ArrayList<>();
+        // the pages passed to the workers, removed by the workers once processed (unless their tasks are cancelled)
+        final List<Path> submittedImages = new ArrayList<>();
+        int numOcrPages = 0;
+
+        List<Integer> batchPages = new ArrayList<>(batchSize);
+        List<Path> batchImages = new ArrayList<>(batchSize);
+
+        try {
+            for (int pageIndex = 0; pageIndex < numPages; pageIndex++) {
+                if (textStripper != null) {
+                    String pageText;
+                    try (StageTimings.Stage ignored = timings.start(StageTimings.TEXT_EXTRACTION)) {
+                        pageText = extractPageText(textStripper, document, pageIndex);
+                    }
+                    if (hasUsableText(pageText)) {
+                        pagesText[pageIndex] = pageText;
+                        progress.addPagesDone(1);
+                        continue;
+                    }
+                }
+
+                numOcrPages++;
+                renderPermits.acquire();
+
+                try (StageTimings.Stage ignored = timings.start(StageTimings.RENDERING)) {
+                    batchImages.add(renderPage(renderer, pageIndex));
+                    batchPages.add(pageIndex);
+                }
+                catch (IOException | RuntimeException e) {
+                    renderPermits.release();
+                    throw e;
+                }
+
+                if (batchImages.size() >= batchSize) {
+                    submittedImages.addAll(batchImages);
+                    ocrResults.add(submitBatch(batchPages, batchImages, pagesText, renderPermits, useOcrWorkerPool, progress, timings, context));
+                    batchPages = new ArrayList<>(batchSize);
+                    batchImages = new ArrayList<>(batchSize);
+                }
+            }
+
+            if (!batchImages.isEmpty()) {
+                submittedImages.addAll(batchImages);
+                ocrResults.add(submitBatch(batchPages, batchImages, pagesText, renderPermits, useOcrWorkerPool, progress, timings, context));
+                batchImages = new ArrayList<>();
+            }
+
+            // the text of the pages is visible to this thread once the corresponding tasks are completed
+            for (Future<?> ocrResult : ocrResults) {
+                ocrResult.get();
+            }
+
+            logger.debug("Applied OCR on " + numOcrPages + " out of " + numPages + " pages");
+            metadata.set(MetadataKeys.X_OCR_PAGES_COUNT, Integer.toString(numOcrPages));
+            return Arrays.asList(pagesText);
+        }
+        catch (InterruptedException e) {
+            cancelAll(ocrResults, submittedImages);
+            Thread.currentThread().interrupt();
+            throw new TikaException("Parallel PDF OCR: interrupted", e);
+        }
+        catch (ExecutionException e) {
+            cancelAll(ocrResults, submittedImages);
+            throw new TikaException("Parallel PDF OCR: failed to apply OCR on the page: " + e.getCause().getMessage(), e.getCause());
+        }
+        catch (IOException | RuntimeException e) {
+            cancelAll(ocrResults, submittedImages);
+            throw e;
+        }
+        finally {
+            // the pages rendered but not yet submitted
+            for (Path pageImage : batchImages) {
+                Files.deleteIfExists(pageImage);
+            }
+        }
+    }
+
+    private Future<?> submitBatch(List<Integer> batchPages, List<Path> batchImages, String[] pagesText,
+                                  Semaphore renderPermits, boolean useOcrWorkerPool, ProcessingProgress progress,
+                                  StageTimings timings, ParseContext context) {
+        final Callable<Object> batch = () -> {
+            try {
+                // the pages are processed by the concurrent workers, hence the OCR time is summed over them
+                final long startTimeNanos = System.nanoTime();
+                List<String> batchText = useOcrWorkerPool
+                        ? ocrBatchWithWorkerPool(batchImages, context)
+                        : ocrBatchWithParser(batchImages, context);
+                timings.addConcurrent(StageTimings.OCR, System.nanoTime() - startTimeNanos);
+
+                for (int i = 0; i < batchPages.size(); i++) {
+                    pagesText[batchPages.get(i)] = batchText.get(i);
+                }
+                progress.addPagesDone(batchPages.size());
+                return null;
+            }
+            finally {
+                for (Path pageImage : batchImages) {
+                    Files.deleteIfExists(pageImage);
+                }
+                renderPermits.release(batchImages.size());
+            }
+        };
+
+        if (ocrExecutor != null) {
+            return ocrExecutor.submit(batch);
+        }
+        // no executor, hence the batch is processed on the calling thread before the next pages are rendered
+        FutureTask<Object> task = new FutureTask<>(batch);
+        task.run();
+        return task;
+    }
+
+    private String extractPageText(PDFTextStripper textStripper, PDDocument document, int pageIndex) throws IOException {
+        textStripper.setStartPage(pageIndex + 1);
+        textStripper.setEndPage(pageIndex + 1);
+        return textStripper.getText(document);
+    }
+
+    /**
+     * Checks whether the page text layer is long enough and whether it is not garbled,
+     * i.e. that the ratio of valid characters (letters, digits, whitespaces and printable ASCII)
+     * meets the threshold
+     */
+    private boolean hasUsableText(String pageText) {
+        final String text = pageText.strip();
+        if (text.isEmpty() || text.length() < minPageTextLength) {
+            return false;
+        }
+
+        long numValidChars = text.chars()
+                .filter(c -> Character.isLetterOrDigit(c) || Character.isWhitespace(c) || (c >= 0x20 && c < 0x7f))
+                .count();
+
+        return (float) numValidChars / text.length() >= minPageTextQuality;
+    }
+
+    private Path renderPage(PDFRenderer renderer, int pageIndex) throws IOException {
+        BufferedImage image = renderer.renderImageWithDPI(pageIndex, ocrDpi, ImageType.GRAY);
+
+        final String prefix = "tika-ocr-page-" + (pageIndex + 1) + "-";
+        Path pageImage = tmpDirectory != null
+                ? Files.createTempFile(tmpDirectory, prefix, ".png")
+                : Files.createTempFile(prefix, ".png");
+        try {
+            ImageIO.write(image, "png", pageImage.toFile());
+        }
+        catch (IOException e) {
+            Files.deleteIfExists(pageImage);
+            throw e;
+        }
+        finally {
+            image.flush();
+        }
+
+        logger.debug("Rendered page: " + (pageIndex + 1));
+        return pageImage;
+    }
+
+    private List<String> ocrBatchWithParser(List<Path> pageImages, ParseContext context) throws IOException, SAXException, TikaException {
+        List<String> batchText = new ArrayList<>(pageImages.size());
+        for (Path pageImage : pageImages) {
+            BodyContentHandler pageHandler = new BodyContentHandler(-1);
+            try (TikaInputStream imageStream = TikaInputStream.get(pageImage)) {
+                ocrParser.parse(imageStream, pageHandler, new Metadata(), createPageParseContext(context));
+            }
+            batchText.add(pageHandler.toString());
+        }
+        return batchText;
+    }
+
+    private List<String> ocrBatchWithWorkerPool(List<Path> pageImages, ParseContext context) throws IOException, TikaException {
+        TesseractOCRConfig tessConfig = context.get(TesseractOCRConfig.class, DEFAULT_TESSERACT_CONFIG);
+
+        List<String> batchText = ocrWorkerPool.recognize(pageImages, tessConfig, ocrDpi, tessConfig.getTimeoutSeconds());
+        if (batchText.size() != pageImages.size()) {
+            throw new TikaException("Parallel PDF OCR: expected the text of " + pageImages.size()
+                    + " pages from the OCR worker, got: " + batchText.size());
+        }
+        return batchText;
+    }
+
+    /**
+     * The pages are processed concurrently, hence each one uses its own context
+     * with the OCR configuration taken from the document's context
+     */
+    private ParseContext createPageParseContext(ParseContext context) {
+        ParseContext pageContext = new ParseContext();
+        pageContext.set(TikaConfig.class, context.get(TikaConfig.class));
+        pageContext.set(TesseractOCRConfig.class, context.get(TesseractOCRConfig.class));
+        pageContext.set(Parser.class, ocrParser);
+        return pageContext;
+    }
+
+    /**
+     * Cancels the OCR of the remaining pages, removing their images: the tasks cancelled before they started
+     * never run, hence cannot remove them (the running ones are interrupted, their results are not used)
+     */
+    private void cancelAll(List<Future<?>> ocrResults, List<Path> submittedImages) {
+        ocrResults.forEach(result -> result.cancel(true));
+        for (Path pageImage : submittedImages) {
+            try {
+                Files.deleteIfExists(pageImage);
+            }
+            catch (IOException e) {
+                logger.warn("Cannot remove the rendered page: " + pageImage + ": " + e.getMessage());
+            }
+        }
+    }
+}
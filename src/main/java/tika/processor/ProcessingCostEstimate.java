@@ -0,0 +1,59 @@
+package tika.processor;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Data;
+
+
+/**
+ * The estimated cost of processing of a document, obtained before the processing starts.
+ *
+ * The cost is expressed in the number of pages expected to need OCR, as OCR dominates the processing time,
+ * whereas the text-native documents are assumed to have no cost.
+ */
+@Data
+@Builder
+public class ProcessingCostEstimate {
+
+    // the cost assumed for the documents that cannot be inspected
+    public static final int UNKNOWN_DOCUMENT_COST = 1;
+
+    @JsonProperty("content_type")
+    String contentType;
+
+    // the lane the document is processed in
+    @JsonProperty("lane")
+    ProcessingLane lane;
+
+    // the number of pages (-1 when not known)
+    @JsonProperty("page_count")
+    int pageCount;
+
+    // the number of embedded images (-1 when not known)
+    @JsonProperty("num_images")
+    int numImages;
+
+    // the length of the text layer, extrapolated from the first pages (-1 when not known)
+    @JsonProperty("text_layer_length")
+    long textLayerLength;
+
+    // the number of pages expected to need OCR
+    @JsonProperty("cost")
+    int cost;
+
+    // the detected content type (if known), passed on to the processing so that it is not detected again
+    // (NB: without any container opened by the detector, as the estimate outlives the inspected stream)
+    @JsonIgnore
+    DetectedDocumentType documentType;
+
+    public static ProcessingCostEstimate unknown() {
+        return ProcessingCostEstimate.builder()
+                .lane(ProcessingLane.OCR)
+                .pageCount(-1)
+                .numImages(-1)
+                .textLayerLength(-1)
+                .cost(UNKNOWN_DOCUMENT_COST)
+                .build();
+    }
+}
@@ -0,0 +1,16 @@
+package tika.processor;
+
+
+/**
+ * The execution lanes the documents are processed in, depending on the expected processing cost.
+ *
+ * The text-native documents (e.g. office documents, plain text, HTML or PDFs with a text layer) are parsed
+ * in milliseconds, whereas the documents that need OCR (e.g. images or scanned PDFs) may take minutes,
+ * hence they are processed separately so that the former do not wait behind the latter.
+ */
+public enum ProcessingLane {
+    // the documents parsed without applying OCR
+    TEXT,
+    // the documents expected to need OCR (incl. the ones that cannot be classified)
+    OCR
+}
@@ -0,0 +1,208 @@
+package tika.processor;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Data;
+import org.apache.tika.mime.MediaType;
+import org.springframework.stereotype.Component;
+import tika.utils.LatencyHistogram;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * The latencies of the documents processing, aggregated by the route (the processor and the path the document
+ * was processed with, e.g. the text layer or OCR of a PDF) and the content type, with the latency of each
+ * of the processing stages, so that it can be told where the time goes on a slow node.
+ * The JVM memory and the garbage collection figures are reported alongside.
+ */
+@Component
+public class ProcessingMetrics {
+
+    // the max number of the (route, content type) series, bounding the memory used by the unusual content types
+    private static final int MAX_SERIES = 256;
+
+    private static final String OTHER_CONTENT_TYPE = "other";
+    private static final String UNKNOWN = "unknown";
+
+    /**
+     * The latencies of the documents of the same route and content type
+     */
+    private static class Series {
+        final String route;
+        final String contentType;
+        final LatencyHistogram total = new LatencyHistogram();
+        final Map<String, LatencyHistogram> stages = new ConcurrentHashMap<>();
+        final LongAdder numFailed = new LongAdder();
+
+        Series(String route, String contentType) {
+            this.route = route;
+            this.contentType = contentType;
+        }
+    }
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    // the time taken by buffering of the requests content, before the content type is known
+    private final LatencyHistogram buffering = new LatencyHistogram();
+
+    /**
+     * The snapshot of the metrics
+     */
+    @Data
+    @Builder
+    public static class Snapshot {
+        @JsonProperty("series")
+        List<SeriesSnapshot> series;
+
+        @JsonProperty("buffering")
+        LatencyHistogram.Summary buffering;
+
+        @JsonProperty("jvm")
+        JvmSnapshot jvm;
+    }
+
+    @Data
+    @Builder
+    public static class SeriesSnapshot {
+        @JsonProperty("route")
+        String route;
+
+        @JsonProperty("content_type")
+        String contentType;
+
+        @JsonProperty("failed")
+        long failed;
+
+        // the total processing time
+        @JsonProperty("total")
+        LatencyHistogram.Summary total;
+
+        @JsonProperty("stages")
+        Map<String, LatencyHistogram.Summary> stages;
+    }
+
+    @Data
+    @Builder
+    public static class JvmSnapshot {
+        @JsonProperty("uptime_ms")
+        long uptimeMs;
+
+        @JsonProperty("heap_used_mb")
+        long heapUsedMb;
+
+        @JsonProperty("heap_committed_mb")
+        long heapCommittedMb;
+
+        @JsonProperty("heap_max_mb")
+        long heapMaxMb;
+
+        // the number of collections and the time spent in each of the garbage collectors since the start
+        @JsonProperty("gc")
+        Map<String, GcSnapshot> gc;
+    }
+
+    @Data
+    @Builder
+    public static class GcSnapshot {
+        @JsonProperty("count")
+        long count;
+
+        @JsonProperty("time_ms")
+        long timeMs;
+    }
+
+    /**
+     * Records the processing of the document by the given processor
+     */
+    public void record(final String processorName, final StageTimings timings, final boolean success) {
+        final String route = processorName + "/" + (timings.getRoute() != null ? timings.getRoute() : UNKNOWN);
+        final Series documentSeries = getSeries(route, normalizeContentType(timings.getContentType()));
+
+        documentSeries.total.record(timings.getElapsedNanos());
+        timings.getStageNanos().forEach((stage, nanos) ->
+                documentSeries.stages.computeIfAbsent(stage, s -> new LatencyHistogram()).record(nanos));
+        if (!success) {
+            documentSeries.numFailed.increment();
+        }
+    }
+
+    public void recordBuffering(final long nanos) {
+        buffering.record(nanos);
+    }
+
+    private Series getSeries(final String route, final String contentType) {
+        final String key = route + " " + contentType;
+        Series existing = series.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (series.size() >= MAX_SERIES) {
+            return series.computeIfAbsent(route + " " + OTHER_CONTENT_TYPE, k -> new Series(route, OTHER_CONTENT_TYPE));
+        }
+        return series.computeIfAbsent(key, k -> new Series(route, contentType));
+    }
+
+    private static String normalizeContentType(final String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return UNKNOWN;
+        }
+        // the parameters (e.g. charset) are dropped, so that the series are kept by the type only
+        MediaType mediaType = MediaType.parse(contentType);
+        return mediaType != null ? mediaType.getBaseType().toString() : UNKNOWN;
+    }
+
+    public Snapshot getSnapshot() {
+        List<SeriesSnapshot> seriesSnapshots = new ArrayList<>();
+        series.values().stream()
+                .sorted((a, b) -> a.route.equals(b.route) ? a.contentType.compareTo(b.contentType) : a.route.compareTo(b.route))
+                .forEach(s -> {
+                    Map<String, LatencyHistogram.Summary> stages = new LinkedHashMap<>();
+                    s.stages.forEach((stage, histogram) -> stages.put(stage, histogram.getSummary()));
+
+                    seriesSnapshots.add(SeriesSnapshot.builder()
+                            .route(s.route)
+                            .contentType(s.contentType)
+                            .failed(s.numFailed.sum())
+                            .total(s.total.getSummary())
+                            .stages(stages)
+                            .build());
+                });
+
+        return Snapshot.builder()
+                .series(seriesSnapshots)
+                .buffering(buffering.getSummary())
+                .jvm(getJvmSnapshot())
+                .build();
+    }
+
+    private static JvmSnapshot getJvmSnapshot() {
+        final long MB = 1024 * 1024;
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+        Map<String, GcSnapshot> gc = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gc.put(collector.getName(), GcSnapshot.builder()
+                    .count(collector.getCollectionCount())
+                    .timeMs(collector.getCollectionTime())
+                    .build());
+        }
+
+        return JvmSnapshot.builder()
+                .uptimeMs(ManagementFactory.getRuntimeMXBean().getUptime())
+                .heapUsedMb(heap.getUsed() / MB)
+                .heapCommittedMb(heap.getCommitted() / MB)
+                .heapMaxMb(heap.getMax() / MB)
+                .gc(gc)
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package tika.processor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * The progress of processing of a single document, reported in pages.
+ *
+ * The total number of pages is only known once the processor has opened the document
+ * (and not all the processors report the pages processed on the way), hence it is 0 until then.
+ */
+public class ProcessingProgress {
+
+    private final AtomicInteger pagesTotal = new AtomicInteger(0);
+    private final AtomicInteger pagesDone = new AtomicInteger(0);
+
+    public int getPagesTotal() {
+        return pagesTotal.get();
+    }
+
+    public int getPagesDone() {
+        return pagesDone.get();
+    }
+
+    public void setPagesTotal(int numPages) {
+        pagesTotal.set(Math.max(0, numPages));
+    }
+
+    public void addPagesDone(int numPages) {
+        pagesDone.addAndGet(numPages);
+    }
+
+    /**
+     * Marks all the pages as processed, using the page count of the document (if known)
+     */
+    public void complete(int numPages) {
+        if (numPages > 0) {
+            pagesTotal.set(numPages);
+        }
+        else if (pagesTotal.get() <= 0) {
+            pagesTotal.set(1);
+        }
+        pagesDone.set(pagesTotal.get());
+    }
+}
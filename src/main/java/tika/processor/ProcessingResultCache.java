@@ -0,0 +1,334 @@
+package tika.processor;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import common.JsonPropertyAccessView;
+import lombok.Builder;
+import lombok.Data;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import tika.model.TikaProcessingResult;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * A cache of the documents processing results, keyed by the hash of the document content
+ * and the configuration of the processor used.
+ *
+ * The results are kept in memory in an LRU fashion, bounded by their estimated size, and optionally
+ * stored (compressed) on disk, so that they survive the service restarts. The results read from
+ * disk are promoted back to memory.
+ */
+@Component
+public class ProcessingResultCache {
+
+    private static final String DISK_ENTRY_SUFFIX = ".json.gz";
+
+    // the estimated size of the result apart from its text and metadata
+    private static final long ENTRY_OVERHEAD_SIZE = 512;
+
+    @Autowired
+    private ProcessingResultCacheConfig config;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    // the in-memory entries, in the access order
+    private final LinkedHashMap<String, CacheEntry> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memorySize = 0;
+    private long maxMemorySize;
+
+    private Path diskDirectory;
+    private final AtomicLong diskSize = new AtomicLong();
+    private long maxDiskSize;
+
+    private final AtomicLong numMemoryHits = new AtomicLong();
+    private final AtomicLong numDiskHits = new AtomicLong();
+    private final AtomicLong numMisses = new AtomicLong();
+    private final AtomicLong numEvictions = new AtomicLong();
+
+    private final Logger logger = LogManager.getLogger(ProcessingResultCache.class);
+
+    private static class CacheEntry {
+        final TikaProcessingResult result;
+        final long size;
+
+        CacheEntry(TikaProcessingResult result, long size) {
+            this.result = result;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The cache usage statistics, as reported in the service information
+     */
+    @Data
+    @Builder
+    public static class Stats {
+        @JsonProperty("enabled")
+        @JsonView(JsonPropertyAccessView.Public.class)
+        boolean enabled;
+
+        @JsonProperty("memory_hits")
+        @JsonView(JsonPropertyAccessView.Public.class)
+        long memoryHits;
+
+        @JsonProperty("disk_hits")
+        @JsonView(JsonPropertyAccessView.Public.class)
+        long diskHits;
+
+        @JsonProperty("misses")
+        @JsonView(JsonPropertyAccessView.Public.class)
+        long misses;
+
+        @JsonProperty("evictions")
+        @JsonView(JsonPropertyAccessView.Public.class)
+        long evictions;
+
+        @JsonProperty("memory_entries")
+        @JsonView(JsonPropertyAccessView.Public.class)
+        int memoryEntries;
+
+        @JsonProperty("memory_size_bytes")
+        @JsonView(JsonPropertyAccessView.Public.class)
+        long memorySizeBytes;
+
+        @JsonProperty("disk_size_bytes")
+        @JsonView(JsonPropertyAccessView.Public.class)
+        long diskSizeBytes;
+    }
+
+    @PostConstruct
+    public void init() {
+        maxMemorySize = config.getMaxMemorySizeMb() * 1024L * 1024L;
+        maxDiskSize = config.getMaxDiskSizeMb() * 1024L * 1024L;
+
+        if (config.isEnabled() && !config.getDiskDirectory().isEmpty()) {
+            try {
+                diskDirectory = Files.createDirectories(Paths.get(config.getDiskDirectory()));
+                try (Stream<Path> entries = listDiskEntries()) {
+                    diskSize.set(entries.mapToLong(ProcessingResultCache::fileSize).sum());
+                }
+            }
+            catch (IOException e) {
+                logger.error("Cannot use the results cache directory: " + config.getDiskDirectory() + ", " + e.getMessage());
+                diskDirectory = null;
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Returns a copy of the cached result or null, if not present
+     */
+    public TikaProcessingResult get(String key) {
+        TikaProcessingResult result;
+        synchronized (this) {
+            CacheEntry entry = memoryEntries.get(key);
+            result = entry != null ? entry.result : null;
+        }
+        if (result != null) {
+            numMemoryHits.incrementAndGet();
+            return copyOf(result);
+        }
+
+        result = readFromDisk(key);
+        if (result != null) {
+            numDiskHits.incrementAndGet();
+            putInMemory(key, result);
+            return copyOf(result);
+        }
+
+        numMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the result in the cache (only the successful results are cached)
+     */
+    public void put(String key, TikaProcessingResult result) {
+        if (result == null || !Boolean.TRUE.equals(result.getSuccess())) {
+            return;
+        }
+        TikaProcessingResult stored = copyOf(result);
+        putInMemory(key, stored);
+        writeToDisk(key, stored);
+    }
+
+    public Stats getStats() {
+        synchronized (this) {
+            return Stats.builder()
+                    .enabled(config.isEnabled())
+                    .memoryHits(numMemoryHits.get())
+                    .diskHits(numDiskHits.get())
+                    .misses(numMisses.get())
+                    .evictions(numEvictions.get())
+                    .memoryEntries(memoryEntries.size())
+                    .memorySizeBytes(memorySize)
+                    .diskSizeBytes(diskSize.get())
+                    .build();
+        }
+    }
+
+    private synchronized void putInMemory(String key, TikaProcessingResult result) {
+        final long size = estimateSize(result);
+        if (size > maxMemorySize) {
+            return;
+        }
+
+        CacheEntry previous = memoryEntries.put(key, new CacheEntry(result, size));
+        if (previous != null) {
+            memorySize -= previous.size;
+        }
+        memorySize += size;
+
+        // evict the least recently used entries
+        Iterator<CacheEntry> it = memoryEntries.values().iterator();
+        while (memorySize > maxMemorySize && it.hasNext()) {
+            memorySize -= it.next().size;
+            it.remove();
+            numEvictions.incrementAndGet();
+        }
+    }
+
+    private TikaProcessingResult readFromDisk(String key) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        Path entryFile = diskDirectory.resolve(key + DISK_ENTRY_SUFFIX);
+        if (!Files.exists(entryFile)) {
+            return null;
+        }
+
+        try (InputStream stream = new GZIPInputStream(Files.newInputStream(entryFile))) {
+            TikaProcessingResult result = objectMapper.readValue(stream, TikaProcessingResult.class);
+            // mark the entry as recently used
+            Files.setLastModifiedTime(entryFile, FileTime.fromMillis(System.currentTimeMillis()));
+            return result;
+        }
+        catch (IOException e) {
+            logger.warn("Cannot read the cached result: " + entryFile + ", " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, TikaProcessingResult result) {
+        if (diskDirectory == null) {
+            return;
+        }
+        Path entryFile = diskDirectory.resolve(key + DISK_ENTRY_SUFFIX);
+        Path tmpFile = null;
+        try {
+            // the entry is written to a temporary file first, so that the readers never see a partial entry
+            tmpFile = Files.createTempFile(diskDirectory, key, ".tmp");
+            try (OutputStream stream = new GZIPOutputStream(Files.newOutputStream(tmpFile))) {
+                objectMapper.writeValue(stream, result);
+            }
+
+            long previousSize = Files.exists(entryFile) ? fileSize(entryFile) : 0;
+            Files.move(tmpFile, entryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            diskSize.addAndGet(fileSize(entryFile) - previousSize);
+
+            if (diskSize.get() > maxDiskSize) {
+                evictFromDisk();
+            }
+        }
+        catch (IOException e) {
+            logger.warn("Cannot store the result in the cache: " + entryFile + ", " + e.getMessage());
+            try {
+                if (tmpFile != null) {
+                    Files.deleteIfExists(tmpFile);
+                }
+            }
+            catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Removes the least recently used entries from disk
+     */
+    private synchronized void evictFromDisk() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> entriesStream = listDiskEntries()) {
+            entries = entriesStream
+                    .sorted(Comparator.comparingLong(ProcessingResultCache::lastModifiedMillis))
+                    .collect(Collectors.toList());
+        }
+
+        for (Path entry : entries) {
+            if (diskSize.get() <= maxDiskSize) {
+                break;
+            }
+            long size = fileSize(entry);
+            if (Files.deleteIfExists(entry)) {
+                diskSize.addAndGet(-size);
+                numEvictions.incrementAndGet();
+            }
+        }
+    }
+
+    private Stream<Path> listDiskEntries() throws IOException {
+        return Files.list(diskDirectory).filter(path -> path.getFileName().toString().endsWith(DISK_ENTRY_SUFFIX));
+    }
+
+    private static long fileSize(Path path) {
+        try {
+            return Files.size(path);
+        }
+        catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModifiedMillis(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        }
+        catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long estimateSize(TikaProcessingResult result) {
+        long size = ENTRY_OVERHEAD_SIZE;
+        if (result.getText() != null) {
+            size += 2L * result.getText().length();
+        }
+        if (result.getMetadata() != null) {
+            size += 2L * result.getMetadata().toString().length();
+        }
+        return size;
+    }
+
+    /**
+     * The results are handed over to the clients, hence the cached ones are never shared
+     */
+    private static TikaProcessingResult copyOf(TikaProcessingResult result) {
+        return result.toBuilder()
+                .metadata(result.getMetadata() != null ? new LinkedHashMap<>(result.getMetadata()) : null)
+                .build();
+    }
+}
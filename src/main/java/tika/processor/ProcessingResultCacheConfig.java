@@ -0,0 +1,37 @@
+package tika.processor;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import common.JsonPropertyAccessView;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * The processing results cache configuration
+ */
+@Data
+@Configuration
+public class ProcessingResultCacheConfig {
+
+    // cache the processing results of the documents, keyed by the document content and the processor configuration
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.result-cache.enabled:false}")
+    private boolean enabled;
+
+    // the max (estimated) size of the results kept in memory (MB)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.result-cache.max-memory-size-mb:256}")
+    private int maxMemorySizeMb;
+
+    // the directory where the compressed results are stored, so that they survive restarts
+    // (the on-disk cache is disabled when empty)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.result-cache.disk-directory:}")
+    private String diskDirectory;
+
+    // the max size of the results stored on disk (MB)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.result-cache.max-disk-size-mb:4096}")
+    private int maxDiskSizeMb;
+}
@@ -0,0 +1,136 @@
+package tika.processor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+
+/**
+ * Holds the current generation of the processor resources (the Tika configuration, parsers, workers),
+ * allowing to replace it without stopping the processing.
+ *
+ * Each request acquires the current generation for its whole duration. A new generation is built aside
+ * and swapped in atomically, hence the requests that have already started keep using the previous one,
+ * which is disposed of only once all of them complete.
+ */
+public class ProcessorGenerationHolder<T> {
+
+    /**
+     * A single generation, with the number of the requests using it
+     */
+    private class Generation {
+        final T resources;
+        final AtomicInteger numInFlight = new AtomicInteger();
+        final AtomicBoolean retired = new AtomicBoolean(false);
+        final AtomicBoolean disposed = new AtomicBoolean(false);
+
+        Generation(T resources) {
+            this.resources = resources;
+        }
+
+        void release() {
+            if (numInFlight.decrementAndGet() == 0 && retired.get()) {
+                dispose();
+            }
+        }
+
+        void retire() {
+            retired.set(true);
+            if (numInFlight.get() == 0) {
+                dispose();
+            }
+        }
+
+        void dispose() {
+            if (disposed.compareAndSet(false, true)) {
+                disposer.accept(resources);
+            }
+        }
+    }
+
+    /**
+     * The acquired generation, released when closed
+     */
+    public class Lease implements AutoCloseable {
+        private final Generation generation;
+        private boolean released = false;
+
+        private Lease(Generation generation) {
+            this.generation = generation;
+        }
+
+        public T get() {
+            return generation.resources;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                generation.release();
+            }
+        }
+    }
+
+    private final AtomicReference<Generation> current = new AtomicReference<>();
+
+    // releases the resources of the retired generation once drained
+    private final Consumer<T> disposer;
+
+    public ProcessorGenerationHolder(Consumer<T> disposer) {
+        this.disposer = disposer;
+    }
+
+    /**
+     * Acquires the current generation for the exclusive use until the lease is closed
+     */
+    public Lease acquire() {
+        while (true) {
+            final Generation generation = current.get();
+            if (generation == null) {
+                throw new IllegalStateException("The processor has not been initialized");
+            }
+
+            generation.numInFlight.incrementAndGet();
+            // the generation may have been swapped out in the meantime, in which case it may be
+            // already disposed of, hence the request needs to use the new one
+            if (current.get() == generation) {
+                return new Lease(generation);
+            }
+            generation.release();
+        }
+    }
+
+    /**
+     * Makes the new generation the current one, the previous one is disposed of once drained
+     */
+    public void install(final T resources) {
+        final Generation previous = current.getAndSet(new Generation(resources));
+        if (previous != null) {
+            previous.retire();
+        }
+    }
+
+    /**
+     * Disposes of the current generation, once drained
+     */
+    public void shutdown() {
+        final Generation previous = current.getAndSet(null);
+        if (previous != null) {
+            previous.retire();
+        }
+    }
+
+    public boolean isInitialized() {
+        return current.get() != null;
+    }
+
+    /**
+     * Returns the number of the requests using the current generation
+     */
+    public int getNumInFlight() {
+        final Generation generation = current.get();
+        return generation != null ? generation.numInFlight.get() : 0;
+    }
+}
@@ -0,0 +1,223 @@
+package tika.processor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import tika.model.TikaProcessingResult;
+import tika.utils.DocumentBuffer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Coalesces the concurrent requests for processing the identical documents.
+ *
+ * The first request starts the processing, whereas the concurrent duplicates (identified by the same key,
+ * i.e. the document content and the processor configuration) wait for its result and receive a copy.
+ * The processing runs on the bounded pool of the coalescer, independently of any of the requests, with its
+ * own reference to the document, so that it carries on when the first request leaves (e.g. on its timeout)
+ * while the others still wait for it. The processing is cancelled only once all its requests have left.
+ * When the pool is saturated, the processing runs on the thread of the first request instead.
+ *
+ * NB: the waiting requests still hold their processing workers, as the processing is synchronous.
+ */
+@Component
+public class RequestCoalescer {
+
+    @Autowired
+    private RequestCoalescerConfig config;
+
+    private final ConcurrentHashMap<String, SharedProcessing> inFlight = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    private final AtomicLong numCoalescedRequests = new AtomicLong();
+
+    private final Logger logger = LogManager.getLogger(RequestCoalescer.class);
+
+    /**
+     * The processing shared by the requests, counting the requests still waiting for its result
+     */
+    private static class SharedProcessing {
+        final CompletableFuture<TikaProcessingResult> result = new CompletableFuture<>();
+        volatile Future<?> run;
+        private int numWaiting = 1;
+
+        /**
+         * Adds the waiting request, unless all the requests have already left (i.e. the processing is cancelled)
+         */
+        synchronized boolean join() {
+            if (numWaiting == 0) {
+                return false;
+            }
+            numWaiting++;
+            return true;
+        }
+
+        /**
+         * Removes the waiting request, returns whether it was the last one
+         */
+        synchronized boolean leave() {
+            return --numWaiting == 0;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        int maxWorkers = config.getMaxWorkers();
+        if (maxWorkers <= 0) {
+            // the default number of the documents processing workers of both the lanes
+            maxWorkers = 2 * Runtime.getRuntime().availableProcessors();
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tika-coalesced-");
+        threadFactory.setDaemon(true);
+        // no queue, the processing that cannot be started right away runs on the thread of the request
+        executor = new ThreadPoolExecutor(0, maxWorkers, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public long getNumCoalescedRequests() {
+        return numCoalescedRequests.get();
+    }
+
+    /**
+     * Returns the result of processing of the document, either starting the processing or waiting for the one
+     * already in progress for the same key
+     */
+    public TikaProcessingResult process(final String key, final DocumentBuffer document,
+                                        final Callable<TikaProcessingResult> processing)
+            throws IOException, InterruptedException {
+        while (true) {
+            final SharedProcessing started = new SharedProcessing();
+            final SharedProcessing existing = inFlight.putIfAbsent(key, started);
+
+            if (existing == null) {
+                if (!start(key, started, document, processing)) {
+                    // the pool is saturated, hence the processing is run by the request itself
+                    started.run.run();
+                }
+                return copyOf(await(key, started));
+            }
+
+            if (existing.join()) {
+                numCoalescedRequests.incrementAndGet();
+                logger.debug("Waiting for the processing of the identical document already in progress");
+                return copyOf(await(key, existing));
+            }
+
+            // all the requests of the processing have left, it is being cancelled
+            inFlight.remove(key, existing);
+        }
+    }
+
+    /**
+     * Starts the processing on the pool, returns false when the pool is saturated (the processing is then
+     * prepared to be run by the caller)
+     */
+    private boolean start(final String key, final SharedProcessing shared, final DocumentBuffer document,
+                          final Callable<TikaProcessingResult> processing) {
+        // the processing keeps its own reference to the document, as the request can leave early
+        final DocumentBuffer retained = document.retain();
+
+        // either the processing or the cancellation (of the processing not started yet) releases the document
+        final AtomicBoolean released = new AtomicBoolean(false);
+        final FutureTask<Void> run = new FutureTask<>(() -> {
+            try {
+                shared.result.complete(processing.call());
+            }
+            catch (Throwable e) {
+                shared.result.completeExceptionally(e);
+            }
+            finally {
+                inFlight.remove(key, shared);
+                if (released.compareAndSet(false, true)) {
+                    closeQuietly(retained);
+                }
+            }
+            return null;
+        }) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    shared.result.cancel(false);
+                    inFlight.remove(key, shared);
+                    if (released.compareAndSet(false, true)) {
+                        closeQuietly(retained);
+                    }
+                }
+            }
+        };
+        shared.run = run;
+
+        try {
+            executor.execute(run);
+            return true;
+        }
+        catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private TikaProcessingResult await(final String key, final SharedProcessing shared)
+            throws IOException, InterruptedException {
+        try {
+            return shared.result.get();
+        }
+        catch (CancellationException e) {
+            throw new IOException("The processing of the document has been cancelled");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        finally {
+            // the last request leaving before the processing completes cancels it
+            if (shared.leave() && !shared.result.isDone()) {
+                logger.debug("All the requests for the document have left, cancelling its processing");
+                inFlight.remove(key, shared);
+                shared.run.cancel(true);
+            }
+        }
+    }
+
+    private static void closeQuietly(DocumentBuffer document) {
+        try {
+            document.close();
+        }
+        catch (IOException ignored) {}
+    }
+
+    /**
+     * Each of the requests receives its own copy of the result
+     */
+    private static TikaProcessingResult copyOf(TikaProcessingResult result) {
+        return result.toBuilder()
+                .metadata(result.getMetadata() != null ? new LinkedHashMap<>(result.getMetadata()) : null)
+                .build();
+    }
+}
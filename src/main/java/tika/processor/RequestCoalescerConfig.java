@@ -0,0 +1,29 @@
+package tika.processor;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import common.JsonPropertyAccessView;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * The configuration of coalescing the concurrent requests for the identical documents
+ */
+@Data
+@Configuration
+public class RequestCoalescerConfig {
+
+    // process the identical documents (with the same processor configuration) received concurrently only once,
+    // the concurrent requests wait for the result of the first one
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.request-coalescing.enabled:true}")
+    private boolean enabled;
+
+    // the max number of the coalesced documents processed concurrently on the own workers of the coalescer,
+    // the processing is run on the thread of the request when all are busy
+    // (0 - twice the number of the available processors)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.request-coalescing.max-workers:0}")
+    private int maxWorkers;
+}
@@ -0,0 +1,135 @@
+package tika.processor;
+
+import org.apache.tika.parser.ParseContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The time taken by the stages of the processing of a single document (detection, text extraction, rendering,
+ * OCR, ...), passed to the parsers in the parse context.
+ *
+ * The stages can be nested (e.g. the parser recording the rendering and OCR is run within the parsing stage
+ * of the processor), in which case the outer stage only accounts for the time not taken by the nested ones,
+ * so that the stage timings add up to the processing time. The stages run by the concurrent workers
+ * (e.g. OCR of the pages in parallel) are summed over the workers, hence can add up to more than the elapsed time.
+ */
+public class StageTimings {
+
+    public static final String BUFFERING = "buffering";
+    public static final String CACHE_LOOKUP = "cache_lookup";
+    public static final String DETECTION = "detection";
+    public static final String TEXT_EXTRACTION = "text_extraction";
+    public static final String PARSING = "parsing";
+    public static final String RENDERING = "rendering";
+    public static final String OCR = "ocr";
+    public static final String ENCODING = "encoding";
+    public static final String METADATA_EXTRACTION = "metadata_extraction";
+
+    private final long startTimeNanos = System.nanoTime();
+
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+
+    // the time recorded by the stages run on the processing thread, used to exclude the nested stages
+    private long sequentialNanos = 0;
+
+    // the path the document was processed with (e.g. the text layer or OCR of a PDF)
+    private volatile String route;
+
+    private volatile String contentType;
+
+    /**
+     * A running stage, recorded when closed
+     */
+    public class Stage implements AutoCloseable {
+        private final String name;
+        private final long startNanos;
+        private final long sequentialNanosAtStart;
+        private boolean closed = false;
+
+        private Stage(String name, long startNanos, long sequentialNanosAtStart) {
+            this.name = name;
+            this.startNanos = startNanos;
+            this.sequentialNanosAtStart = sequentialNanosAtStart;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            final long elapsedNanos = System.nanoTime() - startNanos;
+            synchronized (StageTimings.this) {
+                final long nestedNanos = sequentialNanos - sequentialNanosAtStart;
+                final long exclusiveNanos = Math.max(0, elapsedNanos - nestedNanos);
+                stageNanos.merge(name, exclusiveNanos, Long::sum);
+                sequentialNanos += exclusiveNanos;
+            }
+        }
+    }
+
+    /**
+     * Returns the timings passed in the parse context or, when there are none, new ones that are not reported
+     */
+    public static StageTimings from(ParseContext context) {
+        StageTimings timings = context.get(StageTimings.class);
+        return timings != null ? timings : new StageTimings();
+    }
+
+    /**
+     * Starts the stage run on the processing thread
+     */
+    public synchronized Stage start(final String stage) {
+        return new Stage(stage, System.nanoTime(), sequentialNanos);
+    }
+
+    /**
+     * Records the time taken by the stage run by one of the concurrent workers
+     */
+    public synchronized void addConcurrent(final String stage, final long nanos) {
+        stageNanos.merge(stage, nanos, Long::sum);
+    }
+
+    public synchronized Map<String, Long> getStageNanos() {
+        return new LinkedHashMap<>(stageNanos);
+    }
+
+    public synchronized Map<String, Long> getStageTimingsMs() {
+        Map<String, Long> timingsMs = new LinkedHashMap<>();
+        stageNanos.forEach((stage, nanos) -> timingsMs.put(stage, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        return timingsMs;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startTimeNanos;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public void setRoute(String route) {
+        this.route = route;
+    }
+
+    /**
+     * Sets the route, unless already set by the caller (e.g. when the parser is run directly by the processor)
+     */
+    public synchronized void setRouteIfAbsent(String route) {
+        if (this.route == null) {
+            this.route = route;
+        }
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+}
@@ -0,0 +1,383 @@
+package tika.processor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.parser.ocr.TesseractOCRConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+
+/**
+ * A pool of Tesseract OCR workers shared by the documents processors.
+ *
+ * Tesseract loads the language models each time it is started, which takes a significant amount of time
+ * when it is run separately per each page image. Hence, a worker runs a single Tesseract process over a batch
+ * of page images (passed as a list file), so that the models are loaded only once per batch. A worker is
+ * recycled (i.e. a new process is started) after processing the max number of pages, so that the processes
+ * do not grow over long documents. The number of concurrently running workers is capped and the Tesseract
+ * installation is periodically checked in the background, so that the callers can fall back to Tika's OCR parser
+ * when not usable, without waiting for the check.
+ *
+ * The workers are run with the same Tesseract options as Tika's OCR parser (the language, the page segmentation
+ * mode, the inter-word spacing and the other configured settings) and with the resolution the pages were rendered
+ * at. When enabled, the images are preprocessed with ImageMagick the same way as by Tika's OCR parser before being
+ * passed to Tesseract, only the documents configured with the rotation are left to Tika's OCR parser.
+ */
+@Component
+public class TesseractWorkerPool {
+
+    // the separator emitted by Tesseract after each page of the text output
+    private static final String PAGE_SEPARATOR = "\f";
+
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 10;
+
+    @Autowired
+    private TesseractWorkerPoolConfig config;
+
+    // limits the number of concurrently running workers
+    private Semaphore workerPermits;
+    private int maxWorkers;
+
+    // the result of the last health check, run periodically in the background
+    private volatile boolean healthy = false;
+    private ScheduledExecutorService healthCheckExecutor;
+
+    private final AtomicLong numProcessedPages = new AtomicLong();
+    private final AtomicLong numStartedWorkers = new AtomicLong();
+    private final AtomicLong numFailedWorkers = new AtomicLong();
+
+    private final Logger logger = LogManager.getLogger(TesseractWorkerPool.class);
+
+    @PostConstruct
+    public void init() {
+        maxWorkers = config.getMaxWorkers() > 0 ? config.getMaxWorkers() : Runtime.getRuntime().availableProcessors();
+        workerPermits = new Semaphore(maxWorkers, true);
+
+        if (config.isEnabled()) {
+            checkHealth();
+
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tika-tesseract-health-");
+            threadFactory.setDaemon(true);
+            healthCheckExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            final long intervalSeconds = Math.max(1, config.getHealthCheckInterval());
+            healthCheckExecutor.scheduleWithFixedDelay(this::checkHealth, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (healthCheckExecutor != null) {
+            healthCheckExecutor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Checks whether the pool can be used, as found by the last health check
+     */
+    public boolean isAvailable() {
+        return config.isEnabled() && healthy;
+    }
+
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    public int getMaxPagesPerWorker() {
+        return Math.max(1, config.getMaxPagesPerWorker());
+    }
+
+    public long getNumProcessedPages() {
+        return numProcessedPages.get();
+    }
+
+    public long getNumStartedWorkers() {
+        return numStartedWorkers.get();
+    }
+
+    public long getNumFailedWorkers() {
+        return numFailedWorkers.get();
+    }
+
+    /**
+     * Checks whether Tesseract can be run with the current configuration
+     */
+    public synchronized boolean checkHealth() {
+        boolean isHealthy = false;
+        try {
+            Process process = new ProcessBuilder(getTesseractProg(), "--version")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+
+            if (process.waitFor(HEALTH_CHECK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                isHealthy = process.exitValue() == 0;
+            }
+            else {
+                process.destroyForcibly();
+            }
+        }
+        catch (IOException e) {
+            logger.debug("Cannot run Tesseract: " + e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!isHealthy) {
+            logger.warn("Tesseract workers pool: Tesseract is not usable, falling back to the default OCR parser");
+        }
+
+        healthy = isHealthy;
+        return isHealthy;
+    }
+
+    /**
+     * Runs the health check in the background right away, e.g. after a worker failure
+     */
+    private void requestHealthCheck() {
+        if (healthCheckExecutor == null) {
+            return;
+        }
+        try {
+            healthCheckExecutor.execute(this::checkHealth);
+        }
+        catch (RejectedExecutionException e) {
+            logger.debug("Tesseract workers pool: the health check not run, the pool is shut down");
+        }
+    }
+
+    /**
+     * Checks whether the images can be processed by the workers with the given configuration, i.e. it does not
+     * need the images to be rotated before OCR
+     */
+    public boolean supports(TesseractOCRConfig tessConfig) {
+        return !tessConfig.isApplyRotation();
+    }
+
+    /**
+     * Runs OCR over the images rendered at the given resolution (DPI, 0 when unknown), returning the text
+     * of each page in the order of the images (NB: a multi-page image results in multiple pages)
+     */
+    public List<String> recognize(List<Path> images, TesseractOCRConfig tessConfig, int dpi, int timeoutSeconds)
+            throws IOException, TikaException {
+        final int maxPagesPerWorker = getMaxPagesPerWorker();
+        final List<String> options = createOptions(tessConfig, dpi);
+        final List<String> preprocessingOptions = tessConfig.isEnableImagePreprocessing()
+                ? createPreprocessingOptions(tessConfig) : null;
+
+        List<String> pagesText = new ArrayList<>(images.size());
+        for (int from = 0; from < images.size(); from += maxPagesPerWorker) {
+            List<Path> batch = images.subList(from, Math.min(images.size(), from + maxPagesPerWorker));
+            pagesText.addAll(runWorker(batch, options, preprocessingOptions, timeoutSeconds));
+        }
+        return pagesText;
+    }
+
+    /**
+     * Creates the Tesseract options following the configuration, as passed by Tika's OCR parser
+     */
+    private static List<String> createOptions(TesseractOCRConfig tessConfig, int dpi) {
+        List<String> options = new ArrayList<>();
+        options.add("--psm");
+        options.add(tessConfig.getPageSegMode());
+        if (dpi > 0) {
+            options.add("--dpi");
+            options.add(String.valueOf(dpi));
+        }
+        options.add("-c");
+        options.add("preserve_interword_spaces=" + (tessConfig.isPreserveInterwordSpacing() ? "1" : "0"));
+        for (Map.Entry<String, String> setting : tessConfig.getOtherTesseractConfig().entrySet()) {
+            options.add("-c");
+            options.add(setting.getKey() + "=" + setting.getValue());
+        }
+        options.add("-l");
+        options.add(tessConfig.getLanguage());
+        return options;
+    }
+
+    /**
+     * Creates the ImageMagick options of the image preprocessing following the configuration,
+     * as used by Tika's OCR parser
+     */
+    private static List<String> createPreprocessingOptions(TesseractOCRConfig tessConfig) {
+        return List.of(
+                "-density", String.valueOf(tessConfig.getDensity()),
+                "-depth", String.valueOf(tessConfig.getDepth()),
+                "-colorspace", tessConfig.getColorspace(),
+                "-filter", tessConfig.getFilter(),
+                "-resize", tessConfig.getResize() + "%");
+    }
+
+    private List<String> runWorker(List<Path> images, List<String> options, List<String> preprocessingOptions,
+                                   int timeoutSeconds) throws IOException, TikaException {
+        try {
+            workerPermits.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TikaException("Tesseract worker: interrupted", e);
+        }
+
+        Path listFile = null;
+        Path outputFile = null;
+        Path errorFile = null;
+        List<Path> preprocessedImages = new ArrayList<>();
+        Process process = null;
+        try {
+            final long deadlineMillis = System.currentTimeMillis() + timeoutSeconds * 1000L;
+            List<Path> ocrImages = images;
+            if (preprocessingOptions != null) {
+                for (Path image : images) {
+                    preprocessedImages.add(preprocessImage(image, preprocessingOptions, deadlineMillis));
+                }
+                ocrImages = preprocessedImages;
+            }
+
+            listFile = Files.createTempFile("tika-ocr-list-", ".txt");
+            outputFile = Files.createTempFile("tika-ocr-output-", ".txt");
+            errorFile = Files.createTempFile("tika-ocr-error-", ".txt");
+            Files.write(listFile, ocrImages.stream().map(Path::toString).collect(Collectors.toList()));
+
+            List<String> cmd = new ArrayList<>(List.of(getTesseractProg(), listFile.toString(), "stdout"));
+            cmd.addAll(options);
+            process = new ProcessBuilder(cmd)
+                    .redirectOutput(outputFile.toFile())
+                    .redirectError(errorFile.toFile())
+                    .start();
+            numStartedWorkers.incrementAndGet();
+
+            if (!process.waitFor(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                numFailedWorkers.incrementAndGet();
+                throw new TikaException("Tesseract worker: timeout");
+            }
+            if (process.exitValue() != 0) {
+                numFailedWorkers.incrementAndGet();
+                // make sure that the installation is checked again, without holding the worker
+                requestHealthCheck();
+                logger.warn("Tesseract worker: failed with exit code: " + process.exitValue() + ", error output: "
+                        + Files.readString(errorFile, StandardCharsets.UTF_8).trim());
+                throw new TikaException("Tesseract worker: failed with exit code: " + process.exitValue());
+            }
+
+            List<String> pagesText = splitPages(Files.readString(outputFile, StandardCharsets.UTF_8));
+            numProcessedPages.addAndGet(pagesText.size());
+            return pagesText;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TikaException("Tesseract worker: interrupted", e);
+        }
+        finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+            if (listFile != null) {
+                Files.deleteIfExists(listFile);
+            }
+            if (outputFile != null) {
+                Files.deleteIfExists(outputFile);
+            }
+            if (errorFile != null) {
+                Files.deleteIfExists(errorFile);
+            }
+            for (Path preprocessedImage : preprocessedImages) {
+                Files.deleteIfExists(preprocessedImage);
+            }
+            workerPermits.release();
+        }
+    }
+
+    /**
+     * Runs the ImageMagick preprocessing of the image, stored next to it (with the name starting with
+     * the name of the image), within the time left for the worker
+     */
+    private Path preprocessImage(Path image, List<String> preprocessingOptions, long deadlineMillis)
+            throws IOException, TikaException, InterruptedException {
+        final String imageName = image.getFileName().toString();
+        final int extensionIndex = imageName.lastIndexOf('.');
+        final Path preprocessedImage = Files.createTempFile(image.toAbsolutePath().getParent(),
+                (extensionIndex > 0 ? imageName.substring(0, extensionIndex) : imageName) + "-preprocessed-",
+                extensionIndex > 0 ? imageName.substring(extensionIndex) : ".png");
+
+        List<String> cmd = new ArrayList<>();
+        cmd.add(getImageMagickProg());
+        cmd.addAll(preprocessingOptions);
+        cmd.add(image.toString());
+        cmd.add(preprocessedImage.toString());
+
+        Process process = new ProcessBuilder(cmd)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            if (!process.waitFor(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                numFailedWorkers.incrementAndGet();
+                throw new TikaException("Tesseract worker: image preprocessing timeout");
+            }
+            if (process.exitValue() != 0) {
+                numFailedWorkers.incrementAndGet();
+                throw new TikaException("Tesseract worker: image preprocessing failed with exit code: " + process.exitValue());
+            }
+            return preprocessedImage;
+        }
+        catch (IOException | TikaException | InterruptedException e) {
+            Files.deleteIfExists(preprocessedImage);
+            throw e;
+        }
+        finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static List<String> splitPages(String output) {
+        List<String> pagesText = new ArrayList<>(Arrays.asList(output.split(PAGE_SEPARATOR, -1)));
+        // the separator is emitted after each page, including the last one
+        if (pagesText.size() > 1 && pagesText.get(pagesText.size() - 1).isBlank()) {
+            pagesText.remove(pagesText.size() - 1);
+        }
+        return pagesText;
+    }
+
+    private String getImageMagickProg() {
+        String imageMagickPath = config.getImageMagickPath();
+        if (!imageMagickPath.isEmpty() && !imageMagickPath.endsWith(File.separator)) {
+            imageMagickPath += File.separator;
+        }
+        return imageMagickPath + (System.getProperty("os.name").startsWith("Windows") ? "convert.exe" : "convert");
+    }
+
+    private String getTesseractProg() {
+        String tesseractPath = config.getTesseractPath();
+        if (!tesseractPath.isEmpty() && !tesseractPath.endsWith(File.separator)) {
+            tesseractPath += File.separator;
+        }
+        return tesseractPath + (System.getProperty("os.name").startsWith("Windows") ? "tesseract.exe" : "tesseract");
+    }
+}
@@ -0,0 +1,48 @@
+package tika.processor;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import common.JsonPropertyAccessView;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * The Tesseract OCR workers pool configuration
+ */
+@Data
+@Configuration
+public class TesseractWorkerPoolConfig {
+
+    // use the pool of Tesseract workers (running over batches of page images) instead of
+    // starting a new Tesseract process per each image
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.tesseract-ocr.worker-pool.enabled:false}")
+    private boolean enabled;
+
+    // path to the Tesseract installation folder, if not on the system path
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.tesseract-ocr.worker-pool.tesseract-path:}")
+    private String tesseractPath;
+
+    // path to the ImageMagick installation folder, if not on the system path, used for the image preprocessing
+    // (when enabled in the Tesseract OCR configuration)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.tesseract-ocr.worker-pool.image-magick-path:}")
+    private String imageMagickPath;
+
+    // the max number of concurrently running workers (0 - the number of available cores)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.tesseract-ocr.worker-pool.max-workers:0}")
+    private int maxWorkers;
+
+    // the max number of pages processed by a worker before it is recycled (i.e. a new process is started)
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.tesseract-ocr.worker-pool.max-pages-per-worker:8}")
+    private int maxPagesPerWorker;
+
+    // the interval (s) between the checks whether Tesseract installation is usable
+    @JsonView(JsonPropertyAccessView.Public.class)
+    @Value("${tika.parsers.tesseract-ocr.worker-pool.health-check-interval:60}")
+    private int healthCheckInterval;
+}
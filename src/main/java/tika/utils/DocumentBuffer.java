@@ -0,0 +1,170 @@
+package tika.utils;
+
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A rewindable buffer holding the binary content of a single document.
+ *
+ * Small documents are kept in memory, whereas the ones exceeding the in-memory threshold are
+ * spilled to a managed temporary file, so that the heap usage per document stays bounded
+ * regardless of the document size. The temporary file is removed when the buffer is closed.
+ *
+ * The buffer can be shared (e.g. with the processing running on another thread): each user retains
+ * it and closes it when done, the temporary resources are released once the last user closes it.
+ */
+public class DocumentBuffer implements Closeable {
+
+    // the max size of a Java array that can be safely allocated
+    private static final int MAX_IN_MEMORY_SIZE = Integer.MAX_VALUE - 16;
+
+    private final byte[] content;
+    private final Path file;
+    private final TemporaryResources temporaryResources;
+
+    // the number of users of the buffer (incl. the one that created it)
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    // the time taken by reading the content from the source stream (0 when not read from a stream)
+    private long bufferingTimeNanos = 0;
+
+    private DocumentBuffer(byte[] content, Path file, TemporaryResources temporaryResources) {
+        this.content = content;
+        this.file = file;
+        this.temporaryResources = temporaryResources;
+    }
+
+    /**
+     * Buffers the content of the stream, keeping it in memory when its size does not exceed
+     * the threshold (in bytes) and spilling it to a temporary file otherwise
+     */
+    public static DocumentBuffer fromStream(final InputStream stream, final long inMemoryThreshold,
+                                            final Path tmpDirectory) throws IOException {
+        final long startTimeNanos = System.nanoTime();
+        final DocumentBuffer buffer = readFromStream(stream, inMemoryThreshold, tmpDirectory);
+        buffer.bufferingTimeNanos = System.nanoTime() - startTimeNanos;
+        return buffer;
+    }
+
+    private static DocumentBuffer readFromStream(final InputStream stream, final long inMemoryThreshold,
+                                                 final Path tmpDirectory) throws IOException {
+        final int limit = (int) Math.max(0, Math.min(inMemoryThreshold, MAX_IN_MEMORY_SIZE - 1));
+
+        // read one byte over the limit to find out whether the document fits in memory
+        byte[] head = stream.readNBytes(limit + 1);
+        if (head.length <= limit) {
+            return new DocumentBuffer(head, null, null);
+        }
+
+        TemporaryResources temporaryResources = new TemporaryResources();
+        try {
+            if (tmpDirectory != null) {
+                temporaryResources.setTemporaryFileDirectory(tmpDirectory);
+            }
+            Path file = temporaryResources.createTemporaryFile().toPath();
+
+            try (OutputStream outputStream = Files.newOutputStream(file)) {
+                outputStream.write(head);
+                // release the in-memory part before copying the rest of the stream
+                head = null;
+                stream.transferTo(outputStream);
+            }
+            return new DocumentBuffer(null, file, temporaryResources);
+        }
+        catch (IOException e) {
+            temporaryResources.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps the content of the stream so that it can be re-read multiple times: the file-backed streams
+     * are re-used as they are (the file remains owned by the stream), whereas the others are read into memory
+     */
+    public static DocumentBuffer fromTikaInputStream(final TikaInputStream stream) throws IOException {
+        if (stream.hasFile()) {
+            return new DocumentBuffer(null, stream.getPath(), null);
+        }
+        return new DocumentBuffer(stream.readAllBytes(), null, null);
+    }
+
+    /**
+     * Opens a new stream over the buffered content, positioned at the beginning of the document.
+     * The file-backed streams are handed over to the parsers as files, hence no content is copied.
+     */
+    public TikaInputStream openStream() throws IOException {
+        if (isFileBacked()) {
+            return TikaInputStream.get(file);
+        }
+        return TikaInputStream.get(content);
+    }
+
+    /**
+     * Computes the SHA-256 hash of the buffered content, returned as a hex string
+     */
+    public String computeContentHash() throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        if (isFileBacked()) {
+            try (InputStream stream = Files.newInputStream(file)) {
+                byte[] buffer = new byte[64 * 1024];
+                for (int n = stream.read(buffer); n != -1; n = stream.read(buffer)) {
+                    digest.update(buffer, 0, n);
+                }
+            }
+        }
+        else {
+            digest.update(content);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Marks the buffer as used by another user, that is responsible for closing it
+     */
+    public DocumentBuffer retain() {
+        references.incrementAndGet();
+        return this;
+    }
+
+    public long getBufferingTimeNanos() {
+        return bufferingTimeNanos;
+    }
+
+    public boolean isFileBacked() {
+        return file != null;
+    }
+
+    public boolean isEmpty() throws IOException {
+        return getLength() == 0;
+    }
+
+    public long getLength() throws IOException {
+        return isFileBacked() ? Files.size(file) : content.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (references.decrementAndGet() == 0 && temporaryResources != null) {
+            temporaryResources.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package tika.utils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A histogram of the latencies recorded concurrently with a low overhead (striped counters, no locking).
+ *
+ * The latencies are counted in the buckets growing exponentially (by ~19%) from 1 ms up to ~4.6 h, hence
+ * the percentiles are reported with the same relative precision.
+ */
+public class LatencyHistogram {
+
+    // the number of the buckets per doubling of the latency
+    private static final int BUCKETS_PER_DOUBLING = 4;
+
+    // the upper bound of the last bucket is 2^24 ms, the latencies over it are counted in the last bucket
+    private static final int NUM_BUCKETS = 24 * BUCKETS_PER_DOUBLING + 1;
+
+    private final LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    /**
+     * The summary of the recorded latencies, in ms
+     */
+    @Data
+    @Builder
+    public static class Summary {
+        @JsonProperty("count")
+        long count;
+
+        @JsonProperty("mean_ms")
+        double meanMs;
+
+        @JsonProperty("p50_ms")
+        double p50Ms;
+
+        @JsonProperty("p95_ms")
+        double p95Ms;
+
+        @JsonProperty("p99_ms")
+        double p99Ms;
+
+        @JsonProperty("max_ms")
+        double maxMs;
+    }
+
+    public LatencyHistogram() {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        buckets[getBucketIndex(value)].increment();
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    private static int getBucketIndex(final long nanos) {
+        final double ms = nanos / 1e6;
+        if (ms <= 1.0) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(BUCKETS_PER_DOUBLING * Math.log(ms) / Math.log(2));
+        return Math.min(index, NUM_BUCKETS - 1);
+    }
+
+    private static double getBucketUpperBoundMs(final int index) {
+        return Math.pow(2, (double) index / BUCKETS_PER_DOUBLING);
+    }
+
+    /**
+     * Returns the latency (ms) under which the given fraction of the recorded latencies are, i.e. the upper bound
+     * of the bucket it falls in (but not more than the max recorded latency)
+     */
+    private double getPercentileMs(final long[] counts, final long total, final double fraction, final double maxMs) {
+        final long rank = (long) Math.ceil(fraction * total);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.min(getBucketUpperBoundMs(i), maxMs);
+            }
+        }
+        return maxMs;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public Summary getSummary() {
+        // NB: the counters are read while they can be still updated, hence the summary is approximate
+        final long[] counts = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+
+        final double maxMs = maxNanos.get() / 1e6;
+        if (total == 0) {
+            return Summary.builder().build();
+        }
+
+        return Summary.builder()
+                .count(total)
+                .meanMs(round(totalNanos.sum() / 1e6 / Math.max(1, count.sum())))
+                .p50Ms(round(getPercentileMs(counts, total, 0.50, maxMs)))
+                .p95Ms(round(getPercentileMs(counts, total, 0.95, maxMs)))
+                .p99Ms(round(getPercentileMs(counts, total, 0.99, maxMs)))
+                .maxMs(round(maxMs))
+                .build();
+    }
+
+    private static double round(final double ms) {
+        return Math.round(ms * 10) / 10.0;
+    }
+}
@@ -0,0 +1,29 @@
+package tika.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The time taken by the stages of the service startup (in ms), in the order they completed
+ */
+public class StartupTimings {
+
+    private static final Map<String, Long> timingsMs = new LinkedHashMap<>();
+
+    /**
+     * Records the time taken by the stage started at the given time (as given by System.nanoTime)
+     */
+    public static void record(final String stage, final long startTimeNanos) {
+        recordMs(stage, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos));
+    }
+
+    public static synchronized void recordMs(final String stage, final long timeMs) {
+        timingsMs.put(stage, timeMs);
+    }
+
+    public static synchronized Map<String, Long> getTimingsMs() {
+        return new LinkedHashMap<>(timingsMs);
+    }
+}
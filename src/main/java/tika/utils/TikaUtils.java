@@ -1,15 +1,22 @@
 package tika.utils;
 
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.tika.parser.txt.CharsetDetector;
 import org.apache.tika.parser.txt.CharsetMatch;
+import org.xml.sax.SAXException;
 import tika.model.MetadataKeys;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.regex.Pattern;
 
 import static tika.model.MetadataKeys.IMAGE_PROCESSING_ENABLED;
 
@@ -33,19 +40,6 @@ public class TikaUtils {
 
     private static final String[] metaKeysMultiValue = {MetadataKeys.X_TIKA_PARSED_BY};
 
-    public static <T> List<List<T>> getBatchesFromList(List<T> collection, int batchSize){
-        int i = 0;
-        List<List<T>> batches = new ArrayList<List<T>>();
-        while(i < collection.size()){
-            int nextInc = Math.min(collection.size()-i,batchSize);
-            List<T> batch = collection.subList(i,i+nextInc);
-            batches.add(batch);
-            i = i + nextInc;
-        }
-
-        return batches;
-    }
-
     /**
      * Returns the number of pages if such information exists in metadata
      */
@@ -59,6 +53,56 @@ public class TikaUtils {
         return -1;
     }
 
+    private static final Pattern CLASS_NAME_PATTERN = Pattern.compile("[\\w.$]+");
+
+    /**
+     * Splits the comma-separated list, skipping the empty entries
+     */
+    static public List<String> splitList(final String value) {
+        List<String> entries = new ArrayList<>();
+        if (value != null) {
+            for (String entry : value.split(",")) {
+                if (!entry.isBlank()) {
+                    entries.add(entry.trim());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Creates the Tika configuration with only the listed parsers, in place of all the parsers available
+     * on the class path (which are all loaded by the default parser), so that the unused ones are not loaded.
+     * The types mapped to the dedicated parsers are handled only by these.
+     */
+    static public TikaConfig createTikaConfig(final List<String> parserClassNames, final Map<String, String> typeParsers)
+            throws TikaException, IOException, SAXException {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><properties><parsers>");
+
+        for (String parserClassName : parserClassNames) {
+            xml.append("<parser class=\"").append(checkClassName(parserClassName)).append("\">");
+            for (String mimeType : typeParsers.keySet()) {
+                xml.append("<mime-exclude>").append(mimeType).append("</mime-exclude>");
+            }
+            xml.append("</parser>");
+        }
+        for (Map.Entry<String, String> typeParser : typeParsers.entrySet()) {
+            xml.append("<parser class=\"").append(checkClassName(typeParser.getValue())).append("\">")
+                    .append("<mime>").append(typeParser.getKey()).append("</mime>")
+                    .append("</parser>");
+        }
+        xml.append("</parsers></properties>");
+
+        return new TikaConfig(new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static private String checkClassName(final String className) {
+        if (!CLASS_NAME_PATTERN.matcher(className).matches()) {
+            throw new IllegalArgumentException("Invalid parser class name: " + className);
+        }
+        return className;
+    }
+
     /**
      * Checks whether the document is valid according to the metadata content type and whether it's empty
      */
@@ -0,0 +1,90 @@
+package tika.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * Creates the virtual threads (JDK 21+) for the tasks that mostly block, e.g. waiting for the external processes
+ * or for the results of the processing workers, with the platform threads used when they are not available.
+ *
+ * The service is built for JDK 17, hence the virtual threads API is accessed using reflection. The virtual threads
+ * are only used once enabled (see processing.virtual-threads.enabled), the CPU-heavy parsing always stays
+ * on the bounded pools of the platform threads.
+ */
+public class VirtualThreads {
+
+    private static volatile boolean enabled = false;
+
+    // the factory of the threads reading the output of the external processes
+    private static volatile ThreadFactory processStreamThreadFactory;
+
+    /**
+     * Returns whether the virtual threads are available in the running JDK
+     */
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Enables the use of the virtual threads, returns false when they are not available
+     */
+    public static synchronized boolean enable() {
+        if (!isSupported()) {
+            return false;
+        }
+        try {
+            processStreamThreadFactory = createFactory("process-stream-");
+            enabled = true;
+        }
+        catch (ReflectiveOperationException e) {
+            return false;
+        }
+        return true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Creates the factory of the virtual threads named with the given prefix and a sequence number
+     */
+    public static ThreadFactory createFactory(final String namePrefix) throws ReflectiveOperationException {
+        final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+        return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    }
+
+    /**
+     * Creates the executor running each task in a new virtual thread
+     */
+    public static ExecutorService newThreadPerTaskExecutor(final String namePrefix) throws ReflectiveOperationException {
+        final Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        return (ExecutorService) method.invoke(null, createFactory(namePrefix));
+    }
+
+    /**
+     * Starts the task reading the output of an external process, in a virtual thread when enabled
+     */
+    public static Thread startProcessStreamReader(final Runnable task) {
+        final Thread thread;
+        if (enabled) {
+            thread = processStreamThreadFactory.newThread(task);
+        }
+        else {
+            thread = new Thread(task);
+        }
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,199 @@
+package tika.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * The sample documents used to warm up the processing paths (the text PDF, the scanned PDF, DOCX, HTML and
+ * the image) before the service starts accepting the traffic.
+ *
+ * The documents are generated on the fly, so that no binary resources need to be shipped with the service.
+ */
+public class WarmUpCorpus {
+
+    /**
+     * A single sample document
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class SampleDocument {
+        private final String name;
+        private final byte[] content;
+    }
+
+    public static final String[] SAMPLE_TEXT = {
+            "This document is used to warm up the document processing.",
+            "The quick brown fox jumps over the lazy dog.",
+            "Pack my box with five dozen liquor jugs.",
+            "Sphinx of black quartz, judge my vow.",
+            "The five boxing wizards jump quickly.",
+            "How vexingly quick daft zebras jump."
+    };
+
+    // the resolution of the rendered (scanned) pages
+    private static final int RENDER_DPI = 150;
+
+    /**
+     * Returns the built-in sample documents, covering all the processing paths
+     */
+    public static List<SampleDocument> createBuiltIn() throws IOException {
+        List<SampleDocument> documents = new ArrayList<>();
+        documents.add(new SampleDocument("text_pdf", createTextPdf()));
+        documents.add(new SampleDocument("ocr_pdf", createScannedPdf()));
+        documents.add(new SampleDocument("docx", createDocx()));
+        documents.add(new SampleDocument("html", createHtml()));
+        documents.add(new SampleDocument("image", createImage()));
+        return documents;
+    }
+
+    /**
+     * Returns the documents from the given directory, named after the files
+     */
+    public static List<SampleDocument> fromDirectory(final Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(directory)) {
+            files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        List<SampleDocument> documents = new ArrayList<>();
+        for (Path file : files) {
+            documents.add(new SampleDocument(file.getFileName().toString(), Files.readAllBytes(file)));
+        }
+        return documents;
+    }
+
+    public static byte[] createTextPdf() throws IOException {
+        try (PDDocument document = new PDDocument();
+             ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.beginText();
+                content.setFont(PDType1Font.HELVETICA, 12);
+                content.setLeading(16);
+                content.newLineAtOffset(72, PDRectangle.A4.getHeight() - 72);
+                for (String line : SAMPLE_TEXT) {
+                    content.showText(line);
+                    content.newLine();
+                }
+                content.endText();
+            }
+
+            document.save(output);
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * Returns the PDF with a single page containing only the image of the text, hence requiring OCR
+     */
+    public static byte[] createScannedPdf() throws IOException {
+        return createScannedPdf(1);
+    }
+
+    /**
+     * Returns the PDF with the given number of pages, each containing only the image of the text
+     */
+    public static byte[] createScannedPdf(final int numPages) throws IOException {
+        try (PDDocument document = new PDDocument();
+             ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            final BufferedImage pageImage = renderText(
+                    Math.round(PDRectangle.A4.getWidth() / 72 * RENDER_DPI),
+                    Math.round(PDRectangle.A4.getHeight() / 72 * RENDER_DPI));
+            // the same image is shared by all the pages
+            PDImageXObject image = LosslessFactory.createFromImage(document, pageImage);
+
+            for (int i = 0; i < numPages; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.drawImage(image, 0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight());
+                }
+            }
+
+            document.save(output);
+            return output.toByteArray();
+        }
+    }
+
+    public static byte[] createDocx() throws IOException {
+        try (XWPFDocument document = new XWPFDocument();
+             ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            for (String line : SAMPLE_TEXT) {
+                document.createParagraph().createRun().setText(line);
+            }
+            document.write(output);
+            return output.toByteArray();
+        }
+    }
+
+    public static byte[] createHtml() {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\">"
+                + "<title>Warm-up</title></head><body>\n");
+        for (String line : SAMPLE_TEXT) {
+            html.append("<p>").append(line).append("</p>\n");
+        }
+        html.append("</body></html>\n");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static byte[] createImage() throws IOException {
+        try (ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            ImageIO.write(renderText(1240, 600), "png", output);
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * Renders the sample text as black on white image of the given size
+     */
+    private static BufferedImage renderText(final int width, final int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setColor(Color.BLACK);
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setFont(new Font(Font.SERIF, Font.PLAIN, 36));
+
+            final int lineHeight = graphics.getFontMetrics().getHeight() * 3 / 2;
+            int y = lineHeight * 2;
+            for (String line : SAMPLE_TEXT) {
+                graphics.drawString(line, 100, y);
+                y += lineHeight;
+            }
+        }
+        finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,172 @@
+package benchmark;
+
+import tika.utils.VirtualThreads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Compares the throughput and the memory of handling the requests on the pool of the platform threads (as done
+ * by Tomcat by default) and on the virtual threads (JDK 21+), following the request model of the service:
+ * each request waits for an external process (e.g. ImageMagick), then for the CPU-heavy parsing run by the bounded
+ * pool of the processing workers and then for another external process (e.g. Tesseract).
+ *
+ * Usage: RequestThreadingBenchmark [num requests] [num platform request threads] [process wait ms] [parsing cpu ms]
+ * [--external-process]
+ *
+ * With --external-process the waits spawn and wait for the actual `sleep` processes, otherwise the waits are
+ * simulated by sleeping. Both the models are run in the same JVM (the platform one first), hence for the precise
+ * memory figures the models can be run separately using --only-platform / --only-virtual.
+ */
+public class RequestThreadingBenchmark {
+
+    private final int numRequests;
+    private final int numPlatformThreads;
+    private final long processWaitMs;
+    private final long parsingCpuMs;
+    private final boolean externalProcess;
+
+    private final ExecutorService processingWorkers =
+            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+    RequestThreadingBenchmark(int numRequests, int numPlatformThreads, long processWaitMs, long parsingCpuMs,
+                              boolean externalProcess) {
+        this.numRequests = numRequests;
+        this.numPlatformThreads = numPlatformThreads;
+        this.processWaitMs = processWaitMs;
+        this.parsingCpuMs = parsingCpuMs;
+        this.externalProcess = externalProcess;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        for (String arg : args) {
+            (arg.startsWith("--") ? options : values).add(arg);
+        }
+
+        RequestThreadingBenchmark benchmark = new RequestThreadingBenchmark(
+                values.size() > 0 ? Integer.parseInt(values.get(0)) : 2000,
+                values.size() > 1 ? Integer.parseInt(values.get(1)) : 200,
+                values.size() > 2 ? Long.parseLong(values.get(2)) : 200,
+                values.size() > 3 ? Long.parseLong(values.get(3)) : 5,
+                options.contains("--external-process"));
+
+        try {
+            System.out.println("Requests: " + benchmark.numRequests + ", process wait: " + benchmark.processWaitMs
+                    + " ms (x2), parsing: " + benchmark.parsingCpuMs + " ms, processing workers: "
+                    + Runtime.getRuntime().availableProcessors()
+                    + (benchmark.externalProcess ? ", using external processes" : ""));
+
+            if (!options.contains("--only-virtual")) {
+                benchmark.run("platform (" + benchmark.numPlatformThreads + " threads)",
+                        Executors.newFixedThreadPool(benchmark.numPlatformThreads));
+            }
+
+            if (!options.contains("--only-platform")) {
+                if (VirtualThreads.isSupported()) {
+                    benchmark.run("virtual", VirtualThreads.newThreadPerTaskExecutor("request-"));
+                }
+                else {
+                    System.out.println("The virtual threads are not available in JDK " + Runtime.version()
+                            + ", 21+ is required");
+                }
+            }
+        }
+        finally {
+            benchmark.processingWorkers.shutdownNow();
+        }
+    }
+
+    private void run(final String model, final ExecutorService requestExecutor) throws Exception {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        // warm up the code paths with a fraction of the requests
+        runRequests(requestExecutor, Math.max(1, numRequests / 10));
+
+        System.gc();
+        final long baselineHeapUsed = memory.getHeapMemoryUsage().getUsed();
+        threads.resetPeakThreadCount();
+
+        // sample the heap usage while the requests are running
+        final AtomicLong peakHeapUsed = new AtomicLong(baselineHeapUsed);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeapUsed.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 20, TimeUnit.MILLISECONDS);
+
+        final long startTimeNanos = System.nanoTime();
+        long[] latenciesMs;
+        try {
+            latenciesMs = runRequests(requestExecutor, numRequests);
+        }
+        finally {
+            sampler.shutdownNow();
+            requestExecutor.shutdown();
+        }
+        final double elapsedSeconds = (System.nanoTime() - startTimeNanos) * 1e-9;
+
+        Arrays.sort(latenciesMs);
+        System.out.printf("%-24s throughput: %8.1f req/s, latency p50: %6d ms, p99: %6d ms, "
+                        + "peak threads: %5d, peak heap used over baseline: %6.1f MB%n",
+                model, numRequests / elapsedSeconds,
+                latenciesMs[latenciesMs.length / 2], latenciesMs[(int) (latenciesMs.length * 0.99)],
+                threads.getPeakThreadCount(), (peakHeapUsed.get() - baselineHeapUsed) / (1024.0 * 1024.0));
+    }
+
+    private long[] runRequests(final ExecutorService requestExecutor, final int count) throws Exception {
+        List<Future<Long>> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final long submitTimeNanos = System.nanoTime();
+            requests.add(requestExecutor.submit(() -> {
+                handleRequest();
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitTimeNanos);
+            }));
+        }
+
+        long[] latenciesMs = new long[count];
+        for (int i = 0; i < count; i++) {
+            latenciesMs[i] = requests.get(i).get();
+        }
+        return latenciesMs;
+    }
+
+    private void handleRequest() throws Exception {
+        waitForProcess();
+        processingWorkers.submit(this::parse).get();
+        waitForProcess();
+    }
+
+    private void waitForProcess() throws Exception {
+        if (externalProcess) {
+            Process process = new ProcessBuilder("sleep", String.valueOf(processWaitMs / 1000.0)).start();
+            if (!process.waitFor(processWaitMs + 10_000, TimeUnit.MILLISECONDS)) {
+                process.destroy();
+            }
+        }
+        else {
+            Thread.sleep(processWaitMs);
+        }
+    }
+
+    /**
+     * Keeps the worker busy for the given time, as the parsing would
+     */
+    private byte[] parse() throws Exception {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        final long endTimeNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(parsingCpuMs);
+        byte[] data = new byte[4096];
+        while (System.nanoTime() < endTimeNanos) {
+            data = Arrays.copyOf(digest.digest(data), 4096);
+        }
+        return data;
+    }
+}
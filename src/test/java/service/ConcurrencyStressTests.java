@@ -0,0 +1,371 @@
+package service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import service.controller.TikaServiceConfig;
+import service.model.ServiceResponseContent;
+import tika.DocumentTestUtils;
+import tika.FakeOcrTools;
+import tika.legacy.LegacyPdfProcessorConfig;
+import tika.legacy.LegacyTikaProcessor;
+import tika.model.MetadataKeys;
+import tika.model.TikaProcessingResult;
+import tika.processor.AbstractTikaProcessor;
+import tika.processor.CompositeTikaProcessor;
+import tika.processor.CompositeTikaProcessorConfig;
+import tika.processor.ProcessingResultCache;
+import tika.processor.RequestCoalescer;
+import tika.utils.DocumentBuffer;
+import tika.utils.WarmUpCorpus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+/**
+ * Implements the concurrency stress tests of the processors and the Service Controller: a mix of the documents
+ * is processed by many threads at a time and the results are checked against the ones of processing each of
+ * the documents alone, with the throughput recorded for the increasing number of threads.
+ *
+ * The mix includes the scanned document, processed with the fake ImageMagick and Tesseract (see FakeOcrTools),
+ * and the requests go through the results cache and the coalescing of the identical documents, so that these
+ * paths are run concurrently as well. The throughput test is only run by the stressTest task.
+ */
+@SpringBootTest(classes = TikaServiceApplication.class)
+@AutoConfigureMockMvc
+@DirtiesContext
+@ContextConfiguration(classes = {TikaServiceConfig.class, LegacyPdfProcessorConfig.class, CompositeTikaProcessorConfig.class})
+public class ConcurrencyStressTests {
+
+    // the number of times each of the threads processes the whole mix of the documents
+    private static final int NUM_ROUNDS = 3;
+
+    private static final int MAX_THREADS = Math.min(16, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+
+    private static final String OCR_TEXT = "Fake OCR text of the scanned page";
+
+    private static final int NUM_SCANNED_PAGES = 3;
+
+    // the latency of OCR of the page, so that the identical requests overlap
+    private static final int OCR_LATENCY_MS = 200;
+
+    private static FakeOcrTools tools;
+
+    // the directory where the pages are rendered for the parallel OCR
+    private static Path ocrTmpDirectory;
+
+    private final Logger logger = LogManager.getLogger(ConcurrencyStressTests.class);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private ProcessingResultCache resultCache;
+
+    @Autowired
+    private LegacyTikaProcessor legacyProcessor;
+
+    @Autowired
+    private CompositeTikaProcessor compositeProcessor;
+
+    private final DocumentTestUtils utils = new DocumentTestUtils();
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    // the mix of the text-native documents of the different types, by the name
+    private final Map<String, byte[]> documents = new LinkedHashMap<>();
+
+    @DynamicPropertySource
+    static void configureOcrAndCache(DynamicPropertyRegistry registry) throws IOException {
+        tools = FakeOcrTools.install(Files.createTempDirectory("fake-ocr-"));
+        ocrTmpDirectory = Files.createTempDirectory("fake-ocr-pages-");
+        final String toolsPath = tools.getDirectory().toString();
+
+        registry.add("tika.parsers.legacy-pdf-parser.image-magick.path", () -> toolsPath);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.enabled", () -> true);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.tesseract-path", () -> toolsPath);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.image-magick-path", () -> toolsPath);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.max-pages-per-worker", () -> 1);
+        registry.add("tika.parsers.pdf-ocr-parser.parallel-page-ocr", () -> true);
+        registry.add("processing.request-buffer.tmp-directory", () -> ocrTmpDirectory.toString());
+        registry.add("tika.result-cache.enabled", () -> true);
+        registry.add("tika.request-coalescing.enabled", () -> true);
+    }
+
+    @AfterEach
+    public void resetTools() throws IOException {
+        tools.reset();
+    }
+
+    @AfterAll
+    public static void removeTools() throws IOException {
+        FileUtils.deleteDirectory(tools.getDirectory().toFile());
+        FileUtils.deleteDirectory(ocrTmpDirectory.toFile());
+    }
+
+    @BeforeEach
+    public void loadDocuments() throws Exception {
+        tools.setTesseractText(OCR_TEXT);
+
+        for (String docPath : List.of("generic/pat_id_1.txt", "generic/pat_id_1.docx", "generic/pat_id_1.doc",
+                "generic/pat_id_1.odt", "generic/pat_id_1.rtf")) {
+            documents.put(docPath, utils.getDocumentStream(docPath).readAllBytes());
+        }
+        documents.put("warm-up/text.pdf", WarmUpCorpus.createTextPdf());
+        documents.put("warm-up/document.html", WarmUpCorpus.createHtml());
+        documents.put("warm-up/scanned.pdf", WarmUpCorpus.createScannedPdf(NUM_SCANNED_PAGES));
+    }
+
+    @Test
+    public void testConcurrentProcessingMatchesSingleThreaded() throws Exception {
+        for (AbstractTikaProcessor processor : List.of(compositeProcessor, legacyProcessor)) {
+            Map<String, TikaProcessingResult> expected = new HashMap<>();
+            for (Map.Entry<String, byte[]> document : documents.entrySet()) {
+                expected.put(document.getKey(), processUncached(processor, document.getValue()));
+            }
+
+            runConcurrently(MAX_THREADS, (thread, docName) -> {
+                TikaProcessingResult result = processUncached(processor, documents.get(docName));
+                assertSameResult(expected.get(docName), result, processor.getClass().getSimpleName() + ": " + docName);
+            });
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsMatchSingleThreaded() throws Exception {
+        Map<String, TikaProcessingResult> expected = new HashMap<>();
+        for (Map.Entry<String, byte[]> document : documents.entrySet()) {
+            expected.put(document.getKey(), sendProcessingRequest(document.getValue()));
+        }
+
+        // NB: the identical documents received at the same time can be coalesced, hence processed only once
+        runConcurrently(MAX_THREADS, (thread, docName) ->
+                assertSameResult(expected.get(docName), sendProcessingRequest(documents.get(docName)), docName));
+    }
+
+    @Test
+    public void testConcurrentBulkRequestsMatchSingleThreaded() throws Exception {
+        final List<String> docNames = new ArrayList<>(documents.keySet());
+        Map<String, TikaProcessingResult> expected = new HashMap<>();
+        for (String docName : docNames) {
+            expected.put(docName, sendProcessingRequest(documents.get(docName)));
+        }
+
+        // each of the threads sends the whole mix (in its own order) in a single bulk request
+        runOnThreads(MAX_THREADS / 2, thread -> {
+            List<String> threadDocNames = new ArrayList<>(docNames);
+            Collections.shuffle(threadDocNames, new Random(thread));
+
+            List<TikaProcessingResult> results = sendBulkProcessingRequest(threadDocNames);
+            assertEquals(threadDocNames.size(), results.size());
+            for (int i = 0; i < threadDocNames.size(); i++) {
+                assertEquals(threadDocNames.get(i), results.get(i).getResourceId());
+                assertSameResult(expected.get(threadDocNames.get(i)), results.get(i), "bulk: " + threadDocNames.get(i));
+            }
+        });
+    }
+
+    @Test
+    public void testConcurrentIdenticalOcrRequestsShareProcessing() throws Exception {
+        tools.setTesseractLatencyMs(OCR_LATENCY_MS);
+
+        final byte[] content = WarmUpCorpus.createScannedPdf(NUM_SCANNED_PAGES);
+        final TikaProcessingResult expected = processUncached(compositeProcessor, content);
+        assertTrue(expected.getText().contains(OCR_TEXT));
+        final long numOcrRunsPerDocument = tools.getNumInvocations(FakeOcrTools.TESSERACT);
+
+        final long numCoalescedBefore = requestCoalescer.getNumCoalescedRequests();
+        final long numCacheHitsBefore = resultCache.getStats().getMemoryHits();
+
+        // all the threads send the same document at the same time, for the number of rounds
+        runOnThreads(MAX_THREADS, thread -> {
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                assertSameResult(expected, sendProcessingRequest(content), "scanned document, thread: " + thread);
+            }
+        });
+
+        // the requests wait for the processing already in progress or receive the cached result,
+        // hence OCR is run for far fewer requests than sent
+        final long numRequests = (long) MAX_THREADS * NUM_ROUNDS;
+        final long numSharedResults = (requestCoalescer.getNumCoalescedRequests() - numCoalescedBefore)
+                + (resultCache.getStats().getMemoryHits() - numCacheHitsBefore);
+        assertTrue(numSharedResults > 0);
+        final long numOcrRuns = tools.getNumInvocations(FakeOcrTools.TESSERACT) - numOcrRunsPerDocument;
+        assertTrue(numOcrRuns < numRequests * numOcrRunsPerDocument, "OCR runs: " + numOcrRuns);
+
+        // all the rendered pages are removed
+        try (Stream<Path> files = Files.list(ocrTmpDirectory)) {
+            assertEquals(0, files.filter(file -> file.getFileName().toString().startsWith("tika-ocr-page-")).count());
+        }
+    }
+
+    @Test
+    @Tag("stress")
+    public void testThroughputScaling() throws Exception {
+        // warm up the processing paths, so that the first level does not include the class loading and the compilation
+        runConcurrently(MAX_THREADS, (thread, docName) -> processUncached(compositeProcessor, documents.get(docName)));
+
+        logger.info(String.format("%-8s %12s %12s", "threads", "docs/s", "scaling"));
+        double singleThreadThroughput = 0;
+        for (int numThreads = 1; numThreads <= MAX_THREADS; numThreads *= 2) {
+            final long startTimeNanos = System.nanoTime();
+            runConcurrently(numThreads, (thread, docName) -> {
+                TikaProcessingResult result = processUncached(compositeProcessor, documents.get(docName));
+                assertTrue(result.getSuccess(), docName);
+            });
+            final double elapsedSeconds = (System.nanoTime() - startTimeNanos) * 1e-9;
+
+            // the scaling is the throughput relative to the single thread (ideally equal to the number of threads)
+            final double throughput = numThreads * NUM_ROUNDS * documents.size() / elapsedSeconds;
+            if (numThreads == 1) {
+                singleThreadThroughput = throughput;
+            }
+            logger.info(String.format("%-8d %12.1f %12.2f", numThreads, throughput, throughput / singleThreadThroughput));
+        }
+    }
+
+    private interface DocumentTask {
+        void run(int thread, String docName) throws Exception;
+    }
+
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Runs the task over the mix of the documents on each of the threads, starting all of them at the same time,
+     * each in its own order of the documents, for the number of rounds
+     */
+    private void runConcurrently(final int numThreads, final DocumentTask task) throws Exception {
+        final List<String> docNames = new ArrayList<>(documents.keySet());
+        runOnThreads(numThreads, thread -> {
+            List<String> threadDocNames = new ArrayList<>(docNames);
+            Random random = new Random(thread);
+            for (int round = 0; round < NUM_ROUNDS; round++) {
+                Collections.shuffle(threadDocNames, random);
+                for (String docName : threadDocNames) {
+                    task.run(thread, docName);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the task on each of the threads, starting all of them at the same time
+     */
+    private void runOnThreads(final int numThreads, final ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                final int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get(10, TimeUnit.MINUTES);
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof AssertionError) {
+                        throw (AssertionError) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static TikaProcessingResult processUncached(AbstractTikaProcessor processor, byte[] content) throws Exception {
+        try (DocumentBuffer document = DocumentBuffer.fromStream(new ByteArrayInputStream(content), Long.MAX_VALUE, null)) {
+            return processor.processUncached(document);
+        }
+    }
+
+    private TikaProcessingResult sendProcessingRequest(byte[] content) throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/api/process")
+                .content(content))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn();
+
+        return mapper.readValue(result.getResponse().getContentAsString(), ServiceResponseContent.class).getResult();
+    }
+
+    private List<TikaProcessingResult> sendBulkProcessingRequest(List<String> docNames) throws Exception {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        for (String docName : docNames) {
+            parts.add("file", new ByteArrayResource(documents.get(docName)) {
+                @Override
+                public String getFilename() {
+                    return docName;
+                }
+            });
+        }
+
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        new FormHttpMessageConverter().write(parts, MediaType.MULTIPART_FORM_DATA, message);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/api/process_bulk")
+                .contentType(message.getHeaders().getContentType())
+                .content(message.getBodyAsBytes()))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn();
+
+        return mapper.readValue(result.getResponse().getContentAsString(), ServiceResponseContent.class).getResults();
+    }
+
+    private static void assertSameResult(TikaProcessingResult expected, TikaProcessingResult actual, String message) {
+        assertEquals(expected.getSuccess(), actual.getSuccess(), message);
+        assertEquals(expected.getText(), actual.getText(), message);
+        assertEquals(getContentType(expected), getContentType(actual), message);
+    }
+
+    private static Object getContentType(TikaProcessingResult result) {
+        return result.getMetadata() != null ? result.getMetadata().get(MetadataKeys.CONTENT_TYPE) : null;
+    }
+}
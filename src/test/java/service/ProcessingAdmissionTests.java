@@ -0,0 +1,179 @@
+package service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import service.controller.ProcessingAdmissionControl;
+import service.controller.TikaServiceConfig;
+import service.model.ServiceResponseContent;
+import tika.legacy.LegacyPdfProcessorConfig;
+import tika.model.TikaProcessingResult;
+import tika.processor.CompositeTikaProcessorConfig;
+import tika.processor.ProcessingCostEstimate;
+import tika.processor.ProcessingLane;
+import tika.utils.WarmUpCorpus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+/**
+ * Implements the tests of the admission of the documents against the budget of the pages under OCR
+ */
+@SpringBootTest(classes = TikaServiceApplication.class)
+@AutoConfigureMockMvc
+@DirtiesContext
+@ContextConfiguration(classes = {TikaServiceConfig.class, LegacyPdfProcessorConfig.class, CompositeTikaProcessorConfig.class})
+public class ProcessingAdmissionTests {
+
+    private static final int OCR_PAGES_BUDGET = 2;
+
+    private static final int MAX_DOCUMENT_OCR_PAGES = 3;
+
+    private static final int MAX_WAIT_SECONDS = 1;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProcessingAdmissionControl admissionControl;
+
+    @DynamicPropertySource
+    static void configureAdmission(DynamicPropertyRegistry registry) {
+        registry.add("processing.admission.enabled", () -> true);
+        registry.add("processing.admission.ocr-pages-budget", () -> OCR_PAGES_BUDGET);
+        registry.add("processing.admission.max-document-ocr-pages", () -> MAX_DOCUMENT_OCR_PAGES);
+        registry.add("processing.admission.max-wait-seconds", () -> MAX_WAIT_SECONDS);
+    }
+
+    private MvcResult sendProcessingRequest(final byte[] content, final HttpStatus expectedStatus) throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.post("/api/process")
+                .content(content))
+                .andExpect(status().is(expectedStatus.value()))
+                .andReturn();
+    }
+
+    @Test
+    public void testRejectScannedPdfOverDocumentLimit() throws Exception {
+        // the scanned document needs OCR on each of its pages, hence its cost alone is over the limit
+        sendProcessingRequest(WarmUpCorpus.createScannedPdf(MAX_DOCUMENT_OCR_PAGES + 1), HttpStatus.PAYLOAD_TOO_LARGE);
+        assertEquals(OCR_PAGES_BUDGET, admissionControl.getAvailableBudget());
+    }
+
+    @Test
+    public void testScannedPdfWaitsForBudget() throws Exception {
+        final byte[] content = WarmUpCorpus.createScannedPdf();
+
+        // take the whole budget, as if the other documents were under OCR
+        ProcessingAdmissionControl.Admission admission = admissionControl.admit(ProcessingCostEstimate.builder()
+                .lane(ProcessingLane.OCR)
+                .cost(OCR_PAGES_BUDGET)
+                .build());
+        try {
+            final long startTimeNanos = System.nanoTime();
+            MvcResult result = sendProcessingRequest(content, HttpStatus.TOO_MANY_REQUESTS);
+
+            // the document has been waiting for the budget before being rejected
+            assertTrue(System.nanoTime() - startTimeNanos >= TimeUnit.SECONDS.toNanos(MAX_WAIT_SECONDS));
+            assertNotNull(result.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+        }
+        finally {
+            admission.close();
+        }
+
+        // once the budget is released, the document is admitted and returns its cost when done
+        sendProcessingRequest(content, HttpStatus.OK);
+        assertEquals(OCR_PAGES_BUDGET, admissionControl.getAvailableBudget());
+    }
+
+    @Test
+    public void testTextPdfBypassesExhaustedBudget() throws Exception {
+        ProcessingAdmissionControl.Admission admission = admissionControl.admit(ProcessingCostEstimate.builder()
+                .lane(ProcessingLane.OCR)
+                .cost(OCR_PAGES_BUDGET)
+                .build());
+        try {
+            // the text-native documents have no cost, hence do not wait for the budget
+            sendProcessingRequest(WarmUpCorpus.createTextPdf(), HttpStatus.OK);
+        }
+        finally {
+            admission.close();
+        }
+    }
+
+    @Test
+    public void testBulkScannedPdfWaitsForBudget() throws Exception {
+        ProcessingAdmissionControl.Admission admission = admissionControl.admit(ProcessingCostEstimate.builder()
+                .lane(ProcessingLane.OCR)
+                .cost(OCR_PAGES_BUDGET)
+                .build());
+        List<TikaProcessingResult> results;
+        try {
+            results = sendBulkProcessingRequest(Map.of(
+                    "scanned.pdf", WarmUpCorpus.createScannedPdf(),
+                    "text.pdf", WarmUpCorpus.createTextPdf()));
+        }
+        finally {
+            admission.close();
+        }
+
+        // the documents from the bulk requests are admitted against the same budget, only the one needing OCR fails
+        assertEquals(2, results.size());
+        for (TikaProcessingResult result : results) {
+            if (result.getResourceId().equals("scanned.pdf")) {
+                assertFalse(result.getSuccess());
+                assertTrue(result.getError().contains("OCR budget is exhausted"));
+            }
+            else {
+                assertTrue(result.getSuccess());
+            }
+        }
+        assertEquals(OCR_PAGES_BUDGET, admissionControl.getAvailableBudget());
+    }
+
+    private List<TikaProcessingResult> sendBulkProcessingRequest(Map<String, byte[]> documents) throws Exception {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        documents.forEach((docName, content) -> parts.add("file", new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return docName;
+            }
+        }));
+
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        new FormHttpMessageConverter().write(parts, MediaType.MULTIPART_FORM_DATA, message);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/api/process_bulk")
+                .contentType(message.getHeaders().getContentType())
+                .content(message.getBodyAsBytes()))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn();
+
+        return new ObjectMapper().findAndRegisterModules()
+                .readValue(result.getResponse().getContentAsString(), ServiceResponseContent.class).getResults();
+    }
+}
@@ -0,0 +1,157 @@
+package service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import service.controller.ProcessingJobManager;
+import service.controller.TikaServiceConfig;
+import tika.legacy.LegacyPdfProcessorConfig;
+import tika.processor.CompositeTikaProcessorConfig;
+import tika.utils.WarmUpCorpus;
+
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Implements the tests of the asynchronous document processing jobs: the submission of the documents,
+ * polling for their progress, fetching the results and the removal of the expired jobs
+ */
+@SpringBootTest(classes = TikaServiceApplication.class)
+@AutoConfigureMockMvc
+@DirtiesContext
+@ContextConfiguration(classes = {TikaServiceConfig.class, LegacyPdfProcessorConfig.class, CompositeTikaProcessorConfig.class})
+public class ProcessingJobsTests {
+
+    private static final String JOBS_ENDPOINT_URL = "/api/jobs";
+
+    private static final long JOB_TIMEOUT_MILLIS = 60_000;
+
+    private static final Set<String> IN_PROGRESS_STATUSES = Set.of("QUEUED", "RUNNING");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProcessingJobManager jobManager;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private JsonNode perform(RequestBuilder request, HttpStatus expectedStatus) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        assertEquals(expectedStatus.value(), result.getResponse().getStatus(), result.getResponse().getContentAsString());
+        return mapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private String submitJob(RequestBuilder request) throws Exception {
+        JsonNode job = perform(request, HttpStatus.ACCEPTED).get("job");
+        assertNotNull(job);
+        assertTrue(IN_PROGRESS_STATUSES.contains(job.get("status").asText())
+                || "COMPLETED".equals(job.get("status").asText()));
+        return job.get("job_id").asText();
+    }
+
+    /**
+     * Polls the status of the job until it completes, checking the reported progress on the way
+     */
+    private JsonNode waitForJob(String jobId) throws Exception {
+        final long deadlineMillis = System.currentTimeMillis() + JOB_TIMEOUT_MILLIS;
+        while (true) {
+            JsonNode job = perform(MockMvcRequestBuilders.get(JOBS_ENDPOINT_URL + "/" + jobId)
+                    .accept(MediaType.APPLICATION_JSON), HttpStatus.OK).get("job");
+            assertEquals(jobId, job.get("job_id").asText());
+
+            final String status = job.get("status").asText();
+            if ("COMPLETED".equals(status)) {
+                return job;
+            }
+            assertTrue(IN_PROGRESS_STATUSES.contains(status), "unexpected job status: " + status);
+            assertTrue(job.get("pages_done").asInt() <= Math.max(job.get("pages_total").asInt(), 0));
+
+            // the result is not available until the job completes
+            perform(MockMvcRequestBuilders.get(JOBS_ENDPOINT_URL + "/" + jobId + "/result")
+                    .accept(MediaType.APPLICATION_JSON), HttpStatus.ACCEPTED);
+
+            assertTrue(System.currentTimeMillis() < deadlineMillis, "timed out waiting for the job: " + jobId);
+            Thread.sleep(50);
+        }
+    }
+
+    private void assertJobCompleted(String jobId) throws Exception {
+        JsonNode job = waitForJob(jobId);
+        assertTrue(job.get("pages_total").asInt() >= 1);
+        assertEquals(job.get("pages_total").asInt(), job.get("pages_done").asInt());
+        assertTrue(job.has("completed_at"));
+
+        JsonNode result = perform(MockMvcRequestBuilders.get(JOBS_ENDPOINT_URL + "/" + jobId + "/result")
+                .accept(MediaType.APPLICATION_JSON), HttpStatus.OK).get("result");
+        assertTrue(result.get("success").asBoolean());
+        assertTrue(result.get("text").asText().contains(WarmUpCorpus.SAMPLE_TEXT[1]));
+    }
+
+    @Test
+    public void testSubmitJobAsStream() throws Exception {
+        final String jobId = submitJob(MockMvcRequestBuilders.post(JOBS_ENDPOINT_URL)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(WarmUpCorpus.createTextPdf()));
+
+        assertJobCompleted(jobId);
+    }
+
+    @Test
+    public void testSubmitJobAsJson() throws Exception {
+        ObjectNode request = mapper.createObjectNode();
+        request.putObject("document").put("content", Base64.getEncoder().encodeToString(WarmUpCorpus.createTextPdf()));
+
+        final String jobId = submitJob(MockMvcRequestBuilders.post(JOBS_ENDPOINT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(request)));
+
+        assertJobCompleted(jobId);
+    }
+
+    @Test
+    public void testExpiredJobRemoved() throws Exception {
+        final String jobId = submitJob(MockMvcRequestBuilders.post(JOBS_ENDPOINT_URL)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(WarmUpCorpus.createTextPdf()));
+        waitForJob(jobId);
+
+        // the job completed before the expiry time, i.e. its time-to-live has passed
+        jobManager.removeJobsCompletedBefore(Instant.now().plusSeconds(1));
+
+        perform(MockMvcRequestBuilders.get(JOBS_ENDPOINT_URL + "/" + jobId)
+                .accept(MediaType.APPLICATION_JSON), HttpStatus.NOT_FOUND);
+        perform(MockMvcRequestBuilders.get(JOBS_ENDPOINT_URL + "/" + jobId + "/result")
+                .accept(MediaType.APPLICATION_JSON), HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void testJobNotExpiredBeforeTtl() throws Exception {
+        final String jobId = submitJob(MockMvcRequestBuilders.post(JOBS_ENDPOINT_URL)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(WarmUpCorpus.createTextPdf()));
+        waitForJob(jobId);
+
+        // the job completed after the expiry time, hence is kept
+        jobManager.removeJobsCompletedBefore(Instant.now().minusSeconds(60));
+
+        perform(MockMvcRequestBuilders.get(JOBS_ENDPOINT_URL + "/" + jobId + "/result")
+                .accept(MediaType.APPLICATION_JSON), HttpStatus.OK);
+    }
+}
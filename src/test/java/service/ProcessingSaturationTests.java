@@ -0,0 +1,243 @@
+package service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import service.controller.DocumentProcessingExecutor;
+import service.controller.TikaServiceConfig;
+import service.model.ServiceResponseContent;
+import tika.legacy.LegacyPdfProcessorConfig;
+import tika.model.TikaProcessingResult;
+import tika.processor.CompositeTikaProcessorConfig;
+import tika.processor.ProcessingLane;
+import tika.utils.DocumentBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+/**
+ * Implements the tests of the processing stage under saturation: the rejection of the documents when
+ * the queues are full and the timeout of the documents which are not processed in time
+ */
+@SpringBootTest(classes = TikaServiceApplication.class)
+@AutoConfigureMockMvc
+@DirtiesContext
+@ContextConfiguration(classes = {TikaServiceConfig.class, LegacyPdfProcessorConfig.class, CompositeTikaProcessorConfig.class})
+public class ProcessingSaturationTests {
+
+    private static final int MIN_RETRY_AFTER_SECONDS = 5;
+
+    private static final int DOCUMENT_TIMEOUT_SECONDS = 1;
+
+    private static final int NUM_BULK_DOCUMENTS = 4;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DocumentProcessingExecutor processingExecutor;
+
+    @DynamicPropertySource
+    static void configureExecutor(DynamicPropertyRegistry registry) {
+        // a single worker and a single place in the queue of each of the lanes
+        registry.add("processing.executor.lanes-enabled", () -> true);
+        registry.add("processing.executor.num-workers", () -> 1);
+        registry.add("processing.executor.queue-capacity", () -> 1);
+        registry.add("processing.executor.text-lane.num-workers", () -> 1);
+        registry.add("processing.executor.text-lane.queue-capacity", () -> 1);
+        registry.add("processing.executor.min-retry-after-seconds", () -> MIN_RETRY_AFTER_SECONDS);
+        registry.add("processing.executor.document-timeout-seconds", () -> DOCUMENT_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Occupies the workers (and optionally the queues) of all the lanes until released
+     */
+    private class LanesBlocker implements AutoCloseable {
+        final CountDownLatch released = new CountDownLatch(1);
+        final List<Future<Object>> tasks = new ArrayList<>();
+
+        LanesBlocker(boolean fillQueues) throws IOException {
+            for (ProcessingLane lane : ProcessingLane.values()) {
+                final int numTasks = fillQueues ? 2 : 1;
+                for (int i = 0; i < numTasks; i++) {
+                    try (DocumentBuffer document = createDocument()) {
+                        tasks.add(processingExecutor.submit(document, lane, () -> {
+                            released.await();
+                            return null;
+                        }));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws Exception {
+            released.countDown();
+            for (Future<Object> task : tasks) {
+                task.get(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static DocumentBuffer createDocument() throws IOException {
+        return DocumentBuffer.fromStream(new ByteArrayInputStream("Sample text".getBytes(StandardCharsets.UTF_8)), 1024, null);
+    }
+
+    private MvcResult sendProcessingRequest(final HttpStatus expectedStatus) throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.post("/api/process")
+                .content("Sample text document".getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().is(expectedStatus.value()))
+                .andReturn();
+    }
+
+    @Test
+    public void testFullLaneRejectedWithRetryAfter() throws Exception {
+        try (LanesBlocker ignored = new LanesBlocker(true)) {
+            // the workers are busy and the queues are full, hence the document is rejected right away
+            MvcResult result = sendProcessingRequest(HttpStatus.TOO_MANY_REQUESTS);
+
+            final String retryAfter = result.getResponse().getHeader(HttpHeaders.RETRY_AFTER);
+            assertNotNull(retryAfter);
+            assertTrue(Integer.parseInt(retryAfter) >= MIN_RETRY_AFTER_SECONDS);
+        }
+
+        // once the lanes are released, the documents are processed again
+        sendProcessingRequest(HttpStatus.OK);
+    }
+
+    private List<TikaProcessingResult> sendBulkProcessingRequest(int numDocuments) throws Exception {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        for (int i = 0; i < numDocuments; i++) {
+            final String docName = "document-" + i + ".txt";
+            parts.add("file", new ByteArrayResource(("Sample text document " + i).getBytes(StandardCharsets.UTF_8)) {
+                @Override
+                public String getFilename() {
+                    return docName;
+                }
+            });
+        }
+
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        new FormHttpMessageConverter().write(parts, MediaType.MULTIPART_FORM_DATA, message);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/api/process_bulk")
+                .contentType(message.getHeaders().getContentType())
+                .content(message.getBodyAsBytes()))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn();
+
+        return new ObjectMapper().findAndRegisterModules()
+                .readValue(result.getResponse().getContentAsString(), ServiceResponseContent.class).getResults();
+    }
+
+    @Test
+    public void testBulkDocumentsWaitForFullLane() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<TikaProcessingResult>> results;
+            try (LanesBlocker ignored = new LanesBlocker(true)) {
+                // the workers are busy and the queues are full, hence the documents wait for room instead of failing
+                results = executor.submit(() -> sendBulkProcessingRequest(NUM_BULK_DOCUMENTS));
+                Thread.sleep(500);
+                assertFalse(results.isDone());
+            }
+
+            // once the lanes are released, all the documents are processed
+            assertEquals(NUM_BULK_DOCUMENTS, results.get(30, TimeUnit.SECONDS).size());
+            for (TikaProcessingResult result : results.get()) {
+                assertTrue(result.getSuccess(), result.getError());
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testQueuedDocumentTimeout() throws Exception {
+        try (LanesBlocker ignored = new LanesBlocker(false)) {
+            // the document waits in the queue behind the busy worker for longer than the timeout
+            final long startTimeNanos = System.nanoTime();
+            sendProcessingRequest(HttpStatus.GATEWAY_TIMEOUT);
+            assertTrue(System.nanoTime() - startTimeNanos >= TimeUnit.SECONDS.toNanos(DOCUMENT_TIMEOUT_SECONDS));
+        }
+    }
+
+    @Test
+    public void testTimeoutInterruptsProcessing() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        try (DocumentBuffer document = createDocument()) {
+            assertThrows(DocumentProcessingExecutor.DocumentTimeoutException.class,
+                    () -> processingExecutor.execute(document, ProcessingLane.OCR, () -> {
+                        try {
+                            Thread.sleep(TimeUnit.SECONDS.toMillis(10L * DOCUMENT_TIMEOUT_SECONDS));
+                        }
+                        catch (InterruptedException e) {
+                            interrupted.countDown();
+                        }
+                        return null;
+                    }));
+        }
+
+        // the processing is cancelled, i.e. its worker is interrupted
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTimeoutReleasesQueuedDocument() throws Exception {
+        final Path tmpDirectory = Files.createTempDirectory("tika-saturation-");
+        try (LanesBlocker ignored = new LanesBlocker(false)) {
+            // the document spilled to a file, removed once all its users release it
+            DocumentBuffer document = DocumentBuffer.fromStream(
+                    new ByteArrayInputStream("Sample text".getBytes(StandardCharsets.UTF_8)), 0, tmpDirectory);
+            try {
+                assertThrows(DocumentProcessingExecutor.DocumentTimeoutException.class,
+                        () -> processingExecutor.execute(document, ProcessingLane.OCR, () -> null));
+            }
+            finally {
+                document.close();
+            }
+
+            // the task cancelled while still queued never runs, yet its reference to the document is released
+            try (Stream<Path> files = Files.list(tmpDirectory)) {
+                assertEquals(0, files.count());
+            }
+        }
+        finally {
+            Files.deleteIfExists(tmpDirectory);
+        }
+    }
+}
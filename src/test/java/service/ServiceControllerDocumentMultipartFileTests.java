@@ -2,24 +2,39 @@ package service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import service.controller.TikaServiceConfig;
+import service.model.BulkProcessingSummary;
 import service.model.ServiceResponseContent;
 import tika.legacy.LegacyPdfProcessorConfig;
 import tika.model.TikaProcessingResult;
 import tika.processor.CompositeTikaProcessorConfig;
+import tika.processor.StageTimings;
 import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -62,4 +77,91 @@ public class ServiceControllerDocumentMultipartFileTests extends ServiceControll
         return mapper.readValue(result.getResponse().getContentAsString(),
                 ServiceResponseContent.class).getResult();
     }
+
+    @Test
+    public void testBulkProcessingReturnsOrderedResults() throws Exception {
+        final String[] docPaths = {"generic/pat_id_1.docx", "generic/pat_id_1.txt", "generic/pat_id_1.odt"};
+
+        MvcResult result = mockMvc.perform(createBulkRequest("/api/process_bulk", docPaths))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn();
+
+        // parse content
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+
+        List<TikaProcessingResult> results = mapper.readValue(result.getResponse().getContentAsString(),
+                ServiceResponseContent.class).getResults();
+
+        assertEquals(docPaths.length, results.size());
+        for (int i = 0; i < docPaths.length; i++) {
+            assertEquals(docPaths[i], results.get(i).getResourceId());
+            assertTrue(results.get(i).getSuccess());
+        }
+    }
+
+    @Test
+    public void testStreamedBulkProcessingReturnsAllResultsAndSummary() throws Exception {
+        final String[] docPaths = {"generic/pat_id_1.docx", "generic/pat_id_1.txt", "generic/pat_id_1.odt"};
+
+        MvcResult result = mockMvc.perform(createBulkRequest("/api/process_bulk_stream", docPaths))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().is(HttpStatus.OK.value()));
+
+        // parse content, one record per line
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+
+        String[] lines = result.getResponse().getContentAsString().strip().split("\n");
+        assertEquals(docPaths.length + 1, lines.length);
+
+        Set<String> resourceIds = new HashSet<>();
+        long maxDocumentProcessingTimeMs = 0;
+        for (int i = 0; i < docPaths.length; i++) {
+            TikaProcessingResult documentResult = mapper.readValue(lines[i], ServiceResponseContent.class).getResult();
+            assertTrue(documentResult.getSuccess());
+            resourceIds.add(documentResult.getResourceId());
+
+            // the buffering of the first document may have started before the streaming of the results
+            long bufferingTimeMs = documentResult.getStageTimingsMs() != null
+                    ? documentResult.getStageTimingsMs().getOrDefault(StageTimings.BUFFERING, 0L) : 0L;
+            maxDocumentProcessingTimeMs = Math.max(maxDocumentProcessingTimeMs,
+                    documentResult.getProcessingElapsedTime() - bufferingTimeMs);
+        }
+        assertEquals(Set.of(docPaths), resourceIds);
+
+        BulkProcessingSummary summary = mapper.readValue(lines[docPaths.length], ServiceResponseContent.class).getSummary();
+        assertEquals(docPaths.length, summary.getNumDocuments());
+        assertEquals(docPaths.length, summary.getNumSucceeded());
+
+        // the total elapsed time is reported in milliseconds, as are the times of the documents
+        assertTrue(summary.getProcessingElapsedTime() >= maxDocumentProcessingTimeMs);
+        assertTrue(summary.getProcessingElapsedTime() > 0);
+    }
+
+    /**
+     * The bulk endpoints read the files directly from the request, hence the multipart content is encoded here
+     * (instead of passing the files to the mock request)
+     */
+    private MockHttpServletRequestBuilder createBulkRequest(final String url, final String[] docPaths) throws Exception {
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        for (String docPath : docPaths) {
+            byte[] content = utils.getDocumentStream(docPath).readAllBytes();
+            parts.add("file", new ByteArrayResource(content) {
+                @Override
+                public String getFilename() {
+                    return docPath;
+                }
+            });
+        }
+
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        new FormHttpMessageConverter().write(parts, MediaType.MULTIPART_FORM_DATA, message);
+
+        return MockMvcRequestBuilders.post(url)
+                .contentType(message.getHeaders().getContentType())
+                .content(message.getBodyAsBytes());
+    }
 }
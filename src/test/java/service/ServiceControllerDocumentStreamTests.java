@@ -1,7 +1,9 @@
 package service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -15,10 +17,12 @@ import service.model.ServiceResponseContent;
 import tika.legacy.LegacyPdfProcessorConfig;
 import tika.model.TikaProcessingResult;
 import tika.processor.CompositeTikaProcessorConfig;
+import tika.utils.WarmUpCorpus;
 import java.io.InputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -61,4 +65,87 @@ public class ServiceControllerDocumentStreamTests extends ServiceControllerDocum
         return mapper.readValue(result.getResponse().getContentAsString(),
                 ServiceResponseContent.class).getResult();
     }
+
+    @Test
+    public void testEstimateDocumentCost() throws Exception {
+        // the text-native documents are not expected to need OCR, the images are
+        JsonNode textEstimate = sendEstimateRequest("generic/pat_id_1.txt");
+        assertEquals("TEXT", textEstimate.get("lane").asText());
+        assertEquals(0, textEstimate.get("cost").asInt());
+
+        JsonNode imageEstimate = sendEstimateRequest("generic/pat_id_1.png");
+        assertEquals("OCR", imageEstimate.get("lane").asText());
+        assertEquals(1, imageEstimate.get("cost").asInt());
+    }
+
+    @Test
+    public void testEstimatePdfDocumentCost() throws Exception {
+        // the PDFs without the text layer need OCR on each of their pages, the ones with the text layer do not
+        JsonNode scannedEstimate = sendEstimateRequest(WarmUpCorpus.createScannedPdf());
+        assertEquals("OCR", scannedEstimate.get("lane").asText());
+        assertEquals(scannedEstimate.get("page_count").asInt(), scannedEstimate.get("cost").asInt());
+        assertTrue(scannedEstimate.get("cost").asInt() > 0);
+
+        JsonNode textEstimate = sendEstimateRequest(WarmUpCorpus.createTextPdf());
+        assertEquals("TEXT", textEstimate.get("lane").asText());
+        assertEquals(0, textEstimate.get("cost").asInt());
+        assertTrue(textEstimate.get("text_layer_length").asLong() > 0);
+    }
+
+    @Test
+    public void testProcessPdfDocumentsInTheirLanes() throws Exception {
+        long textLaneCompleted = getLaneCompleted("text");
+        long ocrLaneCompleted = getLaneCompleted("ocr");
+
+        sendProcessingRequest(WarmUpCorpus.createTextPdf());
+        assertEquals(textLaneCompleted + 1, getLaneCompleted("text"));
+        assertEquals(ocrLaneCompleted, getLaneCompleted("ocr"));
+
+        sendProcessingRequest(WarmUpCorpus.createScannedPdf());
+        assertEquals(textLaneCompleted + 1, getLaneCompleted("text"));
+        assertEquals(ocrLaneCompleted + 1, getLaneCompleted("ocr"));
+    }
+
+    @Test
+    public void testGetProcessingMetrics() throws Exception {
+        sendProcessingRequest("generic/pat_id_1.txt", HttpStatus.OK);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/metrics"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn();
+
+        JsonNode metrics = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+        assertTrue(metrics.get("series").size() > 0);
+        assertTrue(metrics.get("buffering").get("count").asLong() > 0);
+        assertNotNull(metrics.get("jvm").get("heap_used_mb"));
+    }
+
+    private JsonNode sendEstimateRequest(final String docPath) throws Exception {
+        return sendEstimateRequest(utils.getDocumentStream(docPath).readAllBytes());
+    }
+
+    private JsonNode sendEstimateRequest(final byte[] content) throws Exception {
+        String ESTIMATE_ENDPOINT_URL = "/api/estimate";
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post(ESTIMATE_ENDPOINT_URL)
+                .content(content))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn();
+
+        return new ObjectMapper().readTree(result.getResponse().getContentAsString()).get("estimate");
+    }
+
+    private void sendProcessingRequest(final byte[] content) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/process")
+                .content(content))
+                .andExpect(status().is(HttpStatus.OK.value()));
+    }
+
+    private long getLaneCompleted(final String lane) throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/queue"))
+                .andExpect(status().is(HttpStatus.OK.value()))
+                .andReturn();
+
+        return new ObjectMapper().readTree(result.getResponse().getContentAsString())
+                .get("lanes").get(lane).get("completed").asLong();
+    }
 }
@@ -1,5 +1,6 @@
 package service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,7 +17,10 @@ import service.model.ServiceInformation;
 import tika.legacy.LegacyPdfProcessorConfig;
 import tika.processor.CompositeTikaProcessorConfig;
 
+import java.util.UUID;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 /**
@@ -54,4 +58,112 @@ public class ServiceControllerTests  {
         // check example content
         assertEquals(response.getServiceConfig().getAppVersion(), serviceInformation.getServiceConfig().getAppVersion());
     }
+
+    @Test
+    public void testGetStartupTimings() throws Exception {
+        String INFO_ENDPOINT_URL = "/api/info";
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get(INFO_ENDPOINT_URL)
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+
+        // check response status
+        int status = result.getResponse().getStatus();
+        assertEquals(HttpStatus.OK.value(), status);
+
+        // the time taken by the initialization of both the processors is reported
+        JsonNode timings = new ObjectMapper().readTree(result.getResponse().getContentAsString()).get("startup_timings_ms");
+        assertTrue(timings.has("legacy_processor"));
+        assertTrue(timings.has("composite_processor"));
+    }
+
+    @Test
+    public void testGetReadiness() throws Exception {
+        String READY_ENDPOINT_URL = "/api/ready";
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get(READY_ENDPOINT_URL)
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+
+        // the warm-up is disabled in the tests, hence the service is ready straight away
+        int status = result.getResponse().getStatus();
+        assertEquals(HttpStatus.OK.value(), status);
+
+        JsonNode readiness = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+        assertTrue(readiness.get("ready").asBoolean());
+        assertEquals("DISABLED", readiness.get("warm_up_state").asText());
+    }
+
+    @Test
+    public void testGetProcessingQueueInfo() throws Exception {
+        String QUEUE_ENDPOINT_URL = "/api/queue";
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get(QUEUE_ENDPOINT_URL)
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+
+        // check response status
+        int status = result.getResponse().getStatus();
+        assertEquals(HttpStatus.OK.value(), status);
+
+        // parse content
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode response = mapper.readTree(result.getResponse().getContentAsString());
+
+        // check example content
+        TikaServiceConfig serviceConfig = serviceInformation.getServiceConfig();
+        assertEquals(serviceConfig.getExecutorQueueCapacity() + serviceConfig.getExecutorTextLaneQueueCapacity(),
+                response.get("queue_capacity").asInt());
+        assertEquals(0, response.get("queue_depth").asInt());
+
+        // each of the lanes is sized separately
+        assertEquals(serviceConfig.getExecutorQueueCapacity(), response.get("lanes").get("ocr").get("queue_capacity").asInt());
+        assertEquals(serviceConfig.getExecutorTextLaneQueueCapacity(), response.get("lanes").get("text").get("queue_capacity").asInt());
+    }
+
+    @Test
+    public void testResetProcessors() throws Exception {
+        String RESET_ENDPOINT_URL = "/api/admin/reset";
+
+        // the endpoint is not available unless enabled
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .post(RESET_ENDPOINT_URL)
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+        assertEquals(HttpStatus.NOT_FOUND.value(), result.getResponse().getStatus());
+
+        final TikaServiceConfig serviceConfig = serviceInformation.getServiceConfig();
+        serviceConfig.setAdminResetEnabled(true);
+        try {
+            result = mockMvc.perform(MockMvcRequestBuilders
+                    .post(RESET_ENDPOINT_URL)
+                    .accept(MediaType.APPLICATION_JSON))
+                    .andReturn();
+        }
+        finally {
+            serviceConfig.setAdminResetEnabled(false);
+        }
+
+        // check response status
+        int status = result.getResponse().getStatus();
+        assertEquals(HttpStatus.OK.value(), status);
+
+        // the time taken by the re-initialization of both the processors is reported
+        JsonNode timings = new ObjectMapper().readTree(result.getResponse().getContentAsString()).get("reset_timings_ms");
+        assertTrue(timings.has("legacy_processor"));
+        assertTrue(timings.has("composite_processor"));
+    }
+
+    @Test
+    public void testGetUnknownJob() throws Exception {
+        String JOB_ENDPOINT_URL = "/api/jobs/" + UUID.randomUUID();
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                .get(JOB_ENDPOINT_URL)
+                .accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+
+        // check response status
+        int status = result.getResponse().getStatus();
+        assertEquals(HttpStatus.NOT_FOUND.value(), status);
+    }
 }
@@ -1,14 +1,24 @@
 package tika;
 
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ContextConfiguration;
 import tika.legacy.LegacyPdfProcessorConfig;
+import tika.model.TikaProcessingResult;
 import tika.processor.AbstractTikaProcessor;
 import tika.processor.CompositeTikaProcessor;
 import tika.processor.CompositeTikaProcessorConfig;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 
 /**
  * Implements the tests using CompositeTikaProcessor as the documents processor
@@ -36,5 +46,25 @@ public class CompositeTikaProcessorTests extends DocumentProcessorTests {
     public void reset() throws Exception {
         processor.reset();
     }
-}
 
+    @Test
+    public void testResetWhileProcessing() throws Exception {
+        // the documents already being processed complete using the resources they started with
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<TikaProcessingResult>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> processDocument("generic/pat_id_1.docx")));
+            }
+
+            processor.reset();
+
+            for (Future<TikaProcessingResult> result : results) {
+                assertTrue(result.get().getSuccess());
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -4,7 +4,12 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import tika.model.TikaProcessingResult;
 import tika.processor.AbstractTikaProcessor;
+import tika.processor.StageTimings;
+import tika.utils.WarmUpCorpus;
+
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -217,6 +222,30 @@ public abstract class DocumentProcessorTests {
     }
 
 
+    @Test
+    public void testExtractWarmUpCorpusTextNative() throws Exception {
+        // the generated text-native sample documents used for the warm-up shall be parsed as usual
+        AbstractTikaProcessor processor = getProcessor();
+        for (byte[] content : List.of(WarmUpCorpus.createTextPdf(), WarmUpCorpus.createDocx(), WarmUpCorpus.createHtml())) {
+            TikaProcessingResult result = processor.process(new ByteArrayInputStream(content));
+            assertTrue(result.getSuccess());
+            assertTrue(result.getText().contains(WarmUpCorpus.SAMPLE_TEXT[1]));
+        }
+    }
+
+    @Test
+    public void testStageTimingsReported() throws Exception {
+        TikaProcessingResult result = getProcessor().process(new ByteArrayInputStream(WarmUpCorpus.createDocx()));
+        assertTrue(result.getSuccess());
+
+        assertNotNull(result.getStageTimingsMs());
+        assertTrue(result.getStageTimingsMs().containsKey(StageTimings.PARSING));
+        assertTrue(result.getStageTimingsMs().containsKey(StageTimings.METADATA_EXTRACTION));
+        assertTrue(result.getStageTimingsMs().values().stream().mapToLong(Long::longValue).sum()
+                <= result.getProcessingElapsedTime());
+    }
+
+
     //TODO: need to create a proper docx encrypted file
     @Disabled
     @Test
@@ -0,0 +1,232 @@
+package tika;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import tika.legacy.LegacyPdfProcessorConfig;
+import tika.legacy.LegacyTikaProcessor;
+import tika.model.TikaProcessingResult;
+import tika.processor.AbstractTikaProcessor;
+import tika.processor.CompositeTikaProcessor;
+import tika.processor.CompositeTikaProcessorConfig;
+import tika.processor.TesseractWorkerPool;
+import tika.processor.TesseractWorkerPoolConfig;
+import tika.utils.WarmUpCorpus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Implements the tests of the OCR paths of the processors run with the fake ImageMagick and Tesseract
+ * (see FakeOcrTools), with the controlled latency and failures of the tools
+ */
+@SpringBootTest(classes = {LegacyTikaProcessor.class, CompositeTikaProcessor.class, TesseractWorkerPool.class})
+@DirtiesContext
+@ContextConfiguration(classes = {LegacyPdfProcessorConfig.class, CompositeTikaProcessorConfig.class,
+        TesseractWorkerPoolConfig.class})
+public class FakeOcrProcessingTests {
+
+    private static final String OCR_TEXT = "Fake OCR text of the scanned page";
+
+    // the time (s) after which the tools are considered as hanging
+    private static final int TOOLS_TIMEOUT = 2;
+
+    private static final int MAX_OCR_WORKERS = 4;
+
+    // the number of pages passed at once to a Tesseract worker, so that the documents are split into several batches
+    private static final int MAX_PAGES_PER_WORKER = 2;
+
+    private static final Pattern OCR_PAGE_IMAGE_PATTERN = Pattern.compile("tika-ocr-page-(\\d+)-");
+
+    private static FakeOcrTools tools;
+
+    // the directory where the pages are rendered for the parallel OCR
+    private static Path ocrTmpDirectory;
+
+    @Autowired
+    LegacyTikaProcessor legacyProcessor;
+
+    @Autowired
+    CompositeTikaProcessor compositeProcessor;
+
+    @DynamicPropertySource
+    static void configureFakeTools(DynamicPropertyRegistry registry) throws IOException {
+        tools = FakeOcrTools.install(Files.createTempDirectory("fake-ocr-"));
+        ocrTmpDirectory = Files.createTempDirectory("fake-ocr-pages-");
+        final String toolsPath = tools.getDirectory().toString();
+
+        registry.add("tika.parsers.legacy-pdf-parser.image-magick.path", () -> toolsPath);
+        registry.add("tika.parsers.legacy-pdf-parser.image-magick.timeout", () -> TOOLS_TIMEOUT);
+        registry.add("tika.parsers.legacy-pdf-parser.tesseract-ocr.timeout", () -> TOOLS_TIMEOUT);
+        registry.add("tika.parsers.tesseract-ocr.timeout", () -> TOOLS_TIMEOUT);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.enabled", () -> true);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.tesseract-path", () -> toolsPath);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.image-magick-path", () -> toolsPath);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.max-workers", () -> MAX_OCR_WORKERS);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.max-pages-per-worker", () -> MAX_PAGES_PER_WORKER);
+        registry.add("tika.parsers.pdf-ocr-parser.parallel-page-ocr", () -> true);
+        registry.add("processing.request-buffer.tmp-directory", () -> ocrTmpDirectory.toString());
+    }
+
+    @AfterEach
+    public void resetTools() throws IOException {
+        tools.reset();
+    }
+
+    @AfterAll
+    public static void removeTools() throws IOException {
+        FileUtils.deleteDirectory(tools.getDirectory().toFile());
+        FileUtils.deleteDirectory(ocrTmpDirectory.toFile());
+    }
+
+    private static List<Path> listOcrPageImages() throws IOException {
+        try (Stream<Path> files = Files.list(ocrTmpDirectory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("tika-ocr-page-"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private TikaProcessingResult processScannedPdf(AbstractTikaProcessor processor) throws IOException {
+        return processor.process(new ByteArrayInputStream(WarmUpCorpus.createScannedPdf()));
+    }
+
+    @Test
+    public void testLegacyProcessorOcr() throws Exception {
+        tools.setTesseractText(OCR_TEXT);
+
+        TikaProcessingResult result = processScannedPdf(legacyProcessor);
+        assertTrue(result.getSuccess());
+        assertTrue(result.getText().contains(OCR_TEXT));
+
+        assertEquals(1, tools.getNumInvocations(FakeOcrTools.CONVERT));
+        assertEquals(1, tools.getNumInvocations(FakeOcrTools.TESSERACT));
+    }
+
+    @Test
+    public void testCompositeProcessorParallelOcr() throws Exception {
+        tools.setTesseractText(OCR_TEXT);
+
+        // the pages are rendered by PDFBox, hence ImageMagick is only run for the preprocessing of the page
+        // (enabled in the Tesseract OCR configuration) before Tesseract
+        TikaProcessingResult result = processScannedPdf(compositeProcessor);
+        assertTrue(result.getSuccess());
+        assertTrue(result.getText().contains(OCR_TEXT));
+
+        assertEquals(1, tools.getNumInvocations(FakeOcrTools.CONVERT));
+        assertEquals(1, tools.getNumInvocations(FakeOcrTools.TESSERACT));
+    }
+
+    @Test
+    public void testParallelOcrPageOrder() throws Exception {
+        final int numPages = 3 * MAX_PAGES_PER_WORKER;
+        // each page is output as the name of its image, which holds the page number
+        tools.setTesseractEchoImage(true).setTesseractLatencyMs(100);
+
+        TikaProcessingResult result = compositeProcessor.process(new ByteArrayInputStream(WarmUpCorpus.createScannedPdf(numPages)));
+        assertTrue(result.getSuccess());
+
+        // the pages are OCR-ed concurrently in several batches, yet their text is output in the order of the pages
+        List<Integer> outputPages = new ArrayList<>();
+        Matcher matcher = OCR_PAGE_IMAGE_PATTERN.matcher(result.getText());
+        while (matcher.find()) {
+            outputPages.add(Integer.parseInt(matcher.group(1)));
+        }
+        assertEquals(IntStream.rangeClosed(1, numPages).boxed().collect(Collectors.toList()), outputPages);
+        assertTrue(tools.getNumInvocations(FakeOcrTools.TESSERACT) > 1);
+
+        // the rendered pages are stored in the configured directory and removed once processed
+        assertTrue(listOcrPageImages().isEmpty());
+    }
+
+    @Test
+    public void testParallelOcrCleanupOnFailure() throws Exception {
+        // the OCR fails while there are still batches queued for the workers
+        tools.setTesseractExitCode(1).setTesseractLatencyMs(100);
+
+        TikaProcessingResult result = compositeProcessor.process(new ByteArrayInputStream(WarmUpCorpus.createScannedPdf(20)));
+        assertFalse(result.getSuccess());
+
+        // the images of the cancelled batches are removed as well, the ones being processed by the interrupted
+        // workers are removed by them, possibly right after the document has failed
+        final long deadlineMillis = System.currentTimeMillis() + 1000L * TOOLS_TIMEOUT;
+        while (!listOcrPageImages().isEmpty() && System.currentTimeMillis() < deadlineMillis) {
+            Thread.sleep(50);
+        }
+        assertEquals(List.of(), listOcrPageImages());
+    }
+
+    @Test
+    public void testConcurrentOcrThroughput() throws Exception {
+        final long convertLatencyMs = 200;
+        final long tesseractLatencyMs = 300;
+        final int numDocuments = 2 * MAX_OCR_WORKERS;
+        tools.setConvertLatencyMs(convertLatencyMs).setTesseractLatencyMs(tesseractLatencyMs).setTesseractText(OCR_TEXT);
+
+        ExecutorService executor = Executors.newFixedThreadPool(numDocuments);
+        try {
+            final long startTimeMillis = System.currentTimeMillis();
+            List<Future<TikaProcessingResult>> results = new ArrayList<>();
+            for (int i = 0; i < numDocuments; i++) {
+                results.add(executor.submit(() -> processScannedPdf(legacyProcessor)));
+            }
+            for (Future<TikaProcessingResult> result : results) {
+                assertTrue(result.get().getSuccess());
+                assertTrue(result.get().getText().contains(OCR_TEXT));
+            }
+            final long elapsedMillis = System.currentTimeMillis() - startTimeMillis;
+
+            // the documents are processed concurrently (up to the max number of OCR workers at a time),
+            // hence take less than when processed one by one
+            assertTrue(elapsedMillis < numDocuments * (convertLatencyMs + tesseractLatencyMs),
+                    "elapsed: " + elapsedMillis + " ms");
+            assertEquals(numDocuments, tools.getNumInvocations(FakeOcrTools.TESSERACT));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConversionTimeout() throws Exception {
+        tools.setConvertLatencyMs(10_000L * TOOLS_TIMEOUT);
+
+        final long startTimeMillis = System.currentTimeMillis();
+        TikaProcessingResult result = processScannedPdf(legacyProcessor);
+        assertFalse(result.getSuccess());
+
+        // the conversion is abandoned on timeout, not waited for
+        assertTrue(System.currentTimeMillis() - startTimeMillis < 10_000L * TOOLS_TIMEOUT);
+        assertEquals(0, tools.getNumInvocations(FakeOcrTools.TESSERACT));
+    }
+
+    @Test
+    public void testOcrFailure() throws Exception {
+        tools.setTesseractExitCode(1);
+
+        TikaProcessingResult result = processScannedPdf(legacyProcessor);
+        assertFalse(result.getSuccess());
+        assertNotNull(result.getError());
+    }
+}
@@ -0,0 +1,149 @@
+package tika;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+
+/**
+ * The stand-ins for ImageMagick `convert` and `tesseract` (see the scripts in `fake-ocr` test resources) installed
+ * into a directory, to be used as the ImageMagick and Tesseract paths, with the controllable latency, output and
+ * failures, so that the OCR paths can be tested quickly and reproducibly without the actual tools installed.
+ */
+public class FakeOcrTools {
+
+    private static final String RESOURCES_PATH = "/fake-ocr/";
+    private static final String CONFIG_FILE = "fake-ocr.conf";
+    private static final String INVOCATIONS_FILE = "invocations.log";
+    private static final String ARGUMENTS_FILE = "arguments.log";
+
+    public static final String CONVERT = "convert";
+    public static final String TESSERACT = "tesseract";
+
+    private final Path directory;
+    private final Map<String, String> settings = new LinkedHashMap<>();
+
+    private FakeOcrTools(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Installs the tools into the directory, with the default behaviour (no latency, no failures)
+     */
+    public static FakeOcrTools install(Path directory) throws IOException {
+        for (String tool : List.of(CONVERT, TESSERACT)) {
+            Path target = directory.resolve(tool);
+            try (InputStream script = FakeOcrTools.class.getResourceAsStream(RESOURCES_PATH + tool)) {
+                if (script == null) {
+                    throw new IOException("Missing the fake tool: " + tool);
+                }
+                Files.copy(script, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (!target.toFile().setExecutable(true)) {
+                throw new IOException("Cannot make the fake tool executable: " + target);
+            }
+        }
+
+        FakeOcrTools tools = new FakeOcrTools(directory);
+        tools.reset();
+        return tools;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public FakeOcrTools setConvertLatencyMs(long latencyMs) throws IOException {
+        return set("CONVERT_LATENCY_MS", String.valueOf(latencyMs));
+    }
+
+    public FakeOcrTools setConvertExitCode(int exitCode) throws IOException {
+        return set("CONVERT_EXIT_CODE", String.valueOf(exitCode));
+    }
+
+    // the latency of OCR per each page
+    public FakeOcrTools setTesseractLatencyMs(long latencyMs) throws IOException {
+        return set("TESSERACT_LATENCY_MS", String.valueOf(latencyMs));
+    }
+
+    public FakeOcrTools setTesseractExitCode(int exitCode) throws IOException {
+        return set("TESSERACT_EXIT_CODE", String.valueOf(exitCode));
+    }
+
+    // the exit code of the health check (i.e. whether Tesseract is reported as usable)
+    public FakeOcrTools setTesseractVersionExitCode(int exitCode) throws IOException {
+        return set("TESSERACT_VERSION_EXIT_CODE", String.valueOf(exitCode));
+    }
+
+    // whether to output the file name of each page image as its text (e.g. to check the order of the pages)
+    public FakeOcrTools setTesseractEchoImage(boolean echoImage) throws IOException {
+        return set("TESSERACT_ECHO_IMAGE", echoImage ? "1" : "0");
+    }
+
+    // the number of pages output for each image (e.g. of a multi-page TIFF)
+    public FakeOcrTools setTesseractPagesPerImage(int numPages) throws IOException {
+        return set("TESSERACT_PAGES_PER_IMAGE", String.valueOf(numPages));
+    }
+
+    public FakeOcrTools setTesseractText(String text) throws IOException {
+        return set("TESSERACT_TEXT", "'" + text.replace("'", "'\\''") + "'");
+    }
+
+    /**
+     * Restores the default behaviour and clears the recorded invocations
+     */
+    public void reset() throws IOException {
+        settings.clear();
+        writeSettings();
+        Files.deleteIfExists(directory.resolve(INVOCATIONS_FILE));
+        Files.deleteIfExists(directory.resolve(ARGUMENTS_FILE));
+    }
+
+    /**
+     * Returns the number of times the tool was run (not counting the presence and the health checks)
+     */
+    public long getNumInvocations(String tool) throws IOException {
+        Path invocations = directory.resolve(INVOCATIONS_FILE);
+        if (!Files.exists(invocations)) {
+            return 0;
+        }
+        return Files.readAllLines(invocations, StandardCharsets.UTF_8).stream().filter(tool::equals).count();
+    }
+
+    /**
+     * Returns the arguments of each run of the tool (only recorded by `tesseract`, not counting the health checks)
+     */
+    public List<String> getInvocationArguments(String tool) throws IOException {
+        Path arguments = directory.resolve(ARGUMENTS_FILE);
+        if (!Files.exists(arguments)) {
+            return List.of();
+        }
+        return Files.readAllLines(arguments, StandardCharsets.UTF_8).stream()
+                .filter(line -> line.startsWith(tool + " "))
+                .map(line -> line.substring(tool.length() + 1))
+                .collect(Collectors.toList());
+    }
+
+    private FakeOcrTools set(String name, String value) throws IOException {
+        settings.put(name, value);
+        writeSettings();
+        return this;
+    }
+
+    private void writeSettings() throws IOException {
+        // the settings are read by the tools on each run, hence the file is replaced atomically
+        Path tmpFile = directory.resolve(CONFIG_FILE + ".tmp");
+        Files.writeString(tmpFile, settings.entrySet().stream()
+                .map(setting -> setting.getKey() + "=" + setting.getValue() + "\n")
+                .collect(Collectors.joining()), StandardCharsets.UTF_8);
+        Files.move(tmpFile, directory.resolve(CONFIG_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,156 @@
+package tika;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import tika.legacy.LegacyPdfProcessorConfig;
+import tika.model.MetadataKeys;
+import tika.model.TikaProcessingResult;
+import tika.processor.CompositeTikaProcessor;
+import tika.processor.CompositeTikaProcessorConfig;
+import tika.processor.ParallelPdfOcrParser;
+import tika.processor.TesseractWorkerPool;
+import tika.processor.TesseractWorkerPoolConfig;
+import tika.utils.WarmUpCorpus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Implements the tests of the per-page OCR decision of the composite processor, run with the fake
+ * ImageMagick and Tesseract (see FakeOcrTools): only the pages without the text layer are passed to OCR
+ */
+@SpringBootTest(classes = {CompositeTikaProcessor.class, TesseractWorkerPool.class})
+@DirtiesContext
+@ContextConfiguration(classes = {LegacyPdfProcessorConfig.class, CompositeTikaProcessorConfig.class,
+        TesseractWorkerPoolConfig.class})
+public class PerPageOcrDecisionTests {
+
+    private static final String OCR_TEXT = "Fake OCR text of the scanned page";
+
+    private static final String DOCUMENT_AUTHOR = "Document Author";
+
+    private static final String DOCUMENT_DESCRIPTION = "Description from the XMP metadata";
+
+    private static final String XMP_PACKET = "<?xpacket begin=\"\uFEFF\" id=\"W5M0MpCehiHzreSzNTczkc9d\"?>"
+            + "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">"
+            + "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">"
+            + "<rdf:Description rdf:about=\"\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\">"
+            + "<dc:description><rdf:Alt><rdf:li xml:lang=\"x-default\">" + DOCUMENT_DESCRIPTION + "</rdf:li></rdf:Alt></dc:description>"
+            + "</rdf:Description>"
+            + "</rdf:RDF>"
+            + "</x:xmpmeta>"
+            + "<?xpacket end=\"w\"?>";
+
+    private static FakeOcrTools tools;
+
+    @Autowired
+    CompositeTikaProcessor processor;
+
+    @DynamicPropertySource
+    static void configureFakeTools(DynamicPropertyRegistry registry) throws IOException {
+        tools = FakeOcrTools.install(Files.createTempDirectory("fake-ocr-"));
+        final String toolsPath = tools.getDirectory().toString();
+
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.enabled", () -> true);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.tesseract-path", () -> toolsPath);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.image-magick-path", () -> toolsPath);
+        registry.add("tika.parsers.pdf-ocr-parser.per-page-ocr-decision", () -> true);
+    }
+
+    @AfterEach
+    public void resetTools() throws IOException {
+        tools.reset();
+    }
+
+    @AfterAll
+    public static void removeTools() throws IOException {
+        FileUtils.deleteDirectory(tools.getDirectory().toFile());
+    }
+
+    /**
+     * Returns the PDF with the page with the text layer followed by the scanned page (or another text one),
+     * with both the document information and the XMP metadata set
+     */
+    private static byte[] createPdf(boolean withScannedPage) throws IOException {
+        try (PDDocument firstPage = PDDocument.load(WarmUpCorpus.createTextPdf());
+             PDDocument secondPage = PDDocument.load(withScannedPage ? WarmUpCorpus.createScannedPdf() : WarmUpCorpus.createTextPdf());
+             PDDocument document = new PDDocument();
+             ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            document.importPage(firstPage.getPage(0));
+            document.importPage(secondPage.getPage(0));
+
+            PDDocumentInformation info = new PDDocumentInformation();
+            info.setAuthor(DOCUMENT_AUTHOR);
+            info.setKeywords("first, second");
+            document.setDocumentInformation(info);
+
+            PDMetadata xmp = new PDMetadata(document);
+            xmp.importXMPMetadata(XMP_PACKET.getBytes(StandardCharsets.UTF_8));
+            document.getDocumentCatalog().setMetadata(xmp);
+
+            document.save(output);
+            return output.toByteArray();
+        }
+    }
+
+    private static List<String> getParsedBy(TikaProcessingResult result) {
+        return Arrays.asList((String[]) result.getMetadata().get(MetadataKeys.X_TIKA_PARSED_BY));
+    }
+
+    @Test
+    public void testOcrOnlyPagesWithoutText() throws Exception {
+        tools.setTesseractText(OCR_TEXT);
+
+        TikaProcessingResult result = processor.process(new ByteArrayInputStream(createPdf(true)));
+        assertTrue(result.getSuccess());
+
+        // the text layer of the first page is used as is, only the scanned page is passed to OCR
+        assertTrue(result.getText().contains(WarmUpCorpus.SAMPLE_TEXT[1]));
+        assertTrue(result.getText().contains(OCR_TEXT));
+        assertEquals(1, tools.getNumInvocations(FakeOcrTools.TESSERACT));
+
+        assertTrue(getParsedBy(result).contains(ParallelPdfOcrParser.class.getName()));
+        assertEquals(2, result.getMetadata().get(MetadataKeys.PAGE_COUNT));
+    }
+
+    @Test
+    public void testNoOcrOnPagesWithText() throws Exception {
+        TikaProcessingResult result = processor.process(new ByteArrayInputStream(createPdf(false)));
+        assertTrue(result.getSuccess());
+        assertTrue(result.getText().contains(WarmUpCorpus.SAMPLE_TEXT[1]));
+
+        // no OCR applied, hence the parallel OCR parser is not reported
+        assertEquals(0, tools.getNumInvocations(FakeOcrTools.TESSERACT));
+        assertFalse(getParsedBy(result).contains(ParallelPdfOcrParser.class.getName()));
+    }
+
+    @Test
+    public void testDocumentMetadataExtracted() throws Exception {
+        TikaProcessingResult result = processor.process(new ByteArrayInputStream(createPdf(false)));
+        assertTrue(result.getSuccess());
+
+        // both the document information and the XMP metadata are copied
+        assertEquals(DOCUMENT_AUTHOR, result.getMetadata().get(MetadataKeys.CREATOR));
+        assertEquals(DOCUMENT_DESCRIPTION, result.getMetadata().get(MetadataKeys.DESCRIPTION));
+        assertEquals("application/pdf", result.getMetadata().get(MetadataKeys.CONTENT_TYPE));
+    }
+}
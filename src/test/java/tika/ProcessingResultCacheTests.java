@@ -0,0 +1,188 @@
+package tika;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import tika.legacy.LegacyPdfProcessorConfig;
+import tika.model.TikaProcessingResult;
+import tika.processor.CompositeTikaProcessor;
+import tika.processor.CompositeTikaProcessorConfig;
+import tika.processor.ProcessingResultCache;
+import tika.processor.ProcessingResultCacheConfig;
+import tika.utils.DocumentBuffer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Implements the tests of the processing results cache, with both the in-memory and the on-disk tiers enabled
+ */
+@SpringBootTest(classes = {CompositeTikaProcessor.class, ProcessingResultCache.class})
+@DirtiesContext
+@ContextConfiguration(classes = {LegacyPdfProcessorConfig.class, CompositeTikaProcessorConfig.class,
+        ProcessingResultCacheConfig.class})
+public class ProcessingResultCacheTests {
+
+    private static final int MAX_MEMORY_SIZE_MB = 1;
+
+    // the text of the results filling just under a third of the memory tier each (2 bytes per character)
+    private static final int LARGE_TEXT_LENGTH = 160_000;
+
+    private static Path diskDirectory;
+
+    private final DocumentTestUtils utils = new DocumentTestUtils();
+
+    @Autowired
+    ProcessingResultCache cache;
+
+    @Autowired
+    ProcessingResultCacheConfig cacheConfig;
+
+    @Autowired
+    CompositeTikaProcessorConfig compositeProcessorConfig;
+
+    @Autowired
+    CompositeTikaProcessor processor;
+
+    @DynamicPropertySource
+    static void configureCache(DynamicPropertyRegistry registry) throws IOException {
+        diskDirectory = Files.createTempDirectory("tika-result-cache-");
+
+        registry.add("tika.result-cache.enabled", () -> true);
+        registry.add("tika.result-cache.max-memory-size-mb", () -> MAX_MEMORY_SIZE_MB);
+        registry.add("tika.result-cache.disk-directory", () -> diskDirectory.toString());
+    }
+
+    @AfterAll
+    public static void removeDiskDirectory() throws IOException {
+        FileUtils.deleteDirectory(diskDirectory.toFile());
+    }
+
+    private static TikaProcessingResult createResult(String text) {
+        return TikaProcessingResult.builder()
+                .text(text)
+                .metadata(Map.of("Content-Type", "text/plain", "Page-Count", 1))
+                .success(true)
+                .build();
+    }
+
+    private static String createKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Test
+    public void testLruEvictionBySize() {
+        final String text = "a".repeat(LARGE_TEXT_LENGTH);
+        final String first = createKey();
+        final String second = createKey();
+        final String third = createKey();
+        final String fourth = createKey();
+
+        cache.put(first, createResult(text));
+        cache.put(second, createResult(text));
+        cache.put(third, createResult(text));
+
+        // the first entry becomes the most recently used one
+        final long numMemoryHits = cache.getStats().getMemoryHits();
+        assertNotNull(cache.get(first));
+        assertEquals(numMemoryHits + 1, cache.getStats().getMemoryHits());
+
+        // the size is over the limit, hence the least recently used entry is evicted from memory
+        final long numEvictions = cache.getStats().getEvictions();
+        cache.put(fourth, createResult(text));
+        assertTrue(cache.getStats().getEvictions() > numEvictions);
+        assertTrue(cache.getStats().getMemorySizeBytes() <= MAX_MEMORY_SIZE_MB * 1024L * 1024L);
+
+        for (String key : new String[] {first, third, fourth}) {
+            final long numHits = cache.getStats().getMemoryHits();
+            assertNotNull(cache.get(key));
+            assertEquals(numHits + 1, cache.getStats().getMemoryHits());
+        }
+
+        // the evicted entry is only available from disk
+        final long numDiskHits = cache.getStats().getDiskHits();
+        assertEquals(text, cache.get(second).getText());
+        assertEquals(numDiskHits + 1, cache.getStats().getDiskHits());
+    }
+
+    @Test
+    public void testDiskRoundTripWithPromotion() {
+        final String key = createKey();
+        final TikaProcessingResult result = createResult("Cached document text");
+        cache.put(key, result);
+
+        // the cache created again (e.g. after the service restart) reads the results stored on disk
+        ProcessingResultCache restartedCache = new ProcessingResultCache();
+        ReflectionTestUtils.setField(restartedCache, "config", cacheConfig);
+        restartedCache.init();
+        assertTrue(restartedCache.getStats().getDiskSizeBytes() > 0);
+        assertEquals(0, restartedCache.getStats().getMemoryEntries());
+
+        TikaProcessingResult cachedResult = restartedCache.get(key);
+        assertNotNull(cachedResult);
+        assertEquals(result.getText(), cachedResult.getText());
+        assertEquals(result.getMetadata(), cachedResult.getMetadata());
+        assertTrue(cachedResult.getSuccess());
+        assertEquals(1, restartedCache.getStats().getDiskHits());
+
+        // the result read from disk is promoted back to memory
+        assertEquals(1, restartedCache.getStats().getMemoryEntries());
+        assertNotNull(restartedCache.get(key));
+        assertEquals(1, restartedCache.getStats().getMemoryHits());
+        assertEquals(1, restartedCache.getStats().getDiskHits());
+    }
+
+    @Test
+    public void testFailedResultNotCached() {
+        final String key = createKey();
+        cache.put(key, TikaProcessingResult.builder().error("Failed").success(false).build());
+        assertNull(cache.get(key));
+    }
+
+    private TikaProcessingResult processDocument(final String docPath) throws Exception {
+        try (DocumentBuffer document = DocumentBuffer.fromStream(utils.getDocumentStream(docPath), 1024 * 1024, null)) {
+            return processor.process(document);
+        }
+    }
+
+    @Test
+    public void testConfigurationChangeMisses() throws Exception {
+        final String docPath = "generic/pat_id_1.docx";
+        final int ocrDpi = compositeProcessorConfig.getPdfOcrDPI();
+
+        try {
+            assertTrue(processDocument(docPath).getSuccess());
+
+            // the same document processed with the same configuration is served from the cache
+            long numHits = cache.getStats().getMemoryHits();
+            assertTrue(processDocument(docPath).getSuccess());
+            assertEquals(numHits + 1, cache.getStats().getMemoryHits());
+
+            // the changed configuration may affect the content extracted, hence the cached result is not used
+            compositeProcessorConfig.setPdfOcrDPI(ocrDpi + 100);
+            numHits = cache.getStats().getMemoryHits();
+            final long numDiskHits = cache.getStats().getDiskHits();
+            final long numMisses = cache.getStats().getMisses();
+            assertTrue(processDocument(docPath).getSuccess());
+            assertEquals(numHits, cache.getStats().getMemoryHits());
+            assertEquals(numDiskHits, cache.getStats().getDiskHits());
+            assertEquals(numMisses + 1, cache.getStats().getMisses());
+        }
+        finally {
+            compositeProcessorConfig.setPdfOcrDPI(ocrDpi);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package tika;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import tika.model.TikaProcessingResult;
+import tika.processor.RequestCoalescer;
+import tika.processor.RequestCoalescerConfig;
+import tika.utils.DocumentBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Implements the tests of coalescing the concurrent requests for the identical documents
+ */
+@SpringBootTest(classes = RequestCoalescer.class)
+@ContextConfiguration(classes = {RequestCoalescerConfig.class})
+public class RequestCoalescerTests {
+
+    private static final int NUM_REQUESTS = 8;
+
+    private static final String DOCUMENT_TEXT = "Document content";
+
+    @Autowired
+    RequestCoalescer coalescer;
+
+    /**
+     * The processing counting its runs, blocked until released
+     */
+    private static class BlockingProcessing implements Callable<TikaProcessingResult> {
+        final AtomicInteger numRuns = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final DocumentBuffer document;
+
+        BlockingProcessing(DocumentBuffer document) {
+            this.document = document;
+        }
+
+        @Override
+        public TikaProcessingResult call() throws Exception {
+            numRuns.incrementAndGet();
+            started.countDown();
+            try {
+                released.await();
+            }
+            catch (InterruptedException e) {
+                // as the processors do, the interruption is reported in the result
+                Thread.currentThread().interrupt();
+                return TikaProcessingResult.builder()
+                        .error("Processing of the document has been interrupted")
+                        .success(false)
+                        .build();
+            }
+
+            try (InputStream stream = document.openStream()) {
+                return TikaProcessingResult.builder()
+                        .text(new String(stream.readAllBytes(), StandardCharsets.UTF_8))
+                        .success(true)
+                        .build();
+            }
+        }
+    }
+
+    private static DocumentBuffer createFileBackedDocument(Path tmpDirectory) throws IOException {
+        // the document is spilled to a file, so that reading it after being removed would fail
+        return DocumentBuffer.fromStream(new ByteArrayInputStream(DOCUMENT_TEXT.getBytes(StandardCharsets.UTF_8)),
+                0, tmpDirectory);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        final long deadlineMillis = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadlineMillis, "timed out waiting for the requests");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsProcessedOnce() throws Exception {
+        final String key = UUID.randomUUID().toString();
+        final BlockingProcessing processing = new BlockingProcessing(
+                DocumentBuffer.fromStream(new ByteArrayInputStream(DOCUMENT_TEXT.getBytes(StandardCharsets.UTF_8)), 1024, null));
+        final long numCoalescedBefore = coalescer.getNumCoalescedRequests();
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_REQUESTS);
+        try {
+            List<Future<TikaProcessingResult>> results = new ArrayList<>();
+            for (int i = 0; i < NUM_REQUESTS; i++) {
+                results.add(executor.submit(() -> coalescer.process(key, processing.document, processing)));
+            }
+
+            // all the duplicates wait for the processing of the first request
+            waitFor(() -> coalescer.getNumCoalescedRequests() - numCoalescedBefore == NUM_REQUESTS - 1);
+            processing.released.countDown();
+
+            for (Future<TikaProcessingResult> result : results) {
+                assertTrue(result.get().getSuccess());
+                assertEquals(DOCUMENT_TEXT, result.get().getText());
+            }
+            assertEquals(1, processing.numRuns.get());
+        }
+        finally {
+            executor.shutdownNow();
+            processing.document.close();
+        }
+    }
+
+    @Test
+    public void testEarlyLeaverKeepsDocument() throws Exception {
+        final String key = UUID.randomUUID().toString();
+        final Path tmpDirectory = Files.createTempDirectory("tika-coalescer-");
+        final DocumentBuffer document = createFileBackedDocument(tmpDirectory);
+        final BlockingProcessing processing = new BlockingProcessing(document);
+        final long numCoalescedBefore = coalescer.getNumCoalescedRequests();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<TikaProcessingResult> firstResult = executor.submit(() -> coalescer.process(key, processing.document, processing));
+            processing.started.await();
+
+            // the duplicate request leaves while waiting for the result
+            Future<TikaProcessingResult> duplicateResult = executor.submit(() -> coalescer.process(key, processing.document, processing));
+            waitFor(() -> coalescer.getNumCoalescedRequests() - numCoalescedBefore == 1);
+            duplicateResult.cancel(true);
+
+            // the processing carries on with the document of the first request
+            processing.released.countDown();
+            assertTrue(firstResult.get().getSuccess());
+            assertEquals(DOCUMENT_TEXT, firstResult.get().getText());
+            assertEquals(1, processing.numRuns.get());
+
+            // the document is still owned by its request
+            assertTrue(document.isFileBacked());
+            assertEquals(DOCUMENT_TEXT.length(), document.getLength());
+        }
+        finally {
+            executor.shutdownNow();
+            document.close();
+            Files.deleteIfExists(tmpDirectory);
+        }
+    }
+
+    @Test
+    public void testInterruptedRequestKeepsProcessing() throws Exception {
+        final String key = UUID.randomUUID().toString();
+        final Path tmpDirectory = Files.createTempDirectory("tika-coalescer-");
+        final BlockingProcessing processing = new BlockingProcessing(createFileBackedDocument(tmpDirectory));
+        final long numCoalescedBefore = coalescer.getNumCoalescedRequests();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<TikaProcessingResult> firstResult = executor.submit(() -> coalescer.process(key, processing.document, processing));
+            processing.started.await();
+            Future<TikaProcessingResult> duplicateResult = executor.submit(() -> coalescer.process(key, processing.document, processing));
+            waitFor(() -> coalescer.getNumCoalescedRequests() - numCoalescedBefore == 1);
+
+            // the first request is interrupted (e.g. on its timeout) and releases its document,
+            // whereas the processing carries on for the waiting one
+            firstResult.cancel(true);
+            processing.document.close();
+            processing.released.countDown();
+
+            assertTrue(duplicateResult.get().getSuccess());
+            assertEquals(DOCUMENT_TEXT, duplicateResult.get().getText());
+            assertEquals(1, processing.numRuns.get());
+        }
+        finally {
+            executor.shutdownNow();
+            FileUtils.deleteDirectory(tmpDirectory.toFile());
+        }
+    }
+
+    @Test
+    public void testLastLeaverCancelsProcessing() throws Exception {
+        final String key = UUID.randomUUID().toString();
+        final Path tmpDirectory = Files.createTempDirectory("tika-coalescer-");
+        final BlockingProcessing processing = new BlockingProcessing(createFileBackedDocument(tmpDirectory));
+        final long numCoalescedBefore = coalescer.getNumCoalescedRequests();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<TikaProcessingResult> firstResult = executor.submit(() -> coalescer.process(key, processing.document, processing));
+            processing.started.await();
+            Future<TikaProcessingResult> duplicateResult = executor.submit(() -> coalescer.process(key, processing.document, processing));
+            waitFor(() -> coalescer.getNumCoalescedRequests() - numCoalescedBefore == 1);
+
+            // all the requests leave (and release the document), hence the processing is cancelled
+            firstResult.cancel(true);
+            duplicateResult.cancel(true);
+            processing.document.close();
+
+            // the processing is interrupted and releases its reference to the document, removing the file
+            waitFor(() -> Objects.requireNonNull(tmpDirectory.toFile().list()).length == 0);
+
+            // the next request for the same document starts the processing again
+            final BlockingProcessing nextProcessing = new BlockingProcessing(
+                    DocumentBuffer.fromStream(new ByteArrayInputStream(DOCUMENT_TEXT.getBytes(StandardCharsets.UTF_8)), 1024, null));
+            nextProcessing.released.countDown();
+            TikaProcessingResult nextResult = coalescer.process(key, nextProcessing.document, nextProcessing);
+            assertTrue(nextResult.getSuccess());
+            assertEquals(1, nextProcessing.numRuns.get());
+            nextProcessing.document.close();
+        }
+        finally {
+            executor.shutdownNow();
+            FileUtils.deleteDirectory(tmpDirectory.toFile());
+        }
+    }
+}
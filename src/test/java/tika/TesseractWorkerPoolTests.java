@@ -0,0 +1,167 @@
+package tika;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.parser.ocr.TesseractOCRConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import tika.processor.TesseractWorkerPool;
+import tika.processor.TesseractWorkerPoolConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * Implements the tests of the Tesseract workers pool run with the fake Tesseract (see FakeOcrTools)
+ */
+@SpringBootTest(classes = TesseractWorkerPool.class)
+@DirtiesContext
+@ContextConfiguration(classes = {TesseractWorkerPoolConfig.class})
+public class TesseractWorkerPoolTests {
+
+    private static final int MAX_PAGES_PER_WORKER = 4;
+
+    private static final int OCR_TIMEOUT = 10;
+
+    private static FakeOcrTools tools;
+
+    // the directory with the page images passed to the workers (only their names are used by the fake Tesseract)
+    private static Path imagesDirectory;
+
+    @Autowired
+    TesseractWorkerPool workerPool;
+
+    @DynamicPropertySource
+    static void configureFakeTools(DynamicPropertyRegistry registry) throws IOException {
+        tools = FakeOcrTools.install(Files.createTempDirectory("fake-ocr-"));
+        imagesDirectory = Files.createTempDirectory("fake-ocr-images-");
+
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.enabled", () -> true);
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.tesseract-path", () -> tools.getDirectory().toString());
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.image-magick-path", () -> tools.getDirectory().toString());
+        registry.add("tika.parsers.tesseract-ocr.worker-pool.max-pages-per-worker", () -> MAX_PAGES_PER_WORKER);
+    }
+
+    @AfterEach
+    public void resetTools() throws IOException {
+        tools.reset();
+    }
+
+    @AfterAll
+    public static void removeTools() throws IOException {
+        FileUtils.deleteDirectory(tools.getDirectory().toFile());
+        FileUtils.deleteDirectory(imagesDirectory.toFile());
+    }
+
+    private static List<Path> createImages(int numImages) throws IOException {
+        List<Path> images = new ArrayList<>();
+        for (int i = 0; i < numImages; i++) {
+            images.add(Files.createTempFile(imagesDirectory, "page-" + (i + 1) + "-", ".png"));
+        }
+        return images;
+    }
+
+    @Test
+    public void testSplitMultiPageOutput() throws Exception {
+        // a single multi-page image (e.g. the TIFF rendered by the legacy parser) results in multiple pages
+        final int numPages = 3;
+        tools.setTesseractPagesPerImage(numPages).setTesseractText("Page text");
+
+        List<String> pagesText = workerPool.recognize(createImages(1), new TesseractOCRConfig(), 300, OCR_TIMEOUT);
+        assertEquals(numPages, pagesText.size());
+        for (String pageText : pagesText) {
+            assertEquals("Page text", pageText.trim());
+        }
+        assertEquals(1, tools.getNumInvocations(FakeOcrTools.TESSERACT));
+    }
+
+    @Test
+    public void testPagesOrderAcrossWorkers() throws Exception {
+        tools.setTesseractEchoImage(true);
+
+        // the images are split between the workers, each of them run over a batch of the max number of pages
+        List<Path> images = createImages(2 * MAX_PAGES_PER_WORKER + 1);
+        List<String> pagesText = workerPool.recognize(images, new TesseractOCRConfig(), 300, OCR_TIMEOUT);
+
+        assertEquals(images.size(), pagesText.size());
+        for (int i = 0; i < images.size(); i++) {
+            assertEquals(images.get(i).getFileName().toString(), pagesText.get(i).trim());
+        }
+        assertEquals(3, tools.getNumInvocations(FakeOcrTools.TESSERACT));
+    }
+
+    @Test
+    public void testConfiguredOptionsPassed() throws Exception {
+        TesseractOCRConfig tessConfig = new TesseractOCRConfig();
+        tessConfig.setLanguage("eng+deu");
+        tessConfig.setPageSegMode("6");
+        tessConfig.setPreserveInterwordSpacing(true);
+
+        workerPool.recognize(createImages(1), tessConfig, 200, OCR_TIMEOUT);
+
+        List<String> arguments = tools.getInvocationArguments(FakeOcrTools.TESSERACT);
+        assertEquals(1, arguments.size());
+        assertTrue(arguments.get(0).contains("--psm 6"), arguments.get(0));
+        assertTrue(arguments.get(0).contains("--dpi 200"), arguments.get(0));
+        assertTrue(arguments.get(0).contains("-c preserve_interword_spaces=1"), arguments.get(0));
+        assertTrue(arguments.get(0).endsWith("-l eng+deu"), arguments.get(0));
+    }
+
+    @Test
+    public void testImagePreprocessing() throws Exception {
+        TesseractOCRConfig tessConfig = new TesseractOCRConfig();
+        tessConfig.setEnableImagePreprocessing(true);
+        tools.setTesseractEchoImage(true);
+
+        List<Path> images = createImages(2);
+        List<String> pagesText = workerPool.recognize(images, tessConfig, 300, OCR_TIMEOUT);
+
+        // each image is preprocessed by ImageMagick, then the preprocessed ones are passed to Tesseract
+        assertEquals(images.size(), tools.getNumInvocations(FakeOcrTools.CONVERT));
+        for (int i = 0; i < images.size(); i++) {
+            final String imageName = images.get(i).getFileName().toString();
+            assertTrue(pagesText.get(i).trim().startsWith(imageName.substring(0, imageName.lastIndexOf('.')) + "-preprocessed-"),
+                    pagesText.get(i));
+        }
+
+        // the preprocessed images are removed once processed
+        try (Stream<Path> files = Files.list(imagesDirectory)) {
+            assertEquals(0, files.filter(file -> file.getFileName().toString().contains("-preprocessed-")).count());
+        }
+    }
+
+    @Test
+    public void testRotationNotSupported() {
+        TesseractOCRConfig tessConfig = new TesseractOCRConfig();
+        assertTrue(workerPool.supports(tessConfig));
+
+        // the images are not rotated by the workers, hence are left to Tika's OCR parser
+        tessConfig.setApplyRotation(true);
+        assertFalse(workerPool.supports(tessConfig));
+    }
+
+    @Test
+    public void testWorkerFailure() throws Exception {
+        tools.setTesseractExitCode(1);
+
+        final long numFailedWorkers = workerPool.getNumFailedWorkers();
+        TikaException exception = assertThrows(TikaException.class,
+                () -> workerPool.recognize(createImages(1), new TesseractOCRConfig(), 300, OCR_TIMEOUT));
+        assertTrue(exception.getMessage().contains("exit code: 1"));
+        assertEquals(numFailedWorkers + 1, workerPool.getNumFailedWorkers());
+    }
+}